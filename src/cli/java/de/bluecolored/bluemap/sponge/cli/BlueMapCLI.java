@@ -0,0 +1,412 @@
+/*
+ * This file is part of BlueMapSponge, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) Blue (Lukas Rieger) <https://bluecolored.de>
+ * Copyright (c) contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package de.bluecolored.bluemap.sponge.cli;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import com.flowpowered.math.vector.Vector2i;
+import com.flowpowered.math.vector.Vector3i;
+import com.google.common.collect.Lists;
+
+import de.bluecolored.bluemap.logger.Logger;
+import de.bluecolored.bluemap.render.RenderManager;
+import de.bluecolored.bluemap.render.RenderManager.RenderTicket;
+import de.bluecolored.bluemap.render.TileRenderer;
+import de.bluecolored.bluemap.render.WorldTile;
+import de.bluecolored.bluemap.render.hires.HiresModelManager;
+import de.bluecolored.bluemap.render.lowres.LowresModelManager;
+import de.bluecolored.bluemap.resourcepack.NoSuchResourceException;
+import de.bluecolored.bluemap.resourcepack.ResourcePack;
+import de.bluecolored.bluemap.sponge.BlueMapConfig;
+import de.bluecolored.bluemap.sponge.BlueMapConfig.MapConfig;
+import de.bluecolored.bluemap.sponge.MapType;
+import de.bluecolored.bluemap.sponge.TrackingTileRenderer;
+import de.bluecolored.bluemap.sponge.WorldUtil;
+import de.bluecolored.bluemap.sponge.anvil.RegionFile;
+import de.bluecolored.bluemap.sponge.hires.PostProcessingTileRenderer;
+import de.bluecolored.bluemap.sponge.impl.LegacyBlockPalette;
+import de.bluecolored.bluemap.web.WebSettings;
+import gnu.trove.list.array.TLongArrayList;
+import gnu.trove.set.hash.TLongHashSet;
+
+/**
+ * Renders the maps of a BlueMap-config without a running server, directly from the region-files of the worlds.<br>
+ * <br>
+ * The block-ids of the server are needed to read the region-files, they are exported to <code>blockIds.json</code> 
+ * in the config-folder every time the plugin is loaded on the server.
+ */
+public class BlueMapCLI {
+
+	//how many tickets per render-thread are kept scheduled, so the render-threads never run out of work
+	private static final int SCHEDULED_TICKETS_PER_THREAD = 4;
+	
+	private static final long PROGRESS_INTERVAL = TimeUnit.SECONDS.toMillis(10);
+	private static final Pattern REGION_FILE_PATTERN = Pattern.compile("r\\.(-?\\d+)\\.(-?\\d+)\\.mca");
+	
+	private Logger logger;
+	private Path configFile;
+	private Path serverFolder;
+	private Path blockIdFile;
+	private int threadCount;
+	private Set<String> mapFilter;
+	
+	private AtomicLong finishedTiles;
+	private AtomicLong failedTiles;
+	private long scheduledTiles;
+	private long totalTiles;
+	private long startTime;
+	private long lastProgress;
+	
+	public BlueMapCLI(Logger logger, Path configFile, Path serverFolder, Path blockIdFile, int threadCount, Set<String> mapFilter) {
+		this.logger = logger;
+		this.configFile = configFile;
+		this.serverFolder = serverFolder;
+		this.blockIdFile = blockIdFile;
+		this.threadCount = threadCount;
+		this.mapFilter = mapFilter;
+		
+		this.finishedTiles = new AtomicLong();
+		this.failedTiles = new AtomicLong();
+	}
+	
+	public void renderMaps() throws IOException, NoSuchResourceException, InterruptedException {
+		BlueMapConfig config = BlueMapConfig.loadOrCreate(configFile.toFile());
+		Path configFolder = configFile.toAbsolutePath().getParent();
+		
+		//load resource-pack
+		File defaultResource = configFolder.resolve("resourcepacks").resolve("DefaultResources.zip").toFile();
+		File textureExportFile = config.getWebDataPath().resolve("textures.json").toFile();
+		ResourcePack.createDefaultResource(defaultResource);
+		ResourcePack resourcePack = new ResourcePack(Lists.newArrayList(defaultResource), textureExportFile, logger);
+		
+		//load block-ids
+		if (!Files.exists(blockIdFile)) throw new IOException("The block-id file " + blockIdFile + " does not exist! Start your server with BlueMap once to create it.");
+		LegacyBlockPalette blockPalette = LegacyBlockPalette.load(blockIdFile.toFile());
+		
+		ScheduledExecutorService executor = Executors.newScheduledThreadPool(Math.max(1, threadCount / 2));
+		
+		//load map-types
+		Map<Path, CliWorld> worlds = new HashMap<>();
+		List<MapType> maps = new ArrayList<>();
+		for (MapConfig map : config.getMapConfigs()) {
+			if (!mapFilter.isEmpty() && !mapFilter.contains(map.getId())) continue;
+			
+			Path worldFolder = findWorldFolder(map.getWorldId());
+			if (worldFolder == null) {
+				logger.logWarning("Configured world for map '" + map.getId() + "' could not be found in " + serverFolder + "! Skipping..");
+				continue;
+			}
+			
+			CliWorld world = worlds.get(worldFolder);
+			if (world == null) {
+				world = new CliWorld(worldFolder, worldFolder.getFileName().toString(), blockPalette, logger);
+				worlds.put(worldFolder, world);
+			}
+			
+			logger.logInfo("Initializing map '" + map.getId() + "'...");
+			
+			HiresModelManager hiresModelManager = new HiresModelManager(
+					config.getWebDataPath().resolve("hires").resolve(map.getId()),
+					resourcePack,
+					new Vector2i(map.getHiresTileSize(), map.getHiresTileSize()),
+					executor,
+					logger
+					);
+			
+			Vector2i pointsPerLowresTile = new Vector2i(map.getLowresPointsPerLowresTile(), map.getLowresPointsPerLowresTile());
+			Vector2i pointsPerHiresTile = new Vector2i(map.getLowresPointsPerHiresTile(), map.getLowresPointsPerHiresTile());
+			LowresModelManager lowresModelManager = new LowresModelManager(
+					config.getWebDataPath().resolve("lowres").resolve(map.getId()), 
+					pointsPerLowresTile,
+					pointsPerHiresTile,
+					logger
+					);
+			
+			TileRenderer tileRenderer;
+			if (PostProcessingTileRenderer.needsPostProcessing(map.getHiresFormat(), map.getHiresCompression())) {
+				tileRenderer = new PostProcessingTileRenderer(hiresModelManager, lowresModelManager, map, pointsPerLowresTile, pointsPerHiresTile, config.getWebDataPath().resolve("hires").resolve(map.getId()), map.getHiresFormat(), map.getHiresCompression(), executor, logger);
+			} else {
+				tileRenderer = new TrackingTileRenderer(hiresModelManager, lowresModelManager, map, pointsPerLowresTile, pointsPerHiresTile);
+			}
+			
+			maps.add(new MapType(
+					map.getId(),
+					map.getName(),
+					world,
+					tileRenderer,
+					map
+					));
+		}
+		
+		if (maps.isEmpty()) {
+			logger.logWarning("There are no maps to render!");
+			executor.shutdown();
+			return;
+		}
+		
+		//collect the tiles of all maps first, so we know how much there is to do
+		Map<MapType, TLongArrayList> mapTiles = new HashMap<>();
+		for (MapType map : maps) {
+			TLongArrayList tiles = collectTiles(map);
+			mapTiles.put(map, tiles);
+			totalTiles += tiles.size();
+			
+			logger.logInfo("Found " + tiles.size() + " tiles to render for map '" + map.getId() + "'");
+		}
+		
+		//render
+		RenderManager renderManager = new RenderManager(threadCount);
+		renderManager.start();
+		startTime = System.currentTimeMillis();
+		lastProgress = startTime;
+		
+		int targetTicketCount = threadCount * SCHEDULED_TICKETS_PER_THREAD;
+		for (MapType map : maps) {
+			logger.logInfo("Rendering map '" + map.getId() + "' on " + threadCount + " threads...");
+			
+			TLongArrayList tiles = mapTiles.get(map);
+			for (int i = 0; i < tiles.size(); i++) {
+				while (renderManager.getScheduledTicketCount() >= targetTicketCount) {
+					Thread.sleep(10);
+					logProgress();
+				}
+				
+				long tile = tiles.get(i);
+				WorldTile worldTile = new WorldTile(map.getWorld(), new Vector2i(WorldUtil.unpackX(tile), WorldUtil.unpackZ(tile)));
+				RenderTicket ticket = renderManager.scheduleRender(worldTile, map.getTileRenderer());
+				ticket.addListener(this::rendered);
+				scheduledTiles++;
+			}
+		}
+		
+		while (renderManager.getScheduledTicketCount() > 0 || finishedTiles.get() < scheduledTiles) {
+			Thread.sleep(100);
+			logProgress();
+		}
+		
+		renderManager.shutdown();
+		renderManager.awaitShutdown(10, TimeUnit.SECONDS);
+		
+		//save
+		logger.logInfo("Saving...");
+		for (MapType map : maps) {
+			map.getTileRenderer().save();
+		}
+		
+		//the post-processing reschedules tiles that are still being saved, so it has to be done before the executor is shut down
+		for (MapType map : maps) {
+			if (!(map.getTileRenderer() instanceof PostProcessingTileRenderer)) continue;
+			
+			if (!((PostProcessingTileRenderer) map.getTileRenderer()).awaitPostProcessing(1, TimeUnit.HOURS)) {
+				logger.logWarning("Timed out while processing the hires-tiles of map '" + map.getId() + "', some tiles have not been compressed!");
+			}
+		}
+		
+		executor.shutdown();
+		executor.awaitTermination(1, TimeUnit.HOURS);
+		
+		WebSettings webSettings = new WebSettings(config.getWebDataPath().resolve("settings.json").toFile());
+		for (MapType map : maps) {
+			webSettings.setName(map.getName(), map.getId());
+			webSettings.setFrom(map.getTileRenderer(), map.getId());
+			webSettings.setHiresViewDistance(map.getConfig().getHiresViewDistance(), map.getId());
+			webSettings.setLowresViewDistance(map.getConfig().getLowresViewDistance(), map.getId());
+		}
+		webSettings.save();
+		
+		logger.logInfo("Rendered " + finishedTiles.get() + " tiles in " + ((System.currentTimeMillis() - startTime) / 60000) + " min! (" + failedTiles.get() + " failed)");
+	}
+	
+	/**
+	 * Collects all tiles of a map that contain at least one chunk which exists in the region-files, in region-file order.
+	 */
+	private TLongArrayList collectTiles(MapType map) throws IOException {
+		CliWorld world = (CliWorld) map.getWorld();
+		HiresModelManager hiresModelManager = map.getTileRenderer().getHiresModelManager();
+		
+		TLongHashSet found = new TLongHashSet();
+		TLongArrayList tiles = new TLongArrayList();
+		
+		Path regionFolder = world.getRegionStorage().getRegionFolder();
+		if (!Files.isDirectory(regionFolder)) return tiles;
+		
+		List<Path> regionFiles = new ArrayList<>();
+		try (DirectoryStream<Path> stream = Files.newDirectoryStream(regionFolder, "r.*.*.mca")) {
+			stream.forEach(regionFiles::add);
+		}
+		regionFiles.sort(null);
+		
+		for (Path regionFile : regionFiles) {
+			Matcher matcher = REGION_FILE_PATTERN.matcher(regionFile.getFileName().toString());
+			if (!matcher.matches()) continue;
+			
+			int regionX = Integer.parseInt(matcher.group(1));
+			int regionZ = Integer.parseInt(matcher.group(2));
+			RegionFile region = world.getRegionStorage().getRegionFile(regionX, regionZ);
+			
+			for (int z = 0; z < 32; z++) {
+				for (int x = 0; x < 32; x++) {
+					if (!region.hasChunk(x, z)) continue;
+					
+					int blockX = (regionX * 32 + x) * 16;
+					int blockZ = (regionZ * 32 + z) * 16;
+					Vector2i minTile = hiresModelManager.posToTile(new Vector3i(blockX, 0, blockZ));
+					Vector2i maxTile = hiresModelManager.posToTile(new Vector3i(blockX + 15, 0, blockZ + 15));
+					
+					for (int tileX = minTile.getX(); tileX <= maxTile.getX(); tileX++) {
+						for (int tileZ = minTile.getY(); tileZ <= maxTile.getY(); tileZ++) {
+							long tile = WorldUtil.packXZ(tileX, tileZ);
+							if (found.add(tile)) tiles.add(tile);
+						}
+					}
+				}
+			}
+		}
+		
+		return tiles;
+	}
+	
+	private void rendered(RenderTicket ticket) {
+		try {
+			ticket.check();
+		} catch (Throwable t) {
+			failedTiles.incrementAndGet();
+			logger.noFloodError("cli-render-failed", "Failed to render tile " + ticket.getTile().getTile() + " (further errors are not logged)", t);
+		}
+		
+		finishedTiles.incrementAndGet();
+	}
+	
+	private void logProgress() {
+		long now = System.currentTimeMillis();
+		if (lastProgress + PROGRESS_INTERVAL > now) return;
+		lastProgress = now;
+		
+		long finished = finishedTiles.get();
+		double tilesPerSecond = finished / Math.max((now - startTime) / 1000d, 1d);
+		long remainingSeconds = (long) ((totalTiles - finished) / Math.max(tilesPerSecond, 0.001));
+		
+		logger.logInfo(String.format("Rendered %d of %d tiles (%.1f%%, %.1f tiles/s, ~%d min remaining)", 
+				finished, totalTiles, finished * 100d / Math.max(totalTiles, 1), tilesPerSecond, remainingSeconds / 60));
+	}
+	
+	/**
+	 * Finds the folder of a world by its name.<br>
+	 * Sponge stores the main world directly in the server-folder and all other worlds (e.g. DIM-1) inside the folder of the main world.
+	 */
+	private Path findWorldFolder(String worldName) throws IOException {
+		try {
+			UUID.fromString(worldName);
+			logger.logWarning("Worlds can only be found by their name, not by their uuid: " + worldName);
+			return null;
+		} catch (IllegalArgumentException e) {
+			//not an uuid
+		}
+		
+		Path direct = serverFolder.resolve(worldName);
+		if (Files.isDirectory(direct.resolve("region"))) return direct;
+		
+		try (DirectoryStream<Path> stream = Files.newDirectoryStream(serverFolder, Files::isDirectory)) {
+			for (Path mainWorld : stream) {
+				Path nested = mainWorld.resolve(worldName);
+				if (Files.isDirectory(nested.resolve("region"))) return nested;
+			}
+		}
+		
+		return null;
+	}
+	
+	public static void main(String[] args) {
+		Path configFile = Paths.get("config", "bluemap", "bluemap.conf");
+		Path serverFolder = Paths.get(".");
+		Path blockIdFile = null;
+		int threadCount = Runtime.getRuntime().availableProcessors();
+		Set<String> mapFilter = new HashSet<>();
+		boolean debug = false;
+		
+		try {
+			for (int i = 0; i < args.length; i++) {
+				switch (args[i]) {
+				case "-c": case "--config": configFile = Paths.get(args[++i]); break;
+				case "-s": case "--server": serverFolder = Paths.get(args[++i]); break;
+				case "-b": case "--block-ids": blockIdFile = Paths.get(args[++i]); break;
+				case "-t": case "--threads": threadCount = Integer.parseInt(args[++i]); break;
+				case "-m": case "--map": mapFilter.add(args[++i]); break;
+				case "-d": case "--debug": debug = true; break;
+				case "-h": case "--help": printUsage(); return;
+				default: throw new IllegalArgumentException("Unknown argument: " + args[i]);
+				}
+			}
+			
+			if (threadCount <= 0) throw new IllegalArgumentException("The thread-count has to be greater than 0");
+		} catch (IllegalArgumentException | ArrayIndexOutOfBoundsException e) {
+			System.err.println("Invalid arguments: " + e.getMessage());
+			printUsage();
+			System.exit(2);
+			return;
+		}
+		
+		if (blockIdFile == null) blockIdFile = configFile.toAbsolutePath().getParent().resolve("blockIds.json");
+		
+		Logger logger = new CliLogger(System.out, System.err, debug);
+		try {
+			new BlueMapCLI(logger, configFile, serverFolder, blockIdFile, threadCount, mapFilter).renderMaps();
+		} catch (IOException | NoSuchResourceException | InterruptedException e) {
+			logger.logError("Failed to render maps", e);
+			System.exit(1);
+		}
+		
+		System.exit(0);
+	}
+	
+	private static void printUsage() {
+		System.out.println("Usage: java -jar BlueMapSponge-cli.jar [options]");
+		System.out.println("  -c, --config <file>     the bluemap.conf to use (default: config/bluemap/bluemap.conf)");
+		System.out.println("  -s, --server <folder>   the server-folder containing the worlds (default: .)");
+		System.out.println("  -b, --block-ids <file>  the block-ids exported by the plugin (default: blockIds.json next to the config)");
+		System.out.println("  -t, --threads <count>   the number of render-threads (default: all cores)");
+		System.out.println("  -m, --map <id>          only render this map, can be used multiple times (default: all maps)");
+		System.out.println("  -d, --debug             log debug-messages");
+	}
+	
+}
@@ -0,0 +1,189 @@
+/*
+ * This file is part of BlueMapSponge, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) Blue (Lukas Rieger) <https://bluecolored.de>
+ * Copyright (c) contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package de.bluecolored.bluemap.sponge.cli;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.UUID;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import com.flowpowered.math.vector.Vector3i;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.util.concurrent.UncheckedExecutionException;
+
+import de.bluecolored.bluemap.api.Block;
+import de.bluecolored.bluemap.api.ChunkNotGeneratedException;
+import de.bluecolored.bluemap.api.World;
+import de.bluecolored.bluemap.logger.Logger;
+import de.bluecolored.bluemap.sponge.WorldUtil;
+import de.bluecolored.bluemap.sponge.anvil.AnvilChunk;
+import de.bluecolored.bluemap.sponge.anvil.BiomeIds;
+import de.bluecolored.bluemap.sponge.anvil.LevelData;
+import de.bluecolored.bluemap.sponge.anvil.RegionStorage;
+import de.bluecolored.bluemap.sponge.impl.ChunkSnapshot;
+import de.bluecolored.bluemap.sponge.impl.LegacyBlockPalette;
+import de.bluecolored.bluemap.util.AABB;
+
+/**
+ * A world that is read only from its region-files on disk, without a running server.
+ */
+public class CliWorld implements World {
+
+	private static final int MIN_Y = 0;
+	private static final int MAX_Y = 255;
+	
+	private String name;
+	private UUID uuid;
+	private Vector3i spawnPoint;
+	private AABB bounds;
+	
+	private RegionStorage regionStorage;
+	private LegacyBlockPalette blockPalette;
+	private Cache<Long, ChunkSnapshot> chunkSnapshotCache;
+	private Logger logger;
+	
+	public CliWorld(Path worldFolder, String name, LegacyBlockPalette blockPalette, Logger logger) throws IOException {
+		this.name = name;
+		this.blockPalette = blockPalette;
+		this.logger = logger;
+		
+		//the world-uuid is only stored by sponge, so we derive one from the world-folder
+		this.uuid = UUID.nameUUIDFromBytes(worldFolder.toAbsolutePath().normalize().toString().getBytes(StandardCharsets.UTF_8));
+		
+		//dimensions like the nether don't have their own level.dat
+		Path levelDat = worldFolder.resolve("level.dat");
+		this.spawnPoint = Files.exists(levelDat) ? LevelData.read(levelDat).getSpawnPoint() : new Vector3i(0, 64, 0);
+		
+		this.bounds = new AABB(new Vector3i(-30000000, MIN_Y, -30000000), new Vector3i(30000000, MAX_Y, 30000000));
+		this.regionStorage = new RegionStorage(worldFolder.resolve("region"));
+		
+		this.chunkSnapshotCache = CacheBuilder.newBuilder()
+				.maximumSize(1024)
+				.expireAfterAccess(30, TimeUnit.SECONDS)
+				.softValues()
+				.build();
+	}
+	
+	@Override
+	public World getWorld() {
+		return this;
+	}
+
+	@Override
+	public Block getBlock(Vector3i pos) throws ChunkNotGeneratedException {
+		return getChunkSnapshot(Math.floorDiv(pos.getX(), 16), Math.floorDiv(pos.getZ(), 16)).getBlock(pos);
+	}
+	
+	/**
+	 * Returns a {@link ChunkSnapshot} of the chunk at that chunk-position, read from its region-file.
+	 * @throws ChunkNotGeneratedException if the chunk is not (fully) generated or could not be read
+	 */
+	public ChunkSnapshot getChunkSnapshot(int chunkX, int chunkZ) throws ChunkNotGeneratedException {
+		try {
+			return chunkSnapshotCache.get(WorldUtil.packXZ(chunkX, chunkZ), () -> {
+				AnvilChunk chunk = regionStorage.readChunk(chunkX, chunkZ);
+				if (chunk == null || !chunk.isTerrainPopulated()) {
+					throw new ChunkNotGeneratedException("Cannot access chunk: " + chunkX + ", " + chunkZ + ". Chunk is not generated!");
+				}
+				
+				int[] biomes = new int[16 * 16];
+				for (int z = 0; z < 16; z++) {
+					for (int x = 0; x < 16; x++) {
+						biomes[z * 16 + x] = BiomeIds.getRegistryId(chunk.getBiomeId(x, z));
+					}
+				}
+				
+				return ChunkSnapshot.create(this, chunk, blockPalette, biomes, MIN_Y, MAX_Y);
+			});
+		} catch (ExecutionException | UncheckedExecutionException e) {
+			Throwable cause = e.getCause();
+			if (cause instanceof ChunkNotGeneratedException) throw (ChunkNotGeneratedException) cause;
+			logger.logError("Failed to read chunk: " + chunkX + ", " + chunkZ, cause);
+			throw new ChunkNotGeneratedException("Cannot access chunk: " + chunkX + ", " + chunkZ + ". Failed to read chunk!");
+		}
+	}
+	
+	public boolean isChunkGenerated(int chunkX, int chunkZ) {
+		return regionStorage.hasChunk(chunkX, chunkZ);
+	}
+	
+	public RegionStorage getRegionStorage() {
+		return regionStorage;
+	}
+
+	@Override
+	public AABB getBoundaries() {
+		return bounds;
+	}
+
+	@Override
+	public CliWorldChunk getWorldChunk(AABB boundaries) {
+		return new CliWorldChunk(this, boundaries);
+	}
+
+	@Override
+	public boolean isGenerated() {
+		return false;
+	}
+
+	@Override
+	public String getName() {
+		return name;
+	}
+
+	@Override
+	public UUID getUUID() {
+		return uuid;
+	}
+
+	@Override
+	public int getSeaLevel() {
+		return 63;
+	}
+
+	@Override
+	public Vector3i getSpawnPoint() {
+		return spawnPoint;
+	}
+	
+	@Override
+	public boolean equals(Object obj) {
+		if (obj instanceof World) {
+			return ((World) obj).getUUID().equals(getUUID());
+		}
+		
+		return false;
+	}
+	
+	@Override
+	public int hashCode() {
+		return getUUID().hashCode();
+	}
+	
+}
@@ -0,0 +1,89 @@
+/*
+ * This file is part of BlueMapSponge, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) Blue (Lukas Rieger) <https://bluecolored.de>
+ * Copyright (c) contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package de.bluecolored.bluemap.sponge.cli;
+
+import com.flowpowered.math.vector.Vector3i;
+
+import de.bluecolored.bluemap.api.Block;
+import de.bluecolored.bluemap.api.ChunkNotGeneratedException;
+import de.bluecolored.bluemap.api.WorldChunk;
+import de.bluecolored.bluemap.sponge.WorldUtil;
+import de.bluecolored.bluemap.util.AABB;
+
+public class CliWorldChunk implements WorldChunk {
+
+	private CliWorld world;
+	private AABB bounds;
+	
+	private boolean isGenerated;
+	private boolean checkedGenerated;
+	
+	public CliWorldChunk(CliWorld world, AABB bounds) {
+		this.world = world;
+		this.bounds = bounds;
+		
+		this.isGenerated = false;
+		this.checkedGenerated = false;
+	}
+	
+	@Override
+	public CliWorld getWorld() {
+		return world;
+	}
+
+	@Override
+	public Block getBlock(Vector3i pos) throws ChunkNotGeneratedException {
+		return world.getBlock(pos);
+	}
+
+	@Override
+	public AABB getBoundaries() {
+		return bounds;
+	}
+
+	@Override
+	public CliWorldChunk getWorldChunk(AABB boundaries) {
+		return new CliWorldChunk(world, boundaries);
+	}
+
+	@Override
+	public boolean isGenerated() {
+		if (!checkedGenerated){
+			isGenerated = checkGenerated();
+			checkedGenerated = true;
+		}
+		
+		return isGenerated;
+	}
+	
+	private boolean checkGenerated() {
+		for (Vector3i chunk : WorldUtil.getContainedSpongeChunks(bounds)) {
+			if (!world.isChunkGenerated(chunk.getX(), chunk.getZ())) return false;
+		}
+		
+		return true;
+	}
+
+}
@@ -0,0 +1,143 @@
+/*
+ * This file is part of BlueMapSponge, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) Blue (Lukas Rieger) <https://bluecolored.de>
+ * Copyright (c) contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package de.bluecolored.bluemap.sponge;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.flowpowered.math.vector.Vector2i;
+import com.google.common.collect.Lists;
+
+import de.bluecolored.bluemap.logger.Logger;
+import de.bluecolored.bluemap.render.RenderSettings;
+import de.bluecolored.bluemap.render.TileRenderer;
+import de.bluecolored.bluemap.render.WorldTile;
+import de.bluecolored.bluemap.render.hires.HiresModelManager;
+import de.bluecolored.bluemap.render.lowres.LowresModelManager;
+import de.bluecolored.bluemap.resourcepack.NoSuchResourceException;
+import de.bluecolored.bluemap.resourcepack.ResourcePack;
+import de.bluecolored.bluemap.sponge.cli.CliLogger;
+import de.bluecolored.bluemap.sponge.impl.BlockStateResourceNameMapper;
+import de.bluecolored.bluemap.sponge.impl.SyntheticWorldSource;
+import de.bluecolored.bluemap.sponge.impl.WorldImpl;
+
+/**
+ * Benchmarks a full render of a hires-tile (reading the blocks, building the hires- and lowres-models and saving them) 
+ * of a {@link SyntheticWorldSource synthetic world} with the default settings of a map.<br>
+ * The default resources are downloaded to <code>build/jmh/</code> on the first run, like the plugin does on its first start.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class TileRenderBenchmark {
+
+	private static final int TILE_SIZE = 32;
+	private static final int TILE_RANGE = 8;
+	
+	private Path outputFolder;
+	private ExecutorService executor;
+	private WorldImpl world;
+	private TileRenderer tileRenderer;
+	private int next;
+	
+	@Setup
+	public void setup() throws IOException, NoSuchResourceException {
+		Logger logger = new CliLogger(System.out, System.err, false);
+		
+		File resourceFolder = new File("build/jmh");
+		resourceFolder.mkdirs();
+		File defaultResource = new File(resourceFolder, "DefaultResources.zip");
+		ResourcePack.createDefaultResource(defaultResource);
+		
+		outputFolder = Files.createTempDirectory("bluemap-jmh");
+		ResourcePack resourcePack = new ResourcePack(Lists.newArrayList(defaultResource), outputFolder.resolve("textures.json").toFile(), logger);
+		
+		SyntheticWorldSource source = new SyntheticWorldSource();
+		source.generateChunks(-1, -1, TILE_RANGE * TILE_SIZE / 16, TILE_RANGE * TILE_SIZE / 16);
+		world = source.createWorld(BlockStateResourceNameMapper.load(), logger);
+		
+		executor = Executors.newSingleThreadExecutor();
+		HiresModelManager hiresModelManager = new HiresModelManager(outputFolder.resolve("hires"), resourcePack, new Vector2i(TILE_SIZE, TILE_SIZE), executor, logger);
+		LowresModelManager lowresModelManager = new LowresModelManager(outputFolder.resolve("lowres"), new Vector2i(50, 50), new Vector2i(4, 4), logger);
+		
+		tileRenderer = new TileRenderer(hiresModelManager, lowresModelManager, new RenderSettings() {
+			@Override
+			public boolean isAmbientOcclusion() {
+				return true;
+			}
+			
+			@Override
+			public boolean isLighting() {
+				return true;
+			}
+			
+			@Override
+			public boolean isExcludeFacesWithoutSunlight() {
+				return true;
+			}
+		});
+	}
+	
+	@Benchmark
+	public void renderTile() throws Exception {
+		int tile = next;
+		if (++next == TILE_RANGE * TILE_RANGE) next = 0;
+		
+		tileRenderer.render(new WorldTile(world, new Vector2i(tile % TILE_RANGE, tile / TILE_RANGE)));
+	}
+	
+	@TearDown
+	public void tearDown() throws IOException, InterruptedException {
+		executor.shutdown();
+		executor.awaitTermination(1, TimeUnit.MINUTES);
+		
+		try (Stream<Path> files = Files.walk(outputFolder)) {
+			files.sorted(Comparator.reverseOrder()).forEach(file -> file.toFile().delete());
+		}
+	}
+	
+}
@@ -0,0 +1,199 @@
+/*
+ * This file is part of BlueMapSponge, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) Blue (Lukas Rieger) <https://bluecolored.de>
+ * Copyright (c) contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package de.bluecolored.bluemap.sponge.impl;
+
+import java.io.IOException;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.spongepowered.api.block.BlockState;
+import org.spongepowered.api.block.BlockType;
+import org.spongepowered.api.block.trait.BlockTrait;
+import org.spongepowered.api.world.schematic.BlockPalette;
+
+/**
+ * Benchmarks {@link BlockStateResourceNameMapper#map(BlockState)} with a mix of block-states that have a mapping and block-states that don't.<br>
+ * The sponge block-states and the block-palette are proxies that only implement what the mapper uses.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class BlockStateMapperBenchmark {
+
+	private static final String[] COLORS = {"white", "orange", "magenta", "light_blue", "yellow", "lime", "pink", "gray", "silver", "cyan", "purple", "blue", "brown", "green", "red", "black"};
+	
+	private BlockStateResourceNameMapper mapper;
+	private BlockStateResourceNameMapper unindexedMapper;
+	private BlockState[] states;
+	private int next;
+	
+	@Setup
+	public void setup() throws IOException {
+		List<BlockState> states = new ArrayList<>();
+		states.add(createBlockState("minecraft:air"));
+		states.add(createBlockState("minecraft:dirt", "snowy", "false", "variant", "dirt"));
+		states.add(createBlockState("minecraft:grass", "snowy", "false"));
+		for (String variant : new String[] {"stone", "granite", "smooth_granite", "diorite", "smooth_diorite", "andesite", "smooth_andesite"}) {
+			states.add(createBlockState("minecraft:stone", "variant", variant));
+		}
+		for (String color : COLORS) {
+			states.add(createBlockState("minecraft:carpet", "color", color));
+			states.add(createBlockState("minecraft:wool", "color", color));
+		}
+		for (String variant : new String[] {"oak", "spruce", "birch", "jungle"}) {
+			for (String axis : new String[] {"x", "y", "z", "none"}) {
+				states.add(createBlockState("minecraft:log", "axis", axis, "variant", variant));
+			}
+			states.add(createBlockState("minecraft:leaves", "check_decay", "false", "decayable", "true", "variant", variant));
+		}
+		for (int level = 0; level < 16; level++) {
+			states.add(createBlockState("minecraft:water", "level", String.valueOf(level)));
+		}
+		for (String facing : new String[] {"north", "south", "east", "west"}) {
+			for (String half : new String[] {"top", "bottom"}) {
+				states.add(createBlockState("minecraft:oak_stairs", "facing", facing, "half", half, "shape", "straight"));
+			}
+		}
+		
+		//shuffled deterministically, so the access-pattern is not sequential by block-type
+		Collections.shuffle(states, new Random(0));
+		this.states = states.toArray(new BlockState[states.size()]);
+		
+		mapper = BlockStateResourceNameMapper.load(createBlockPalette(this.states));
+		unindexedMapper = BlockStateResourceNameMapper.load();
+	}
+	
+	/**
+	 * The states are in the palette, like the states of the server
+	 */
+	@Benchmark
+	public de.bluecolored.bluemap.api.BlockState map() {
+		BlockState state = states[next];
+		if (++next == states.length) next = 0;
+		return mapper.map(state);
+	}
+	
+	/**
+	 * The states are not in a palette, like block-states with extended properties
+	 */
+	@Benchmark
+	public de.bluecolored.bluemap.api.BlockState mapUnindexed() {
+		BlockState state = states[next];
+		if (++next == states.length) next = 0;
+		return unindexedMapper.map(state);
+	}
+	
+	/**
+	 * Creates a block-palette that contains the states with their index as id
+	 */
+	static BlockPalette createBlockPalette(BlockState[] states) {
+		Map<BlockState, Integer> ids = new IdentityHashMap<>();
+		for (int i = 0; i < states.length; i++) ids.put(states[i], i);
+		
+		return proxy(BlockPalette.class, (method, args) -> {
+			switch (method) {
+			case "getHighestId": return states.length - 1;
+			case "get":
+				if (args[0] instanceof Integer) {
+					int id = (Integer) args[0];
+					return Optional.ofNullable(id >= 0 && id < states.length ? states[id] : null);
+				}
+				return Optional.ofNullable(ids.get(args[0]));
+			default: return null;
+			}
+		});
+	}
+	
+	/**
+	 * Creates a sponge block-state with the given id and trait-values (name, value, name, value, ...).<br>
+	 * Like the states of the server, every created state is only equal to itself.
+	 */
+	static BlockState createBlockState(String id, String... traitValues) {
+		BlockType type = proxy(BlockType.class, (method, args) -> {
+			if (method.equals("getId")) return id;
+			return null;
+		});
+		
+		Map<BlockTrait<?>, String> traits = new LinkedHashMap<>();
+		for (int i = 0; i < traitValues.length; i += 2) {
+			String name = traitValues[i];
+			traits.put(proxy(BlockTrait.class, (method, args) -> {
+				if (method.equals("getName")) return name;
+				return null;
+			}), traitValues[i + 1]);
+		}
+		
+		Collection<BlockTrait<?>> traitKeys = Collections.unmodifiableCollection(traits.keySet());
+		return proxy(BlockState.class, (method, args) -> {
+			switch (method) {
+			case "getType": return type;
+			case "getId": return id + traits.values();
+			case "getTraits": return traitKeys;
+			case "getTraitValue": return Optional.ofNullable(traits.get(args[0]));
+			default: return null;
+			}
+		});
+	}
+	
+	@SuppressWarnings("unchecked")
+	private static <T> T proxy(Class<?> type, ProxyHandler handler) {
+		return (T) Proxy.newProxyInstance(type.getClassLoader(), new Class<?>[] {type}, (proxy, method, args) -> {
+			switch (method.getName()) {
+			case "hashCode": return System.identityHashCode(proxy);
+			case "equals": return proxy == args[0];
+			case "toString": return type.getSimpleName() + "@" + Integer.toHexString(System.identityHashCode(proxy));
+			default: return handler.invoke(method.getName(), args);
+			}
+		});
+	}
+	
+	@FunctionalInterface
+	private interface ProxyHandler {
+		Object invoke(String method, Object[] args);
+	}
+	
+}
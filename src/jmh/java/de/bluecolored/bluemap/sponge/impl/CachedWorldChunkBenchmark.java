@@ -0,0 +1,196 @@
+/*
+ * This file is part of BlueMapSponge, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) Blue (Lukas Rieger) <https://bluecolored.de>
+ * Copyright (c) contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package de.bluecolored.bluemap.sponge.impl;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import com.flowpowered.math.vector.Vector3i;
+
+import de.bluecolored.bluemap.api.ChunkNotGeneratedException;
+import de.bluecolored.bluemap.sponge.cli.CliLogger;
+import de.bluecolored.bluemap.util.AABB;
+
+/**
+ * Benchmarks {@link CachedWorldChunkImpl#getBlock(Vector3i)} by reading every block of a hires-tile sized volume 
+ * (with the one block border that the renderer reads), the way a tile-render accesses its world-chunk.<br>
+ * <br>
+ * {@link #getBlockLegacy(Blackhole)} reads the same blocks with the per-block sponge-lookups the world used before the 
+ * chunk-snapshots, {@link #getBlockColdSpongeSnapshots(Blackhole)} copies the snapshots from the same sponge-world.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class CachedWorldChunkBenchmark {
+
+	private static final int TILE_SIZE = 32;
+	private static final int AREA_SIZE = 4;
+	
+	private WorldImpl world;
+	private AABB bounds;
+	private CachedWorldChunkImpl warmChunk;
+	
+	private WorldImpl spongeSnapshotWorld;
+	private LegacyBlockAccess legacyAccess;
+	
+	@Setup
+	public void setup() throws IOException, ChunkNotGeneratedException {
+		//the tiles of the area and their borders
+		int maxChunk = Math.floorDiv(TILE_SIZE * AREA_SIZE, 16);
+		
+		SyntheticWorldSource source = new SyntheticWorldSource();
+		source.generateChunks(-1, -1, 3, 3);
+		BlockStateResourceNameMapper bsrnm = BlockStateResourceNameMapper.load();
+		CliLogger logger = new CliLogger(System.out, System.err, false);
+		world = source.createWorld(bsrnm, logger);
+		
+		SyntheticWorldSource spongeSource = new SyntheticWorldSource(true);
+		spongeSource.generateChunks(-1, -1, maxChunk, maxChunk);
+		spongeSnapshotWorld = spongeSource.createWorld(bsrnm, logger);
+		legacyAccess = new LegacyBlockAccess(spongeSnapshotWorld, SyntheticSpongeWorld.create(spongeSource), bsrnm);
+		
+		bounds = getTileBounds(0, 0);
+		
+		warmChunk = new CachedWorldChunkImpl(world, bounds);
+		readAll(warmChunk, bounds, null);
+	}
+	
+	/**
+	 * Every block is read once from the chunk-snapshots that are cached by the world, like the first pass of a render 
+	 * when a neighbouring tile has been rendered before
+	 */
+	@Benchmark
+	public void getBlockCold(Blackhole blackhole) throws ChunkNotGeneratedException {
+		readAll(new CachedWorldChunkImpl(world, bounds), bounds, blackhole);
+	}
+	
+	/**
+	 * Every block is read once and all chunk-snapshots are created again, like the first pass of a render 
+	 * of a tile whose chunks are not cached
+	 */
+	@Benchmark
+	public void getBlockColdSnapshots(Blackhole blackhole) throws ChunkNotGeneratedException {
+		invalidateSnapshots(world, bounds);
+		readAll(new CachedWorldChunkImpl(world, bounds), bounds, blackhole);
+	}
+	
+	/**
+	 * Every block is read once and all chunk-snapshots are copied again from the sponge-world, 
+	 * like the first pass of a render of a tile whose chunks are loaded but not cached
+	 */
+	@Benchmark
+	public void getBlockColdSpongeSnapshots(Blackhole blackhole) throws ChunkNotGeneratedException {
+		invalidateSnapshots(spongeSnapshotWorld, bounds);
+		readAll(new CachedWorldChunkImpl(spongeSnapshotWorld, bounds), bounds, blackhole);
+	}
+	
+	/**
+	 * Every block of 4x4 neighbouring tiles is read once and all chunk-snapshots are copied again from the sponge-world, 
+	 * like a full render where the tiles share the snapshots of their chunks. The time is per tile.
+	 */
+	@Benchmark
+	@OperationsPerInvocation(AREA_SIZE * AREA_SIZE)
+	public void getBlockColdSpongeSnapshotsArea(Blackhole blackhole) throws ChunkNotGeneratedException {
+		for (int tileX = 0; tileX < AREA_SIZE; tileX++) {
+			for (int tileZ = 0; tileZ < AREA_SIZE; tileZ++) {
+				invalidateSnapshots(spongeSnapshotWorld, getTileBounds(tileX, tileZ));
+			}
+		}
+		
+		for (int tileX = 0; tileX < AREA_SIZE; tileX++) {
+			for (int tileZ = 0; tileZ < AREA_SIZE; tileZ++) {
+				AABB tileBounds = getTileBounds(tileX, tileZ);
+				readAll(new CachedWorldChunkImpl(spongeSnapshotWorld, tileBounds), tileBounds, blackhole);
+			}
+		}
+	}
+	
+	/**
+	 * Every block is read once from the sponge-world with its own location and property-lookups, 
+	 * like the first pass of a render before the chunk-snapshots
+	 */
+	@Benchmark
+	public void getBlockLegacy(Blackhole blackhole) {
+		blackhole.consume(legacyAccess.readAll(bounds));
+	}
+	
+	/**
+	 * Every block is already cached, like the neighbour-lookups while building the models
+	 */
+	@Benchmark
+	public void getBlockCached(Blackhole blackhole) throws ChunkNotGeneratedException {
+		readAll(warmChunk, bounds, blackhole);
+	}
+	
+	/**
+	 * The bounds of the blocks the renderer reads for that tile, with the one block border
+	 */
+	private static AABB getTileBounds(int tileX, int tileZ) {
+		Vector3i min = new Vector3i(tileX * TILE_SIZE - 1, SyntheticWorldSource.MIN_Y, tileZ * TILE_SIZE - 1);
+		return new AABB(min, min.add(TILE_SIZE + 1, SyntheticWorldSource.MAX_Y - SyntheticWorldSource.MIN_Y, TILE_SIZE + 1));
+	}
+	
+	private static void invalidateSnapshots(WorldImpl world, AABB bounds) {
+		Vector3i min = bounds.getMin().floor().toInt();
+		Vector3i max = bounds.getMax().floor().toInt();
+		
+		for (int chunkX = Math.floorDiv(min.getX(), 16); chunkX <= Math.floorDiv(max.getX(), 16); chunkX++) {
+			for (int chunkZ = Math.floorDiv(min.getZ(), 16); chunkZ <= Math.floorDiv(max.getZ(), 16); chunkZ++) {
+				world.invalidateChunkSnapshot(chunkX, chunkZ);
+			}
+		}
+	}
+	
+	private static void readAll(CachedWorldChunkImpl chunk, AABB bounds, Blackhole blackhole) throws ChunkNotGeneratedException {
+		Vector3i min = bounds.getMin().floor().toInt();
+		Vector3i max = bounds.getMax().floor().toInt();
+		
+		for (int y = min.getY(); y <= max.getY(); y++) {
+			for (int z = min.getZ(); z <= max.getZ(); z++) {
+				for (int x = min.getX(); x <= max.getX(); x++) {
+					Object block = chunk.getBlock(new Vector3i(x, y, z));
+					if (blackhole != null) blackhole.consume(block);
+				}
+			}
+		}
+	}
+	
+}
@@ -0,0 +1,122 @@
+/*
+ * This file is part of BlueMapSponge, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) Blue (Lukas Rieger) <https://bluecolored.de>
+ * Copyright (c) contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package de.bluecolored.bluemap.sponge.impl;
+
+import java.util.Collections;
+import java.util.Set;
+
+import org.spongepowered.api.block.BlockState;
+import org.spongepowered.api.block.BlockType;
+import org.spongepowered.api.block.BlockTypes;
+import org.spongepowered.api.data.Property;
+import org.spongepowered.api.data.property.block.FullBlockSelectionBoxProperty;
+import org.spongepowered.api.data.property.block.GroundLuminanceProperty;
+import org.spongepowered.api.data.property.block.SkyLuminanceProperty;
+import org.spongepowered.api.data.property.block.SolidCubeProperty;
+import org.spongepowered.api.world.Location;
+
+import com.flowpowered.math.vector.Vector3i;
+import com.google.common.collect.Sets;
+
+import de.bluecolored.bluemap.api.Block;
+import de.bluecolored.bluemap.api.World;
+import de.bluecolored.bluemap.util.AABB;
+
+/**
+ * Reads blocks the way the {@link WorldImpl} did before it used chunk-snapshots: every single block is looked up in the 
+ * sponge-world with a check that its chunk is loaded, the highest y of its column, a {@link Location}, its extended state 
+ * and four property-lookups.<br>
+ * This is the baseline the chunk-snapshots are compared to in the {@link CachedWorldChunkBenchmark}.
+ */
+public class LegacyBlockAccess {
+
+	private static final Set<BlockType> OCCLUDING_BLOCKS = Collections.unmodifiableSet(Sets.newHashSet(
+				BlockTypes.LEAVES,
+				BlockTypes.LEAVES2
+			));
+	
+	private World world;
+	private org.spongepowered.api.world.World spongeWorld;
+	private BlockStateResourceNameMapper bsrnm;
+	
+	public LegacyBlockAccess(World world, org.spongepowered.api.world.World spongeWorld, BlockStateResourceNameMapper bsrnm) {
+		this.world = world;
+		this.spongeWorld = spongeWorld;
+		this.bsrnm = bsrnm;
+	}
+	
+	public Block getBlock(Vector3i pos) {
+		Vector3i chunkPosition = new Vector3i(Math.floorDiv(pos.getX(), 16), 0, Math.floorDiv(pos.getZ(), 16));
+		if (!spongeWorld.getChunk(chunkPosition).isPresent()) throw new IllegalStateException("Chunk is not loaded: " + chunkPosition);
+		
+		int sunHeight = spongeWorld.getHighestYAt(pos.getX(), pos.getZ());
+
+		//try to shortcut block generation
+		if (pos.getY() > sunHeight){
+			BlockType blockType = spongeWorld.getBlockType(pos);
+			if (blockType == BlockTypes.AIR){
+				return new BlockImpl(world, pos, new BlockData(BlockStateResourceNameMapper.AIR, 15, 0, BiomeRegistry.getId(spongeWorld.getBiome(pos)), false, false));
+			}
+		}
+		
+		Location<org.spongepowered.api.world.World> location = spongeWorld.getLocation(pos);
+		BlockState blockState = location.getBlock().withExtendedProperties(location);
+		
+		double sunLight = getPropertyOrDefault(location, SkyLuminanceProperty.class, 15d);
+		double blockLight = getPropertyOrDefault(location, GroundLuminanceProperty.class, 15d);
+		boolean solidCube = getPropertyOrDefault(location, SolidCubeProperty.class, false);
+		boolean fullBox = getPropertyOrDefault(location, FullBlockSelectionBoxProperty.class, false);
+		boolean isCulling = fullBox && solidCube && sunLight == 0 && blockLight == 0;
+		boolean isOccluding = isCulling || OCCLUDING_BLOCKS.contains(blockState.getType());
+		
+		return new BlockImpl(world, pos, new BlockData(bsrnm.map(blockState), (int) sunLight, (int) blockLight, BiomeRegistry.getId(location.getBiome()), isCulling, isOccluding));
+	}
+	
+	/**
+	 * Reads every block in that area once into a jagged array, like the CachedWorldChunkImpl did
+	 */
+	public Block[][][] readAll(AABB bounds) {
+		Vector3i min = bounds.getMin().floor().toInt();
+		Vector3i size = bounds.getSize().floor().toInt().add(1, 1, 1);
+		
+		Block[][][] blocks = new Block[size.getX()][size.getY()][size.getZ()];
+		for (int y = 0; y < size.getY(); y++) {
+			for (int z = 0; z < size.getZ(); z++) {
+				for (int x = 0; x < size.getX(); x++) {
+					blocks[x][y][z] = getBlock(new Vector3i(min.getX() + x, min.getY() + y, min.getZ() + z));
+				}
+			}
+		}
+		
+		return blocks;
+	}
+	
+	private <V, K> V getPropertyOrDefault(Location<org.spongepowered.api.world.World> loc, Class<? extends Property<K, V>> propertyClass, V defaultValue){
+		Property<K, V> property = loc.getProperty(propertyClass).orElse(null);
+		if (property == null) return defaultValue;
+		return property.getValue();
+	}
+	
+}
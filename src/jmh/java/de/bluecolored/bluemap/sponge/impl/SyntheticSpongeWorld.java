@@ -0,0 +1,236 @@
+/*
+ * This file is part of BlueMapSponge, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) Blue (Lukas Rieger) <https://bluecolored.de>
+ * Copyright (c) contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package de.bluecolored.bluemap.sponge.impl;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+
+import org.spongepowered.api.block.BlockState;
+import org.spongepowered.api.block.BlockType;
+import org.spongepowered.api.block.BlockTypes;
+import org.spongepowered.api.block.trait.BlockTrait;
+import org.spongepowered.api.data.property.block.FullBlockSelectionBoxProperty;
+import org.spongepowered.api.data.property.block.GroundLuminanceProperty;
+import org.spongepowered.api.data.property.block.SkyLuminanceProperty;
+import org.spongepowered.api.data.property.block.SolidCubeProperty;
+import org.spongepowered.api.world.Chunk;
+import org.spongepowered.api.world.Location;
+import org.spongepowered.api.world.World;
+import org.spongepowered.api.world.biome.BiomeType;
+
+import com.flowpowered.math.vector.Vector3i;
+
+/**
+ * A sponge-{@link World} that shows the generated chunks of a {@link SyntheticWorldSource}, so the code that reads blocks from 
+ * a live sponge-world can be benchmarked without a server.<br>
+ * <br>
+ * The world, its block-states and biomes are dynamic proxies that only implement the methods the block-access uses, and 
+ * every lookup is an array-read. So this is a lower bound of what the same calls cost on a real server.
+ */
+public class SyntheticSpongeWorld implements InvocationHandler {
+
+	/** the minecraft 1.12 states of the palette of the {@link SyntheticWorldSource}, as a server would have them */
+	private static final String[] SPONGE_PALETTE = {
+			"minecraft:air",
+			"minecraft:stone[variant=stone]",
+			"minecraft:dirt[snowy=false,variant=dirt]",
+			"minecraft:grass[snowy=false]",
+			"minecraft:sand[variant=sand]",
+			"minecraft:water[level=0]",
+			"minecraft:log[axis=y,variant=oak]",
+			"minecraft:leaves[check_decay=false,decayable=true,variant=oak]"
+	};
+
+	private final SyntheticWorldSource source;
+	private final UUID uuid;
+	private final World world;
+	
+	private final BlockState[] states;
+	private final BiomeType biome;
+	private final Optional<Chunk> chunk;
+	
+	private SyntheticSpongeWorld(SyntheticWorldSource source) {
+		this.source = source;
+		this.uuid = UUID.nameUUIDFromBytes("synthetic-sponge".getBytes());
+		this.world = proxy(World.class, this);
+		
+		this.states = new BlockState[SPONGE_PALETTE.length];
+		for (int i = 0; i < states.length; i++) {
+			states[i] = createBlockState(SPONGE_PALETTE[i], isSolid(i));
+		}
+		
+		this.biome = createCatalogType(BiomeType.class, "minecraft:plains");
+		
+		//all chunks are always loaded
+		this.chunk = Optional.of(proxy(Chunk.class, (proxy, method, args) -> invokeObjectMethod(proxy, method, args)));
+	}
+	
+	/**
+	 * Creates a sponge-world of the chunks of that source, the chunks are generated when they are accessed the first time.
+	 */
+	public static World create(SyntheticWorldSource source) {
+		return new SyntheticSpongeWorld(source).world;
+	}
+	
+	@Override
+	public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+		switch (method.getName()) {
+		case "getBlock":
+			if (args.length == 1) return getBlock((Vector3i) args[0]);
+			return states[source.getState((int) args[0], (int) args[1], (int) args[2])];
+		case "getBlockType":
+			BlockState state = args.length == 1 ? getBlock((Vector3i) args[0]) : states[source.getState((int) args[0], (int) args[1], (int) args[2])];
+			
+			//the air-type is compared by identity
+			return state == states[0] ? BlockTypes.AIR : state.getType();
+		case "getLocation":
+			if (args.length == 1) return new Location<>(world, (Vector3i) args[0]);
+			return new Location<>(world, (int) args[0], (int) args[1], (int) args[2]);
+		case "getProperty":
+			if (args.length == 2) return getProperty((Vector3i) args[0], (Class<?>) args[1]);
+			return getProperty(new Vector3i((int) args[0], (int) args[1], (int) args[2]), (Class<?>) args[3]);
+		case "getBiome":
+			return biome;
+		case "getChunk":
+			return chunk;
+		case "getHighestYAt":
+			return source.getHighestBlockY((int) args[0], (int) args[1]);
+		case "getBlockMin":
+			return source.getBoundaries().getMin().floor().toInt();
+		case "getBlockMax":
+			return source.getBoundaries().getMax().floor().toInt();
+		case "getName":
+			return source.getName();
+		case "getSeaLevel":
+			return source.getSeaLevel();
+		case "getUniqueId":
+			return uuid;
+		default:
+			return invokeObjectMethod(proxy, method, args);
+		}
+	}
+	
+	private BlockState getBlock(Vector3i pos) {
+		return states[source.getState(pos.getX(), pos.getY(), pos.getZ())];
+	}
+	
+	private Optional<?> getProperty(Vector3i pos, Class<?> propertyClass) {
+		byte light = source.getLight(pos.getX(), pos.getY(), pos.getZ());
+		
+		if (propertyClass == SkyLuminanceProperty.class) return Optional.of(new SkyLuminanceProperty((light >> 4) & 0xF));
+		if (propertyClass == GroundLuminanceProperty.class) return Optional.of(new GroundLuminanceProperty(light & 0xF));
+		return getBlockProperty(isSolid(source.getState(pos.getX(), pos.getY(), pos.getZ())), propertyClass);
+	}
+	
+	private static Optional<?> getBlockProperty(boolean solid, Object propertyClass) {
+		if (propertyClass == SolidCubeProperty.class) return Optional.of(new SolidCubeProperty(solid));
+		if (propertyClass == FullBlockSelectionBoxProperty.class) return Optional.of(new FullBlockSelectionBoxProperty(solid));
+		return Optional.empty();
+	}
+	
+	private boolean isSolid(int state) {
+		return (source.getPaletteFlags()[state] & BlockFlagTable.FLAG_SOLID) != 0;
+	}
+	
+	/**
+	 * Creates a block-state of a serialized state like <code>minecraft:log[axis=y,variant=oak]</code>
+	 */
+	private static BlockState createBlockState(String serializedState, boolean solid) {
+		int traitsStart = serializedState.indexOf('[');
+		BlockType type = createCatalogType(BlockType.class, traitsStart < 0 ? serializedState : serializedState.substring(0, traitsStart));
+		
+		List<BlockTrait<?>> traits = new ArrayList<>();
+		Map<BlockTrait<?>, String> values = new HashMap<>();
+		if (traitsStart >= 0) {
+			for (String property : serializedState.substring(traitsStart + 1, serializedState.length() - 1).split(",")) {
+				String[] keyValue = property.split("=", 2);
+				BlockTrait<?> trait = createCatalogType(BlockTrait.class, keyValue[0]);
+				traits.add(trait);
+				values.put(trait, keyValue[1]);
+			}
+		}
+		
+		return proxy(BlockState.class, new InvocationHandler() {
+			@Override
+			public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+				switch (method.getName()) {
+				case "getType":
+					return type;
+				case "getId":
+					return type.getId();
+				case "withExtendedProperties":
+					return proxy;
+				case "getTraits":
+					return Collections.unmodifiableList(traits);
+				case "getTraitValue":
+					return Optional.ofNullable(values.get(args[0]));
+				case "getProperty":
+					return getBlockProperty(solid, args[0]);
+				default:
+					return invokeObjectMethod(proxy, method, args);
+				}
+			}
+		});
+	}
+	
+	private static <T> T createCatalogType(Class<T> type, String id) {
+		return proxy(type, (proxy, method, args) -> {
+			switch (method.getName()) {
+			case "getId":
+			case "getName":
+				return id;
+			default:
+				return invokeObjectMethod(proxy, method, args);
+			}
+		});
+	}
+	
+	private static Object invokeObjectMethod(Object proxy, Method method, Object[] args) {
+		switch (method.getName()) {
+		case "hashCode":
+			return System.identityHashCode(proxy);
+		case "equals":
+			return proxy == args[0];
+		case "toString":
+			return proxy.getClass().getInterfaces()[0].getSimpleName() + "@" + Integer.toHexString(System.identityHashCode(proxy));
+		default:
+			throw new UnsupportedOperationException(method.toString());
+		}
+	}
+	
+	@SuppressWarnings("unchecked")
+	private static <T> T proxy(Class<T> type, InvocationHandler handler) {
+		return (T) Proxy.newProxyInstance(SyntheticSpongeWorld.class.getClassLoader(), new Class<?>[] { type }, handler);
+	}
+	
+}
@@ -0,0 +1,281 @@
+/*
+ * This file is part of BlueMapSponge, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) Blue (Lukas Rieger) <https://bluecolored.de>
+ * Copyright (c) contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package de.bluecolored.bluemap.sponge.impl;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+
+import javax.annotation.Nullable;
+
+import com.flowpowered.math.vector.Vector3i;
+
+import de.bluecolored.bluemap.api.BlockState;
+import de.bluecolored.bluemap.logger.Logger;
+import de.bluecolored.bluemap.sponge.RenderGovernor;
+import de.bluecolored.bluemap.sponge.WorldUtil;
+import de.bluecolored.bluemap.sponge.anvil.RegionStorage;
+import de.bluecolored.bluemap.util.AABB;
+
+/**
+ * An in-memory {@link WorldSource} with generated terrain (hills of stone, dirt and grass, water, sand and some trees), so the 
+ * block-access and render code can be benchmarked without a server.<br>
+ * The terrain only depends on the position, so every run benchmarks the same blocks.<br>
+ * The generated chunk-data is kept, so a {@link WorldImpl} of this source only spends the time to create the 
+ * chunk-snapshots from it, like it would with the data of a loaded chunk. Alternatively the snapshots are copied block by block 
+ * from a {@link SyntheticSpongeWorld} of the chunks, the way the {@link SpongeWorldSource} copies them from a loaded chunk.
+ */
+public class SyntheticWorldSource implements WorldSource {
+
+	public static final int MIN_Y = 0;
+	public static final int MAX_Y = 255;
+	public static final int SEA_LEVEL = 63;
+	
+	private static final int AIR = 0, STONE = 1, DIRT = 2, GRASS = 3, SAND = 4, WATER = 5, LOG = 6, LEAVES = 7;
+	
+	private static final BlockState[] PALETTE = {
+			BlockStateResourceNameMapper.AIR,
+			BlockStateImpl.of("stone", Collections.emptyMap()),
+			BlockStateImpl.of("dirt", Collections.emptyMap()),
+			BlockStateImpl.of("grass_block", properties("snowy", "false")),
+			BlockStateImpl.of("sand", Collections.emptyMap()),
+			BlockStateImpl.of("water", properties("level", "0")),
+			BlockStateImpl.of("oak_log", properties("axis", "y")),
+			BlockStateImpl.of("oak_leaves", properties("distance", "1", "persistent", "false"))
+	};
+	
+	private static final byte SOLID = BlockFlagTable.FLAG_SOLID | BlockFlagTable.FLAG_OCCLUDING;
+	private static final byte[] PALETTE_FLAGS = { 0, SOLID, SOLID, SOLID, SOLID, 0, SOLID, 0 };
+	
+	private final AABB bounds;
+	private final Map<Long, ChunkData> chunks;
+	
+	@Nullable
+	private final org.spongepowered.api.world.World spongeWorld;
+	
+	public SyntheticWorldSource() {
+		this(false);
+	}
+	
+	/**
+	 * @param copyFromSpongeWorld if the chunk-snapshots are copied from the {@link SyntheticSpongeWorld} of this source instead of the raw chunk-data
+	 */
+	public SyntheticWorldSource(boolean copyFromSpongeWorld) {
+		this.bounds = new AABB(new Vector3i(-30000000, MIN_Y, -30000000), new Vector3i(30000000, MAX_Y, 30000000));
+		this.chunks = new ConcurrentHashMap<>();
+		this.spongeWorld = copyFromSpongeWorld ? SyntheticSpongeWorld.create(this) : null;
+	}
+	
+	/**
+	 * Creates a world of this source with the default block-flags and without a render-throttle.
+	 */
+	public WorldImpl createWorld(BlockStateResourceNameMapper bsrnm, Logger logger) {
+		RenderGovernor governor = new RenderGovernor(false, 50, 1, 1);
+		return new WorldImpl(this, governor, bsrnm, new BlockFlagTable(null, Collections.emptyList()), UUID.nameUUIDFromBytes("synthetic".getBytes()), logger);
+	}
+	
+	/**
+	 * Generates all chunks in that area, so they don't need to be generated while benchmarking.
+	 */
+	public void generateChunks(int minChunkX, int minChunkZ, int maxChunkX, int maxChunkZ) {
+		for (int chunkX = minChunkX; chunkX <= maxChunkX; chunkX++) {
+			for (int chunkZ = minChunkZ; chunkZ <= maxChunkZ; chunkZ++) {
+				getChunkData(chunkX, chunkZ);
+			}
+		}
+	}
+	
+	@Override
+	public ChunkSnapshot createChunkSnapshot(WorldImpl world, int chunkX, int chunkZ) {
+		if (spongeWorld != null) return ChunkSnapshot.create(world, spongeWorld, chunkX, chunkZ);
+		
+		ChunkData data = getChunkData(chunkX, chunkZ);
+		return ChunkSnapshot.create(world, chunkX, chunkZ, MIN_Y, MAX_Y, PALETTE, PALETTE_FLAGS, data.states, data.light, data.biomes);
+	}
+	
+	/**
+	 * The palette-index of the block at that position
+	 */
+	short getState(int x, int y, int z) {
+		return getChunkData(x >> 4, z >> 4).states[index(x & 0xF, y, z & 0xF)];
+	}
+	
+	/**
+	 * The sky-light (upper 4 bits) and block-light (lower 4 bits) of the block at that position
+	 */
+	byte getLight(int x, int y, int z) {
+		return getChunkData(x >> 4, z >> 4).light[index(x & 0xF, y, z & 0xF)];
+	}
+	
+	/**
+	 * The y of the highest block that is not air in that column
+	 */
+	int getHighestBlockY(int x, int z) {
+		return getChunkData(x >> 4, z >> 4).heights[(z & 0xF) * 16 + (x & 0xF)];
+	}
+	
+	byte[] getPaletteFlags() {
+		return PALETTE_FLAGS;
+	}
+	
+	private ChunkData getChunkData(int chunkX, int chunkZ) {
+		return chunks.computeIfAbsent(WorldUtil.packXZ(chunkX, chunkZ), key -> generateChunk(chunkX, chunkZ));
+	}
+	
+	private ChunkData generateChunk(int chunkX, int chunkZ) {
+		int height = MAX_Y - MIN_Y + 1;
+		short[] states = new short[16 * 16 * height];
+		byte[] light = new byte[states.length];
+		int[] heights = new int[16 * 16];
+		int[] biomes = new int[16 * 16];
+		Arrays.fill(biomes, BiomeRegistry.getId("plains"));
+		
+		for (int z = 0; z < 16; z++) {
+			for (int x = 0; x < 16; x++) {
+				int worldX = chunkX * 16 + x;
+				int worldZ = chunkZ * 16 + z;
+				int terrainHeight = terrainHeight(worldX, worldZ);
+				boolean beach = terrainHeight <= SEA_LEVEL + 1;
+				
+				for (int y = MIN_Y; y <= MAX_Y; y++) {
+					int state;
+					if (y <= terrainHeight - 4) state = STONE;
+					else if (y < terrainHeight) state = beach ? SAND : DIRT;
+					else if (y == terrainHeight) state = beach ? SAND : GRASS;
+					else if (y <= SEA_LEVEL) state = WATER;
+					else state = AIR;
+					
+					states[index(x, y, z)] = (short) state;
+					light[index(x, y, z)] = (byte) (y > terrainHeight ? 15 << 4 : 0);
+				}
+				
+				//trees are kept inside of the chunk, so the chunks can be generated independently
+				if (!beach && x >= 2 && x <= 13 && z >= 2 && z <= 13 && Math.floorMod(worldX * 31 + worldZ * 17 + worldX * worldZ, 61) == 0) {
+					placeTree(states, x, terrainHeight + 1, z);
+				}
+			}
+		}
+		
+		for (int column = 0; column < heights.length; column++) {
+			int y = MAX_Y;
+			while (y > MIN_Y && states[index(column & 0xF, y, column >> 4)] == AIR) y--;
+			heights[column] = y;
+		}
+		
+		return new ChunkData(states, light, heights, biomes);
+	}
+	
+	private static void placeTree(short[] states, int x, int y, int z) {
+		for (int dy = 3; dy <= 5; dy++) {
+			int radius = dy == 5 ? 1 : 2;
+			for (int dx = -radius; dx <= radius; dx++) {
+				for (int dz = -radius; dz <= radius; dz++) {
+					states[index(x + dx, y + dy, z + dz)] = LEAVES;
+				}
+			}
+		}
+		
+		for (int dy = 0; dy < 5; dy++) {
+			states[index(x, y + dy, z)] = LOG;
+		}
+	}
+	
+	private static int terrainHeight(int x, int z) {
+		return SEA_LEVEL + (int) (8 * Math.sin(x / 23d) + 6 * Math.cos(z / 17d) + 3 * Math.sin((x + z) / 7d));
+	}
+	
+	private static int index(int x, int y, int z) {
+		return ((y - MIN_Y) * 16 + z) * 16 + x;
+	}
+	
+	private static Map<String, String> properties(String... keyValues) {
+		Map<String, String> properties = new HashMap<>();
+		for (int i = 0; i < keyValues.length; i += 2) {
+			properties.put(keyValues[i], keyValues[i + 1]);
+		}
+		return properties;
+	}
+	
+	@Override
+	public ChunkSnapshot readChunkSnapshot(WorldImpl world, int chunkX, int chunkZ) {
+		return null;
+	}
+	
+	@Override
+	public CompletableFuture<Boolean> requestChunk(int chunkX, int chunkZ) {
+		return CompletableFuture.completedFuture(true);
+	}
+	
+	@Override
+	public boolean isChunkLoaded(int chunkX, int chunkZ) {
+		return false;
+	}
+	
+	@Override
+	public RegionStorage getRegionStorage() {
+		return null;
+	}
+	
+	@Override
+	public AABB getBoundaries() {
+		return bounds;
+	}
+	
+	@Override
+	public String getName() {
+		return "synthetic";
+	}
+	
+	@Override
+	public int getSeaLevel() {
+		return SEA_LEVEL;
+	}
+	
+	@Override
+	public Vector3i getSpawnPoint() {
+		return new Vector3i(0, terrainHeight(0, 0) + 1, 0);
+	}
+	
+	private static class ChunkData {
+		
+		private final short[] states;
+		private final byte[] light;
+		private final int[] heights;
+		private final int[] biomes;
+		
+		private ChunkData(short[] states, byte[] light, int[] heights, int[] biomes) {
+			this.states = states;
+			this.light = light;
+			this.heights = heights;
+			this.biomes = biomes;
+		}
+		
+	}
+	
+}
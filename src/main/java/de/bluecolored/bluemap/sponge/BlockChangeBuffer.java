@@ -0,0 +1,124 @@
+/*
+ * This file is part of BlueMapSponge, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) Blue (Lukas Rieger) <https://bluecolored.de>
+ * Copyright (c) contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package de.bluecolored.bluemap.sponge;
+
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A bounded, lock-free multi-producer single-consumer ring-buffer for block-changes.<br>
+ * Each entry consists of the world-uuid and the packed block-position ({@link WorldUtil#packBlockPos(int, int, int)}).
+ */
+public class BlockChangeBuffer {
+
+	private final int mask;
+	private final UUID[] worlds;
+	private final long[] positions;
+	
+	/** the sequence of each slot, the slot is writable if sequence == tail and readable if sequence == head + 1 */
+	private final AtomicLongArray sequences;
+	private final AtomicLong tail;
+	private long head;
+	
+	/**
+	 * @param capacityBits the capacity of this buffer will be 2 ^ capacityBits
+	 */
+	public BlockChangeBuffer(int capacityBits) {
+		int capacity = 1 << capacityBits;
+		
+		this.mask = capacity - 1;
+		this.worlds = new UUID[capacity];
+		this.positions = new long[capacity];
+		
+		this.sequences = new AtomicLongArray(capacity);
+		for (int i = 0; i < capacity; i++) sequences.set(i, i);
+		
+		this.tail = new AtomicLong(0);
+		this.head = 0;
+	}
+	
+	/**
+	 * Adds a block-change to this buffer, can be called from any thread.
+	 * @return false if the buffer is full and the change could not be added
+	 */
+	public boolean offer(UUID world, long packedPosition) {
+		long pos = tail.get();
+		int index;
+		
+		while (true) {
+			index = (int) (pos & mask);
+			long diff = sequences.get(index) - pos;
+			
+			if (diff == 0) {
+				if (tail.compareAndSet(pos, pos + 1)) break;
+				pos = tail.get();
+			} else if (diff < 0) {
+				return false;
+			} else {
+				pos = tail.get();
+			}
+		}
+		
+		worlds[index] = world;
+		positions[index] = packedPosition;
+		sequences.lazySet(index, pos + 1);
+		
+		return true;
+	}
+	
+	/**
+	 * Removes all currently readable block-changes from this buffer and passes them to the consumer.<br>
+	 * This must only be called from one thread at a time.
+	 * @return the number of drained block-changes
+	 */
+	public int drain(BlockChangeConsumer consumer) {
+		int count = 0;
+		
+		while (true) {
+			int index = (int) (head & mask);
+			if (sequences.get(index) != head + 1) break;
+			
+			UUID world = worlds[index];
+			long position = positions[index];
+			worlds[index] = null;
+			sequences.lazySet(index, head + mask + 1);
+			head++;
+			
+			consumer.accept(world, position);
+			count++;
+		}
+		
+		return count;
+	}
+	
+	@FunctionalInterface
+	public interface BlockChangeConsumer {
+		
+		void accept(UUID world, long packedPosition);
+		
+	}
+	
+}
@@ -26,8 +26,10 @@
 
 import org.spongepowered.api.command.CommandException;
 import org.spongepowered.api.command.CommandResult;
+import org.spongepowered.api.command.CommandSource;
 import org.spongepowered.api.command.args.ChildCommandElementExecutor;
 import org.spongepowered.api.command.args.GenericArguments;
+import org.spongepowered.api.command.spec.CommandExecutor;
 import org.spongepowered.api.command.spec.CommandSpec;
 import org.spongepowered.api.entity.living.player.Player;
 import org.spongepowered.api.text.Text;
@@ -35,6 +37,8 @@
 import org.spongepowered.api.world.Locatable;
 import org.spongepowered.api.world.storage.WorldProperties;
 
+import de.bluecolored.bluemap.sponge.metrics.Metrics;
+import de.bluecolored.bluemap.sponge.metrics.Timer;
 import de.bluecolored.bluemap.sponge.task.WorldRenderTask;
 
 public class BlueMapCommands {
@@ -46,8 +50,10 @@ public BlueMapCommands(BlueMapSponge blueMap) {
 	}
 
 	public CommandSpec getCombinedCommand() {
-		ChildCommandElementExecutor childCommands = new ChildCommandElementExecutor(null, null, false);
+		ChildCommandElementExecutor childCommands = new ChildCommandElementExecutor(getStatusExecutor(), null, false);
 		
+		childCommands.register(getStatusCommand(), "status");
+		childCommands.register(getMetricsCommand(), "metrics");
 		childCommands.register(getRenderCommand(), "render");
 		childCommands.register(getSaveCommand(), "save");
 		childCommands.register(getReloadCommand(), "reload");
@@ -61,12 +67,89 @@ public CommandSpec getCombinedCommand() {
 				.build();
 	}
 	
+	public CommandSpec getStatusCommand() {
+		return CommandSpec.builder()
+				.description(Text.of("BlueMap status command"))
+				.executor(getStatusExecutor())
+				.build();
+	}
+	
+	private CommandExecutor getStatusExecutor() {
+		return (source, arguments) -> {
+			RenderGovernor governor = blueMap.getRenderGovernor();
+			if (blueMap.getRenderManager() == null || governor == null) throw new CommandException(Text.of("BlueMap is not loaded!"), false);
+			
+			source.sendMessage(Text.of(TextColors.BLUE, "BlueMap status:"));
+			source.sendMessage(Text.of(TextColors.GRAY, "Scheduled render-tickets: ", TextColors.WHITE, blueMap.getRenderManager().getScheduledTicketCount()));
+			source.sendMessage(Text.of(TextColors.GRAY, "Active render-threads: ", TextColors.WHITE, governor.getActiveWorkers() + "/" + governor.getMaxWorkers()));
+			
+			if (governor.isEnabled()) {
+				source.sendMessage(Text.of(TextColors.GRAY, "Tick-time: ", TextColors.WHITE, String.format("%.1fms", governor.getMspt()), TextColors.GRAY, " (target: " + String.format("%.1fms", governor.getTargetMspt()) + ")"));
+				source.sendMessage(Text.of(TextColors.GRAY, "Chunk-loads per tick: ", TextColors.WHITE, governor.getChunkLoadsPerTick()));
+			} else {
+				source.sendMessage(Text.of(TextColors.GRAY, "Render-throttle is disabled"));
+			}
+			
+			return CommandResult.success();
+		};
+	}
+	
+	public CommandSpec getMetricsCommand() {
+		return CommandSpec.builder()
+				.description(Text.of("BlueMap metrics command"))
+				.executor((source, arguments) -> {
+					source.sendMessage(Text.of(TextColors.BLUE, "BlueMap metrics:"));
+					
+					if (blueMap.getRenderManager() != null) {
+						source.sendMessage(Text.of(TextColors.GRAY, "Scheduled render-tickets: ", TextColors.WHITE, blueMap.getRenderManager().getScheduledTicketCount()));
+					}
+					
+					source.sendMessage(Text.of(TextColors.GRAY, "Tiles: ", 
+							TextColors.WHITE, Metrics.TILES_RENDERED.get(), TextColors.GRAY, " rendered, ", 
+							TextColors.WHITE, Metrics.TILES_SKIPPED.get(), TextColors.GRAY, " skipped, ", 
+							TextColors.WHITE, Metrics.TILES_FAILED.get(), TextColors.GRAY, " failed"));
+					source.sendMessage(Text.of(TextColors.GRAY, "Blocks read: ", TextColors.WHITE, Metrics.BLOCK_FETCHES.get()));
+					
+					sendTimer(source, "Tile-render", Metrics.TILE_RENDER);
+					sendTimer(source, "Chunk-read", Metrics.CHUNK_READ);
+					sendTimer(source, "Chunk-load wait", Metrics.CHUNK_LOAD_WAIT);
+					sendTimer(source, "Hires post-processing", Metrics.HIRES_POST_PROCESS);
+					sendTimer(source, "Lowres-save", Metrics.LOWRES_SAVE);
+					
+					return CommandResult.success();
+				})
+				.build();
+	}
+	
+	private void sendTimer(CommandSource source, String label, Timer timer) {
+		if (timer.getCount() == 0) {
+			source.sendMessage(Text.of(TextColors.GRAY, label + ": ", TextColors.WHITE, "-"));
+			return;
+		}
+		
+		source.sendMessage(Text.of(
+				TextColors.GRAY, label + ": ", TextColors.WHITE, timer.getCount(), TextColors.GRAY, "x, mean ", 
+				TextColors.WHITE, formatSeconds(timer.getMeanSeconds()), TextColors.GRAY, ", p50 ",
+				TextColors.WHITE, formatSeconds(timer.getQuantileSeconds(0.5)), TextColors.GRAY, ", p95 ",
+				TextColors.WHITE, formatSeconds(timer.getQuantileSeconds(0.95)), TextColors.GRAY, ", p99 ",
+				TextColors.WHITE, formatSeconds(timer.getQuantileSeconds(0.99))
+				));
+	}
+	
+	private String formatSeconds(double seconds) {
+		//quantiles are the upper bound of their bucket, so they are shown as such
+		if (Double.isInfinite(seconds)) return ">10s";
+		if (seconds >= 1) return String.format("%.1fs", seconds);
+		return String.format("%.1fms", seconds * 1000);
+	}
+	
 	public CommandSpec getRenderCommand() {
 		return CommandSpec.builder()
 				.description(Text.of("BlueMap render command"))
-				.arguments(GenericArguments.optional(GenericArguments.world(Text.of("world"))))
+				.arguments(GenericArguments.flags().flag("f").buildWith(GenericArguments.optional(GenericArguments.world(Text.of("world")))))
 				.executor((source, arguments) -> {
 					WorldProperties world = null;
+					boolean force = arguments.hasAny("f");
 					
 					if (source instanceof Locatable) {
 						world = ((Locatable) source).getWorld().getProperties();
@@ -83,9 +166,9 @@ public CommandSpec getRenderCommand() {
 							WorldRenderTask task;
 							
 							if (source instanceof Player) {
-								task = new WorldRenderTask(blueMap.getRenderManager(), map, ((Player) source).getUniqueId());
+								task = new WorldRenderTask(blueMap.getRenderManager(), blueMap.getRenderGovernor(), map, ((Player) source).getUniqueId(), force);
 							} else {
-								task = new WorldRenderTask(blueMap.getRenderManager(), map);
+								task = new WorldRenderTask(blueMap.getRenderManager(), blueMap.getRenderGovernor(), map, null, force);
 							}
 							
 							task.start();
@@ -101,9 +184,14 @@ public CommandSpec getSaveCommand() {
 		return CommandSpec.builder()
 				.description(Text.of("BlueMap save command"))
 				.executor((source, arguments) -> {
-					blueMap.save();
+					source.sendMessage(Text.of(TextColors.GOLD, "Saving BlueMap..."));
+					
+					//saving can take a while, so it doesn't happen on the server-thread
+					blueMap.getAsyncExecutor().execute(() -> {
+						blueMap.save();
+						blueMap.getSyncExecutor().execute(() -> source.sendMessage(Text.of(TextColors.GREEN, "BlueMap saved!")));
+					});
 					
-					source.sendMessage(Text.of(TextColors.GREEN, "BlueMap saved!"));
 					return CommandResult.success();
 				})
 				.build();
@@ -30,12 +30,18 @@
 import java.nio.file.Path;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Locale;
+import java.util.Map.Entry;
+
+import javax.annotation.Nullable;
 
 import org.apache.commons.io.FileUtils;
 
 import com.google.common.base.Preconditions;
 
 import de.bluecolored.bluemap.render.RenderSettings;
+import de.bluecolored.bluemap.sponge.hires.PostProcessingTileRenderer;
+import de.bluecolored.bluemap.sponge.task.TileOrder;
 import de.bluecolored.bluemap.web.WebServerConfig;
 import ninja.leaping.configurate.ConfigurationNode;
 import ninja.leaping.configurate.commented.CommentedConfigurationNode;
@@ -49,6 +55,8 @@ public class BlueMapConfig implements WebServerConfig {
 	private boolean webserverEnabled;
 	private int webserverPort;
 	private int webserverMaxConnections;
+	private long webserverCacheSize;
+	private boolean webserverMetricsEnabled;
 	private InetAddress webserverBindAdress;
 
 	private Path webRoot;
@@ -56,6 +64,17 @@ public class BlueMapConfig implements WebServerConfig {
 	
 	private int renderThreadCount;
 	
+	private boolean useRegionFiles;
+	
+	private int saveInterval;
+	private int updateDelay;
+	
+	private boolean renderThrottleEnabled;
+	private double renderThrottleTargetMspt;
+	private int renderThrottleMaxChunkLoadsPerTick;
+	
+	private Collection<BlockFlagConfig> blockFlagConfigs;
+	
 	private Collection<MapConfig> mapConfigs;
 	
 	private BlueMapConfig(File configFile) throws IOException {
@@ -73,6 +92,18 @@ private BlueMapConfig(File configFile) throws IOException {
 		renderThreadCount = rootNode.getNode("renderThreadCount").getInt(defaultCount);
 		if (renderThreadCount <= 0) renderThreadCount = defaultCount;
 		
+		useRegionFiles = rootNode.getNode("useRegionFiles").getBoolean(true);
+		
+		saveInterval = rootNode.getNode("saveInterval").getInt(60);
+		if (saveInterval < 0) saveInterval = 0;
+		
+		updateDelay = rootNode.getNode("updateDelay").getInt(60);
+		if (updateDelay < 0) updateDelay = 0;
+		
+		loadRenderThrottleConfig(rootNode.getNode("renderThrottle"));
+		
+		loadBlockFlagConfigs(rootNode.getNode("blockFlags"));
+		
 		loadMapConfigs(rootNode.getNode("maps"));
 	}
 	
@@ -85,7 +116,10 @@ private void loadWebConfig(ConfigurationNode node) throws IOException {
 
 		if (webserverEnabled) {
 			webserverPort = node.getNode("port").getInt(8100);
-			webserverMaxConnections = node.getNode("maxConnectionCount").getInt(100);
+			webserverMaxConnections = node.getNode("maxConnectionCount").getInt(1000);
+			webserverCacheSize = node.getNode("cacheSize").getLong(32) * 1024 * 1024;
+			if (webserverCacheSize < 0) throw new IOException("Invalid configuration: Node web.cacheSize can not be negative");
+			webserverMetricsEnabled = node.getNode("metrics").getBoolean(false);
 			
 			String webserverBindAdressString = node.getNode("ip").getString("");
 			if (webserverBindAdressString.isEmpty()) {
@@ -104,6 +138,22 @@ else if (webRoot != null)
 			throw new IOException("Invalid configuration: Node web.data is not defined in config");
 	}
 	
+	private void loadRenderThrottleConfig(ConfigurationNode node) throws IOException {
+		renderThrottleEnabled = node.getNode("enabled").getBoolean(true);
+		renderThrottleTargetMspt = node.getNode("targetMspt").getDouble(40);
+		renderThrottleMaxChunkLoadsPerTick = node.getNode("maxChunkLoadsPerTick").getInt(50);
+		
+		if (renderThrottleTargetMspt <= 0) throw new IOException("Invalid configuration: Node renderThrottle.targetMspt has to be greater than 0");
+		if (renderThrottleMaxChunkLoadsPerTick <= 0) throw new IOException("Invalid configuration: Node renderThrottle.maxChunkLoadsPerTick has to be greater than 0");
+	}
+	
+	private void loadBlockFlagConfigs(ConfigurationNode node) throws IOException {
+		blockFlagConfigs = new ArrayList<>();
+		for (Entry<Object, ? extends ConfigurationNode> blockFlagEntry : node.getChildrenMap().entrySet()) {
+			blockFlagConfigs.add(new BlockFlagConfig(blockFlagEntry.getKey().toString(), blockFlagEntry.getValue()));
+		}
+	}
+	
 	private void loadMapConfigs(ConfigurationNode node) throws IOException {
 		mapConfigs = new ArrayList<>();
 		for (ConfigurationNode mapConfigNode : node.getChildrenList()) {
@@ -129,6 +179,17 @@ public int getWebserverMaxConnections() {
 		return webserverMaxConnections;
 	}
 
+	/**
+	 * The maximum amount of bytes that the webserver keeps cached in memory
+	 */
+	public long getWebserverCacheSize() {
+		return webserverCacheSize;
+	}
+	
+	public boolean isWebserverMetricsEnabled() {
+		return webserverMetricsEnabled;
+	}
+
 	@Override
 	public InetAddress getWebserverBindAdress() {
 		return webserverBindAdress;
@@ -147,6 +208,34 @@ public int getRenderThreadCount() {
 		return renderThreadCount;
 	}
 	
+	public boolean isUseRegionFiles() {
+		return useRegionFiles;
+	}
+	
+	public int getSaveInterval() {
+		return saveInterval;
+	}
+	
+	public int getUpdateDelay() {
+		return updateDelay;
+	}
+	
+	public boolean isRenderThrottleEnabled() {
+		return renderThrottleEnabled;
+	}
+	
+	public double getRenderThrottleTargetMspt() {
+		return renderThrottleTargetMspt;
+	}
+	
+	public int getRenderThrottleMaxChunkLoadsPerTick() {
+		return renderThrottleMaxChunkLoadsPerTick;
+	}
+	
+	public Collection<BlockFlagConfig> getBlockFlagConfigs(){
+		return blockFlagConfigs;
+	}
+	
 	public Collection<MapConfig> getMapConfigs(){
 		return mapConfigs;
 	}
@@ -170,6 +259,46 @@ public static BlueMapConfig loadOrCreate(File configFile) throws IOException {
 		return new BlueMapConfig(configFile);
 	}
 	
+	public class BlockFlagConfig {
+		
+		private String blockId;
+		
+		@Nullable
+		private Boolean solid;
+		@Nullable
+		private Boolean occluding;
+		
+		private BlockFlagConfig(String blockId, ConfigurationNode node) throws IOException {
+			this.blockId = blockId.trim().toLowerCase();
+			if (this.blockId.isEmpty()) throw new IOException("Invalid configuration: Node blockFlags has an entry without a block-id");
+			if (!this.blockId.contains(":")) this.blockId = "minecraft:" + this.blockId;
+			
+			if (!node.getNode("solid").isVirtual()) this.solid = node.getNode("solid").getBoolean();
+			if (!node.getNode("occluding").isVirtual()) this.occluding = node.getNode("occluding").getBoolean();
+		}
+		
+		public String getBlockId() {
+			return blockId;
+		}
+		
+		/**
+		 * Whether the block is forced to be (or not to be) a full opaque cube that hides the faces of its neighbours, or null if this is not configured
+		 */
+		@Nullable
+		public Boolean getSolid() {
+			return solid;
+		}
+		
+		/**
+		 * Whether the block is forced to cast (or not to cast) ambient-occlusion onto its neighbours, or null if this is not configured
+		 */
+		@Nullable
+		public Boolean getOccluding() {
+			return occluding;
+		}
+		
+	}
+	
 	public class MapConfig implements RenderSettings {
 		
 		private String id;
@@ -182,11 +311,15 @@ public class MapConfig implements RenderSettings {
 		
 		private int hiresTileSize;
 		private float hiresViewDistance;
+		private PostProcessingTileRenderer.Format hiresFormat;
+		private PostProcessingTileRenderer.Compression hiresCompression;
 		
 		private int lowresPointsPerHiresTile;
 		private int lowresPointsPerLowresTile;
 		private float lowresViewDistance;
 		
+		private TileOrder.Type renderOrder;
+		
 		private MapConfig(ConfigurationNode node) throws IOException {
 			this.id = node.getNode("id").getString("");
 			if (id.isEmpty()) throw new IOException("Invalid configuration: Node maps[?].id is not defined");
@@ -203,10 +336,31 @@ private MapConfig(ConfigurationNode node) throws IOException {
 			this.hiresTileSize = node.getNode("hires", "tileSize").getInt(32);
 			this.hiresViewDistance = node.getNode("hires", "viewDistance").getFloat(3.5f);
 			
+			String hiresFormatString = node.getNode("hires", "format").getString("json");
+			try {
+				this.hiresFormat = PostProcessingTileRenderer.Format.valueOf(hiresFormatString.toUpperCase(Locale.ROOT));
+			} catch (IllegalArgumentException e) {
+				throw new IOException("Invalid configuration: Node maps[?].hires.format of map " + id + " has an unknown value: " + hiresFormatString);
+			}
+			
+			String hiresCompressionString = node.getNode("hires", "compression").getString("none");
+			try {
+				this.hiresCompression = PostProcessingTileRenderer.Compression.valueOf(hiresCompressionString.toUpperCase(Locale.ROOT));
+			} catch (IllegalArgumentException e) {
+				throw new IOException("Invalid configuration: Node maps[?].hires.compression of map " + id + " has an unknown value: " + hiresCompressionString);
+			}
+			
 			this.lowresPointsPerHiresTile = node.getNode("lowres", "pointsPerHiresTile").getInt(4);
 			this.lowresPointsPerLowresTile = node.getNode("lowres", "pointsPerLowresTile").getInt(50);
 			this.lowresViewDistance = node.getNode("lowres", "viewDistance").getFloat(4f);
 			
+			String renderOrderString = node.getNode("renderOrder").getString("spiral");
+			try {
+				this.renderOrder = TileOrder.Type.valueOf(renderOrderString.toUpperCase(Locale.ROOT));
+			} catch (IllegalArgumentException e) {
+				throw new IOException("Invalid configuration: Node maps[?].renderOrder of map " + id + " has an unknown value: " + renderOrderString);
+			}
+			
 			//check valid configuration values
 			double blocksPerPoint = (double) this.hiresTileSize / (double) this.lowresPointsPerHiresTile;
 			if (blocksPerPoint != Math.floor(blocksPerPoint)) throw new IOException("Invalid configuration: Invalid map resolution settings of map " + id + ": hires.tileSize / lowres.pointsPerTile has to be an integer result");
@@ -246,6 +400,14 @@ public float getHiresViewDistance() {
 			return hiresViewDistance;
 		}
 
+		public PostProcessingTileRenderer.Format getHiresFormat() {
+			return hiresFormat;
+		}
+		
+		public PostProcessingTileRenderer.Compression getHiresCompression() {
+			return hiresCompression;
+		}
+
 		public int getLowresPointsPerHiresTile() {
 			return lowresPointsPerHiresTile;
 		}
@@ -257,6 +419,10 @@ public int getLowresPointsPerLowresTile() {
 		public float getLowresViewDistance() {
 			return lowresViewDistance;
 		}
+		
+		public TileOrder.Type getRenderOrder() {
+			return renderOrder;
+		}
 
 		@Override
 		public boolean isExcludeFacesWithoutSunlight() {
@@ -26,11 +26,12 @@
 
 import java.io.File;
 import java.io.IOException;
+import java.nio.file.Files;
 import java.nio.file.Path;
-import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Optional;
 import java.util.UUID;
@@ -46,6 +47,8 @@
 import org.spongepowered.api.event.game.state.GameStoppingEvent;
 import org.spongepowered.api.plugin.Plugin;
 import org.spongepowered.api.scheduler.SpongeExecutorService;
+import org.spongepowered.api.world.schematic.BlockPalette;
+import org.spongepowered.api.world.schematic.BlockPaletteTypes;
 import org.spongepowered.api.world.storage.WorldProperties;
 
 import com.flowpowered.math.vector.Vector2i;
@@ -59,9 +62,20 @@
 import de.bluecolored.bluemap.resourcepack.NoSuchResourceException;
 import de.bluecolored.bluemap.resourcepack.ResourcePack;
 import de.bluecolored.bluemap.sponge.BlueMapConfig.MapConfig;
+import de.bluecolored.bluemap.sponge.hires.PostProcessingTileRenderer;
+import de.bluecolored.bluemap.sponge.impl.BlockFlagTable;
 import de.bluecolored.bluemap.sponge.impl.BlockStateResourceNameMapper;
+import de.bluecolored.bluemap.sponge.impl.LegacyBlockPalette;
+import de.bluecolored.bluemap.sponge.impl.SpongeWorldSource;
 import de.bluecolored.bluemap.sponge.impl.WorldImpl;
+import de.bluecolored.bluemap.sponge.impl.WorldSource;
+import de.bluecolored.bluemap.sponge.metrics.Metrics;
 import de.bluecolored.bluemap.sponge.task.RenderTaskManager;
+import de.bluecolored.bluemap.sponge.task.TileFingerprints;
+import de.bluecolored.bluemap.sponge.web.FileRequestHandler;
+import de.bluecolored.bluemap.sponge.web.HttpRequestHandler;
+import de.bluecolored.bluemap.sponge.web.MetricsRequestHandler;
+import de.bluecolored.bluemap.sponge.web.WebServer;
 import de.bluecolored.bluemap.web.BlueMapWebServer;
 import de.bluecolored.bluemap.web.WebSettings;
 
@@ -89,15 +103,18 @@ public class BlueMapSponge {
 	private BlueMapConfig config;
 	private ResourcePack resourcePack;
 	private BlockStateResourceNameMapper bsrnm;
+	private BlockFlagTable blockFlagTable;
 	
 	private WebSettings webSettings;
-	private BlueMapWebServer webServer;
+	private WebServer webServer;
 
 	private RenderManager renderManager;
+	private RenderGovernor renderGovernor;
 	private SpongeExecutorService syncExecutor;
 	private SpongeExecutorService asyncExecutor;
 	
-	private Collection<MapUpdater> mapUpdater;
+	private MapUpdater mapUpdater;
+	private MapSaver mapSaver;
 	
 	private Map<UUID, WorldImpl> worlds;
 	private Map<String, MapType> maps;
@@ -110,7 +127,6 @@ public BlueMapSponge(org.slf4j.Logger logger) {
 		
 		this.logger = new Slf4jLogger(logger);
 		
-		this.mapUpdater = new ArrayList<>();
 		this.worlds = new HashMap<>();
 		this.maps = new HashMap<>();
 	}
@@ -126,10 +142,33 @@ private synchronized void load() throws IOException, NoSuchResourceException {
 		File defaultResource = getConfigPath().resolve("resourcepacks").resolve("DefaultResources.zip").toFile();
 		File textureExportFile = config.getWebDataPath().resolve("textures.json").toFile();
 		ResourcePack.createDefaultResource(defaultResource);
-		resourcePack = new ResourcePack(Lists.newArrayList(defaultResource), textureExportFile, logger);
+		List<File> resourceFiles = Lists.newArrayList(defaultResource);
+		resourcePack = new ResourcePack(resourceFiles, textureExportFile, logger);
+		long resourcesHash = TileFingerprints.hashResources(resourceFiles);
 		
-		//load name-mappings
-		bsrnm = BlockStateResourceNameMapper.load();
+		//load name-mappings and block-flags
+		BlockPalette globalPalette = BlockPaletteTypes.GLOBAL.create();
+		bsrnm = BlockStateResourceNameMapper.load(globalPalette);
+		blockFlagTable = new BlockFlagTable(globalPalette, config.getBlockFlagConfigs());
+		
+		//export the block-ids of this server, so that the command-line renderer can read the region-files without a server
+		LegacyBlockPalette blockIdExport = LegacyBlockPalette.fromServer(bsrnm, blockFlagTable);
+		getAsyncExecutor().execute(() -> {
+			try {
+				blockIdExport.save(getConfigPath().resolve("blockIds.json").toFile());
+			} catch (IOException e) {
+				logger.logError("Failed to export block-ids", e);
+			}
+		});
+		
+		//prepare render-governor
+		if (renderGovernor != null) renderGovernor.shutdown();
+		renderGovernor = new RenderGovernor(
+				config.isRenderThrottleEnabled(), 
+				config.getRenderThrottleTargetMspt(), 
+				config.getRenderThreadCount(), 
+				config.getRenderThrottleMaxChunkLoadsPerTick()
+				);
 		
 		//load map-types
 		for (MapConfig map : config.getMapConfigs()) {
@@ -163,25 +202,66 @@ private synchronized void load() throws IOException, NoSuchResourceException {
 					logger
 					);
 			
+			Vector2i pointsPerLowresTile = new Vector2i(map.getLowresPointsPerLowresTile(), map.getLowresPointsPerLowresTile());
+			Vector2i pointsPerHiresTile = new Vector2i(map.getLowresPointsPerHiresTile(), map.getLowresPointsPerHiresTile());
 			LowresModelManager lowresModelManager = new LowresModelManager(
 					config.getWebDataPath().resolve("lowres").resolve(map.getId()), 
-					new Vector2i(map.getLowresPointsPerLowresTile(), map.getLowresPointsPerLowresTile()),
-					new Vector2i(map.getLowresPointsPerHiresTile(), map.getLowresPointsPerHiresTile()),
+					pointsPerLowresTile,
+					pointsPerHiresTile,
 					logger
 					);
 			
-			TileRenderer tileRenderer = new TileRenderer(hiresModelManager, lowresModelManager, map);
+			TileRenderer tileRenderer;
+			if (PostProcessingTileRenderer.needsPostProcessing(map.getHiresFormat(), map.getHiresCompression())) {
+				tileRenderer = new PostProcessingTileRenderer(hiresModelManager, lowresModelManager, map, pointsPerLowresTile, pointsPerHiresTile, config.getWebDataPath().resolve("hires").resolve(map.getId()), map.getHiresFormat(), map.getHiresCompression(), getAsyncExecutor(), logger);
+			} else {
+				tileRenderer = new TrackingTileRenderer(hiresModelManager, lowresModelManager, map, pointsPerLowresTile, pointsPerHiresTile);
+			}
+			
+			//the fingerprints are stored next to the render-tasks and not in the web-root, which is served by the webserver
+			Path fingerprintsFile = getConfigPath().resolve("fingerprints").resolve(map.getId() + ".dat");
+			Path oldFingerprintsFile = config.getWebDataPath().resolve("hires").resolve(map.getId()).resolve("fingerprints.dat");
+			try {
+				//fingerprints of an older version are moved, if there are already new ones the old ones are outdated
+				if (Files.exists(fingerprintsFile)) {
+					Files.deleteIfExists(oldFingerprintsFile);
+				} else if (Files.exists(oldFingerprintsFile)) {
+					Files.createDirectories(fingerprintsFile.getParent());
+					Files.move(oldFingerprintsFile, fingerprintsFile);
+				}
+			} catch (IOException e) {
+				logger.logError("Failed to move the tile-fingerprints of map '" + map.getId() + "' out of the web-root", e);
+			}
+			
+			TileFingerprints tileFingerprints = new TileFingerprints(
+					fingerprintsFile.toFile(),
+					world,
+					hiresModelManager,
+					map,
+					resourcesHash
+					);
+			
+			try {
+				tileFingerprints.load();
+			} catch (IOException e) {
+				logger.logError("Failed to load the tile-fingerprints of map '" + map.getId() + "', all tiles will be rendered again", e);
+			}
 			
 			MapType mapType = new MapType(
 					map.getId(),
 					map.getName(),
 					world,
-					tileRenderer
+					tileRenderer,
+					map,
+					tileFingerprints
 					);
 			
 			maps.put(map.getId(), mapType);
 		}
 
+		//prepare map-saver
+		mapSaver = new MapSaver(maps.values(), logger);
+		
 		//prepare render-manager
 		if (renderManager != null) renderManager.shutdown();
 		renderManager = new RenderManager(config.getRenderThreadCount());
@@ -192,8 +272,12 @@ private synchronized void load() throws IOException, NoSuchResourceException {
 		//prepare web-server
 		if (webServer != null) webServer.close();
 		if (config.isWebserverEnabled()) {
-			webServer = new BlueMapWebServer(config, logger);
-			webServer.updateWebfiles();
+			//the bluemap-webserver is only used to extract and update the web-app files, they are served by our own caching webserver
+			new BlueMapWebServer(config, logger).updateWebfiles();
+			
+			HttpRequestHandler requestHandler = new FileRequestHandler(config.getWebRoot(), config.getWebDataPath(), config.getWebserverCacheSize(), logger);
+			if (config.isWebserverMetricsEnabled()) requestHandler = new MetricsRequestHandler(requestHandler);
+			webServer = new WebServer(config, requestHandler, logger);
 		}
 		
 		//prepare web-settings
@@ -210,15 +294,23 @@ private synchronized void load() throws IOException, NoSuchResourceException {
 		
 	}
 	
-	public synchronized void save() {
-		for (MapType map : maps.values()) {
-			map.getTileRenderer().save();
+	/**
+	 * Writes all changes of all maps to disk and blocks until they are written.
+	 */
+	public void save() {
+		//don't hold the lock on the plugin while saving, the save-command saves asynchronously
+		MapSaver mapSaver;
+		synchronized (this) {
+			mapSaver = this.mapSaver;
 		}
+		
+		if (mapSaver != null) mapSaver.save();
 	}
 	
 	private synchronized void start() {
 		if (renderManager != null) {
 			renderManager.start();
+			renderGovernor.start();
 			
 			try {
 				File renderTicketFile = getConfigPath().resolve("scheduledRenderTickets.json").toFile();
@@ -229,29 +321,32 @@ private synchronized void start() {
 			}
 			
 			try {
-				renderTaskManager.loadAndResumeTasks(renderManager, getMapTypes());
+				renderTaskManager.loadAndResumeTasks(renderManager, renderGovernor, getMapTypes());
 			} catch (IOException e) {
 				logger.logError("Failed to load saved render-tasks", e);
 			}
+			
+			renderTaskManager.startCheckpoints();
 		}
 		if (config.isWebserverEnabled() && webServer != null) webServer.start();
 		
-		synchronized (mapUpdater) {
-			for (MapType map : maps.values()) {
-				MapUpdater updater = new MapUpdater(renderManager, map.getTileRenderer(), map.getWorld(), 60000);
-				Sponge.getEventManager().registerListeners(this, updater);
-				mapUpdater.add(updater);
-			}
+		if (mapSaver != null) mapSaver.start(config.getSaveInterval());
+		
+		if (renderManager != null) {
+			mapUpdater = new MapUpdater(renderManager, maps.values(), TimeUnit.SECONDS.toMillis(config.getUpdateDelay()));
+			Sponge.getEventManager().registerListeners(this, mapUpdater);
+			mapUpdater.start();
 		}
 		
 	}
 	
 	private synchronized void stop() {
-		synchronized (mapUpdater) {
-			for (MapUpdater updater : mapUpdater) {
-				Sponge.getEventManager().unregisterListeners(updater);
-			}
-			mapUpdater.clear();
+		if (mapSaver != null) mapSaver.stop();
+		
+		if (mapUpdater != null) {
+			Sponge.getEventManager().unregisterListeners(mapUpdater);
+			mapUpdater.stop();
+			mapUpdater = null;
 		}
 		
 		if (webServer != null) {
@@ -260,6 +355,7 @@ private synchronized void stop() {
 		}
 		
 		if (renderManager != null) {
+			renderGovernor.shutdown();
 			renderManager.shutdown();
 			
 			try {
@@ -286,8 +382,9 @@ public synchronized void reload() {
 		try {
 			logger.logInfo("Reloading...");
 		
-			save();
+			//stop first, so the tiles that are rendered until the render-threads stopped are saved as well
 			stop();
+			save();
 			
 			logger.clearNoFloodLog();
 			
@@ -307,6 +404,8 @@ public void onInit(GameStartingServerEvent evt) {
 
 			syncExecutor = Sponge.getScheduler().createSyncExecutor(this);
 			asyncExecutor = Sponge.getScheduler().createAsyncExecutor(this);
+			
+			initMetrics();
 
 			load();
 			start();
@@ -319,6 +418,23 @@ public void onInit(GameStartingServerEvent evt) {
 		initCommands();
 	}
 	
+	private void initMetrics() {
+		Metrics.registerGauge("bluemap_render_queue_size", "Number of scheduled render-tickets", () -> {
+			RenderManager renderManager = getRenderManager();
+			return renderManager != null ? renderManager.getScheduledTicketCount() : 0;
+		});
+		
+		Metrics.registerGauge("bluemap_render_threads_active", "Number of render-threads that the render-throttle allows to render", () -> {
+			RenderGovernor renderGovernor = getRenderGovernor();
+			return renderGovernor != null ? renderGovernor.getActiveWorkers() : 0;
+		});
+		
+		Metrics.registerGauge("bluemap_render_threads_max", "Number of render-threads", () -> {
+			RenderGovernor renderGovernor = getRenderGovernor();
+			return renderGovernor != null ? renderGovernor.getMaxWorkers() : 0;
+		});
+	}
+	
 	private void initCommands() {
 		BlueMapCommands blueMapCommands = new BlueMapCommands(this);
 		Sponge.getCommandManager().register(this, blueMapCommands.getCombinedCommand(), "bluemap");
@@ -331,8 +447,8 @@ public void onReload(GameReloadEvent evt){
 	
 	@Listener
 	public void onStop(GameStoppingEvent evt){
-		save();
 		stop();
+		save();
 	}
 	
 	public Optional<WorldImpl> getWorld(UUID id){
@@ -340,7 +456,8 @@ public Optional<WorldImpl> getWorld(UUID id){
 		if (world == null) {
 			if (!Sponge.getServer().getWorldProperties(id).isPresent()) return Optional.empty();
 			
-			world = new WorldImpl(getSyncExecutor(), bsrnm, id, getLogger());
+			WorldSource source = new SpongeWorldSource(getSyncExecutor(), renderGovernor, bsrnm, blockFlagTable, config.isUseRegionFiles(), id, getLogger());
+			world = new WorldImpl(source, renderGovernor, bsrnm, blockFlagTable, id, getLogger());
 			worlds.put(id, world);
 		}
 		return Optional.of(world);
@@ -350,7 +467,11 @@ public RenderManager getRenderManager() {
 		return renderManager;
 	}
 
-	public BlueMapWebServer getWebServer() {
+	public RenderGovernor getRenderGovernor() {
+		return renderGovernor;
+	}
+
+	public WebServer getWebServer() {
 		return webServer;
 	}
 	
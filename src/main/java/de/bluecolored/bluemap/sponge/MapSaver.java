@@ -0,0 +1,122 @@
+/*
+ * This file is part of BlueMapSponge, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) Blue (Lukas Rieger) <https://bluecolored.de>
+ * Copyright (c) contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package de.bluecolored.bluemap.sponge;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.spongepowered.api.Sponge;
+import org.spongepowered.api.scheduler.Task;
+
+import de.bluecolored.bluemap.logger.Logger;
+import de.bluecolored.bluemap.render.TileRenderer;
+import de.bluecolored.bluemap.sponge.metrics.Metrics;
+
+/**
+ * Writes the changed lowres-tiles and tile-fingerprints of the maps to disk, periodically in the background and on request.<br>
+ * Maps that did not change since the last save are skipped.
+ */
+public class MapSaver {
+
+	private List<MapType> maps;
+	private Logger logger;
+	
+	private Task saveTask;
+	
+	public MapSaver(Collection<MapType> maps, Logger logger) {
+		this.maps = new ArrayList<>(maps);
+		this.logger = logger;
+	}
+	
+	/**
+	 * Starts saving the maps asynchronously every intervalSeconds seconds
+	 */
+	public synchronized void start(int intervalSeconds) {
+		stop();
+		
+		if (intervalSeconds <= 0) return;
+		
+		saveTask = Sponge.getScheduler().createTaskBuilder()
+				.async()
+				.delay(intervalSeconds, TimeUnit.SECONDS)
+				.interval(intervalSeconds, TimeUnit.SECONDS)
+				.execute(this::save)
+				.submit(BlueMapSponge.getPlugin());
+	}
+	
+	public synchronized void stop() {
+		if (saveTask != null) saveTask.cancel();
+		saveTask = null;
+	}
+	
+	/**
+	 * Saves all changes of all maps.<br>
+	 * This blocks until everything is written, so it should not be called on the server-thread unless the server is stopping.
+	 */
+	public void save() {
+		//only one save at a time, a periodic save and a save-command could overlap
+		synchronized (maps) {
+			int savedLowresTiles = 0;
+			for (MapType map : maps) {
+				savedLowresTiles += saveMap(map);
+			}
+			
+			if (savedLowresTiles > 0) logger.logDebug("Saved " + savedLowresTiles + " changed lowres-tiles.");
+		}
+	}
+	
+	private int saveMap(MapType map) {
+		int savedLowresTiles = 0;
+		
+		try {
+			TileRenderer tileRenderer = map.getTileRenderer();
+			if (tileRenderer instanceof TrackingTileRenderer) {
+				long start = Metrics.LOWRES_SAVE.start();
+				savedLowresTiles = ((TrackingTileRenderer) tileRenderer).saveChanges();
+				if (savedLowresTiles > 0) Metrics.LOWRES_SAVE.stop(start);
+			} else {
+				long start = Metrics.LOWRES_SAVE.start();
+				tileRenderer.save();
+				Metrics.LOWRES_SAVE.stop(start);
+			}
+		} catch (RuntimeException e) {
+			logger.logError("Failed to save the lowres-tiles of map '" + map.getId() + "'", e);
+		}
+		
+		if (map.getTileFingerprints() != null) {
+			try {
+				map.getTileFingerprints().save();
+			} catch (IOException e) {
+				logger.logError("Failed to save the tile-fingerprints of map '" + map.getId() + "'", e);
+			}
+		}
+		
+		return savedLowresTiles;
+	}
+	
+}
@@ -24,21 +24,35 @@
  */
 package de.bluecolored.bluemap.sponge;
 
+import javax.annotation.Nullable;
+
+import de.bluecolored.bluemap.api.World;
 import de.bluecolored.bluemap.render.TileRenderer;
-import de.bluecolored.bluemap.sponge.impl.WorldImpl;
+import de.bluecolored.bluemap.sponge.BlueMapConfig.MapConfig;
+import de.bluecolored.bluemap.sponge.task.TileFingerprints;
 
 public class MapType {
 
 	private String id;
 	private String name;
-	private WorldImpl world;
+	private World world;
 	private TileRenderer tileRenderer;
+	private MapConfig config;
+	
+	@Nullable
+	private TileFingerprints tileFingerprints;
+	
+	public MapType(String id, String name, World world, TileRenderer tileRenderer, MapConfig config) {
+		this(id, name, world, tileRenderer, config, null);
+	}
 	
-	public MapType(String id, String name, WorldImpl world, TileRenderer tileRenderer) {
+	public MapType(String id, String name, World world, TileRenderer tileRenderer, MapConfig config, TileFingerprints tileFingerprints) {
 		this.id = id;
 		this.name = name;
 		this.world = world;
 		this.tileRenderer = tileRenderer;
+		this.config = config;
+		this.tileFingerprints = tileFingerprints;
 	}
 
 	public String getId() {
@@ -49,7 +63,7 @@ public String getName() {
 		return name;
 	}
 
-	public WorldImpl getWorld() {
+	public World getWorld() {
 		return world;
 	}
 
@@ -57,4 +71,16 @@ public TileRenderer getTileRenderer() {
 		return tileRenderer;
 	}
 	
+	public MapConfig getConfig() {
+		return config;
+	}
+	
+	/**
+	 * Returns the fingerprints of the rendered tiles of this map, or null if they are not tracked.
+	 */
+	@Nullable
+	public TileFingerprints getTileFingerprints() {
+		return tileFingerprints;
+	}
+	
 }
@@ -24,59 +24,158 @@
  */
 package de.bluecolored.bluemap.sponge;
 
-import java.util.Optional;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
 
+import org.spongepowered.api.Sponge;
 import org.spongepowered.api.block.BlockSnapshot;
 import org.spongepowered.api.data.Transaction;
 import org.spongepowered.api.event.Listener;
 import org.spongepowered.api.event.block.ChangeBlockEvent;
 import org.spongepowered.api.event.filter.type.Exclude;
 import org.spongepowered.api.event.world.chunk.PopulateChunkEvent;
-import org.spongepowered.api.world.Location;
+import org.spongepowered.api.scheduler.Task;
 
 import com.flowpowered.math.vector.Vector2i;
 import com.flowpowered.math.vector.Vector3i;
 
-import de.bluecolored.bluemap.api.World;
 import de.bluecolored.bluemap.render.RenderManager;
-import de.bluecolored.bluemap.render.TileRenderer;
 import de.bluecolored.bluemap.render.WorldTile;
+import de.bluecolored.bluemap.sponge.impl.WorldImpl;
+import gnu.trove.iterator.TLongLongIterator;
+import gnu.trove.list.array.TLongArrayList;
+import gnu.trove.map.hash.TLongLongHashMap;
 
+/**
+ * Listens for block-changes and collects the changed tiles of all maps.<br>
+ * Each changed tile is only scheduled for rendering once, after the update-delay of the first change in this tile has passed.<br>
+ * This is a fixed delay, not a debounce: changes after the first one don't postpone the render, they are included in it.<br>
+ * <br>
+ * The event-listeners only copy the changed positions into a {@link BlockChangeBuffer}, 
+ * mapping them to tiles and invalidating the cached chunk-snapshots of the changed chunks is done asynchronously.<br>
+ * The maps are indexed by their world, and maps of the same world with the same hires tile-size share their tile-calculation.
+ */
 public class MapUpdater {
 
 	private RenderManager renderManager;
-	private TileRenderer tileRenderer;
-	private World world;
 	private long updateDelay;
 	
-	public MapUpdater(RenderManager renderManager, TileRenderer tileRenderer, World world, long updateDelay) {
+	private Map<UUID, List<TileGroup>> tileGroups;
+	private Map<UUID, WorldImpl> worlds;
+	
+	private BlockChangeBuffer changeBuffer;
+	private Task updateTask;
+	
+	public MapUpdater(RenderManager renderManager, Collection<MapType> maps, long updateDelay) {
 		this.renderManager = renderManager;
-		this.tileRenderer = tileRenderer;
-		this.world = world;
 		this.updateDelay = updateDelay;
+		
+		this.tileGroups = new HashMap<>();
+		this.worlds = new HashMap<>();
+		for (MapType map : maps) {
+			if (map.getWorld() instanceof WorldImpl) worlds.put(map.getWorld().getUUID(), (WorldImpl) map.getWorld());
+			
+			List<TileGroup> groups = tileGroups.computeIfAbsent(map.getWorld().getUUID(), uuid -> new ArrayList<>());
+			
+			TileGroup group = null;
+			for (TileGroup g : groups) {
+				if (g.tileSize == map.getConfig().getHiresTileSize()) {
+					group = g;
+					break;
+				}
+			}
+			
+			if (group == null) {
+				group = new TileGroup(map.getConfig().getHiresTileSize());
+				groups.add(group);
+			}
+			
+			group.maps.add(map);
+		}
+		
+		this.changeBuffer = new BlockChangeBuffer(16);
+	}
+	
+	public synchronized void start() {
+		if (updateTask != null) updateTask.cancel();
+		
+		updateTask = Sponge.getScheduler().createTaskBuilder()
+				.async()
+				.interval(100, TimeUnit.MILLISECONDS)
+				.execute(this::update)
+				.submit(BlueMapSponge.getPlugin());
+	}
+	
+	/**
+	 * Stops this updater and schedules all collected tiles for rendering immediately.
+	 */
+	public synchronized void stop() {
+		if (updateTask != null) updateTask.cancel();
+		updateTask = null;
+		
+		changeBuffer.drain(this::processChange);
+		flushDueTiles(Long.MAX_VALUE);
+	}
+	
+	private synchronized void update() {
+		changeBuffer.drain(this::processChange);
+		flushDueTiles(System.currentTimeMillis());
+	}
+	
+	private void offerChange(UUID world, Vector3i pos) {
+		long packedPosition = WorldUtil.packBlockPos(pos.getX(), pos.getY(), pos.getZ());
+		
+		//if the buffer is full, process the change directly
+		if (!changeBuffer.offer(world, packedPosition)) processChange(world, packedPosition);
+	}
+	
+	private void processChange(UUID world, long packedPosition) {
+		List<TileGroup> groups = tileGroups.get(world);
+		if (groups == null) return;
+		
+		Vector3i pos = new Vector3i(
+				WorldUtil.unpackBlockX(packedPosition),
+				WorldUtil.unpackBlockY(packedPosition),
+				WorldUtil.unpackBlockZ(packedPosition)
+				);
+		
+		//the cached snapshot of the chunk (and its heightmap) is outdated now
+		WorldImpl worldImpl = worlds.get(world);
+		if (worldImpl != null) worldImpl.invalidateChunkSnapshot(Math.floorDiv(pos.getX(), 16), Math.floorDiv(pos.getZ(), 16));
+		
+		for (TileGroup group : groups) {
+			group.updateBlock(pos);
+		}
 	}
 	
-	private void updateBlock(Vector3i pos){
-		Vector2i tilePos = tileRenderer.getHiresModelManager().posToTile(pos);
-		WorldTile tile = new WorldTile(world, tilePos);
-		renderManager.scheduleDelayedRender(tile, tileRenderer, updateDelay);
+	/**
+	 * Schedules all tiles that are due at the given time for rendering.
+	 */
+	private void flushDueTiles(long now) {
+		for (List<TileGroup> groups : tileGroups.values()) {
+			for (TileGroup group : groups) {
+				group.flushDueTiles(now);
+			}
+		}
 	}
 	
 	@Listener
 	@Exclude({ChangeBlockEvent.Post.class, ChangeBlockEvent.Pre.class})
 	public void onBlockChange(ChangeBlockEvent evt) {
 		for (Transaction<BlockSnapshot> tr : evt.getTransactions()) {
-			Optional<Location<org.spongepowered.api.world.World>> ow = tr.getFinal().getLocation();
-			if (ow.isPresent()) {
-				if (ow.get().getExtent().getUniqueId().equals(world.getUUID()))
-					updateBlock(ow.get().getPosition().toInt());
-			}
+			BlockSnapshot snapshot = tr.getFinal();
+			offerChange(snapshot.getWorldUniqueId(), snapshot.getPosition());
 		}
 	}
 	
 	@Listener
 	public void onChunkPopulate(PopulateChunkEvent.Post evt) {
-		if (!evt.getTargetChunk().getWorld().getUniqueId().equals(world.getUUID())) return;
+		UUID worldUuid = evt.getTargetChunk().getWorld().getUniqueId();
 		
 		Vector3i min = evt.getTargetChunk().getBlockMin();
 		Vector3i max = evt.getTargetChunk().getBlockMax();
@@ -84,10 +183,67 @@ public void onChunkPopulate(PopulateChunkEvent.Post evt) {
 		Vector3i xmin = new Vector3i(min.getX(), min.getY(), max.getZ());
 		Vector3i xmax = new Vector3i(max.getX(), max.getY(), min.getZ());
 		
-		updateBlock(min);
-		updateBlock(max);
-		updateBlock(xmin);
-		updateBlock(xmax);
+		offerChange(worldUuid, min);
+		offerChange(worldUuid, max);
+		offerChange(worldUuid, xmin);
+		offerChange(worldUuid, xmax);
+	}
+	
+	/**
+	 * All maps of one world that have the same hires tile-size, and the tiles that changed for them
+	 */
+	private class TileGroup {
+		
+		private int tileSize;
+		private List<MapType> maps;
+		
+		/** packed tile-position -> time in millis after which the tile should be rendered */
+		private TLongLongHashMap dirtyTiles;
+		
+		private TileGroup(int tileSize) {
+			this.tileSize = tileSize;
+			this.maps = new ArrayList<>();
+			this.dirtyTiles = new TLongLongHashMap();
+		}
+		
+		private void updateBlock(Vector3i pos) {
+			//all maps in this group have the same tiles, so we can just use the first one
+			Vector2i tilePos = maps.get(0).getTileRenderer().getHiresModelManager().posToTile(pos);
+			long tileKey = WorldUtil.packXZ(tilePos.getX(), tilePos.getY());
+			
+			synchronized (dirtyTiles) {
+				if (!dirtyTiles.containsKey(tileKey)) {
+					dirtyTiles.put(tileKey, System.currentTimeMillis() + updateDelay);
+				}
+			}
+		}
+		
+		private void flushDueTiles(long now) {
+			TLongArrayList dueTiles = new TLongArrayList();
+			
+			synchronized (dirtyTiles) {
+				if (dirtyTiles.isEmpty()) return;
+				
+				TLongLongIterator iterator = dirtyTiles.iterator();
+				while (iterator.hasNext()) {
+					iterator.advance();
+					if (iterator.value() <= now) {
+						dueTiles.add(iterator.key());
+						iterator.remove();
+					}
+				}
+			}
+			
+			for (int i = 0; i < dueTiles.size(); i++) {
+				long tileKey = dueTiles.getQuick(i);
+				Vector2i tilePos = new Vector2i(WorldUtil.unpackX(tileKey), WorldUtil.unpackZ(tileKey));
+				
+				for (MapType map : maps) {
+					renderManager.scheduleRender(new WorldTile(map.getWorld(), tilePos), map.getTileRenderer());
+				}
+			}
+		}
+		
 	}
 	
 }
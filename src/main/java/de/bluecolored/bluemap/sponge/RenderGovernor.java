@@ -0,0 +1,213 @@
+/*
+ * This file is part of BlueMapSponge, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) Blue (Lukas Rieger) <https://bluecolored.de>
+ * Copyright (c) contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package de.bluecolored.bluemap.sponge;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+import org.spongepowered.api.Sponge;
+import org.spongepowered.api.scheduler.Task;
+
+/**
+ * Watches the server tick-time and adjusts how many render-threads are allowed to work 
+ * and how many chunks may be loaded per tick, so that rendering only uses the spare capacity of the server.<br>
+ * <br>
+ * The tick-time is the cpu-time that the server-thread spends between two ticks, so the time the server sleeps to hold 20 TPS is not counted. 
+ * If the JVM can't measure the cpu-time of threads, the time between two ticks is used instead.
+ */
+public class RenderGovernor {
+
+	private static final int ADJUST_INTERVAL_TICKS = 20;
+	
+	//the tick-time has to be below this part of the target, before more workers are allowed again
+	private static final double GROW_THRESHOLD = 0.8;
+	
+	private boolean enabled;
+	private double targetMspt;
+	private int maxWorkers;
+	private int maxChunkLoadsPerTick;
+	
+	private volatile int activeWorkers;
+	private volatile int chunkLoadsPerTick;
+	private volatile double mspt;
+	
+	private WorkerSlots workerSlots;
+	
+	private ThreadMXBean threadBean;
+	private boolean measureCpuTime;
+	
+	private Task task;
+	private long lastTick;
+	private int tickCounter;
+	private volatile boolean shutdown;
+	
+	public RenderGovernor(boolean enabled, double targetMspt, int maxWorkers, int maxChunkLoadsPerTick) {
+		this.enabled = enabled;
+		this.targetMspt = targetMspt;
+		this.maxWorkers = maxWorkers;
+		this.maxChunkLoadsPerTick = maxChunkLoadsPerTick;
+		
+		this.activeWorkers = maxWorkers;
+		this.chunkLoadsPerTick = maxChunkLoadsPerTick;
+		this.mspt = 0;
+		
+		this.workerSlots = new WorkerSlots(maxWorkers);
+		
+		this.threadBean = ManagementFactory.getThreadMXBean();
+		this.measureCpuTime = threadBean.isCurrentThreadCpuTimeSupported();
+		
+		this.lastTick = -1;
+		this.tickCounter = 0;
+		this.shutdown = false;
+	}
+	
+	public synchronized void start() {
+		if (!enabled || task != null) return;
+		
+		if (measureCpuTime && !threadBean.isThreadCpuTimeEnabled()) threadBean.setThreadCpuTimeEnabled(true);
+		
+		task = Sponge.getScheduler().createTaskBuilder()
+				.intervalTicks(1)
+				.execute(this::tick)
+				.submit(BlueMapSponge.getPlugin());
+	}
+	
+	public synchronized void shutdown() {
+		if (task != null) task.cancel();
+		task = null;
+		
+		//wake up all waiting render-threads, they stop waiting once they see the shutdown
+		shutdown = true;
+		workerSlots.release(maxWorkers);
+	}
+	
+	/**
+	 * Called on the server-thread once per tick
+	 */
+	private void tick() {
+		long now = measureCpuTime ? threadBean.getCurrentThreadCpuTime() : System.nanoTime();
+		if (lastTick != -1) {
+			double tickTime = (now - lastTick) / 1000000d;
+			
+			//exponential moving average over about one second
+			mspt = mspt * 0.95 + tickTime * 0.05;
+		}
+		lastTick = now;
+		
+		if (++tickCounter >= ADJUST_INTERVAL_TICKS) {
+			tickCounter = 0;
+			adjust();
+		}
+	}
+	
+	private synchronized void adjust() {
+		if (shutdown) return;
+		
+		int workers = activeWorkers;
+		if (mspt > targetMspt) {
+			//back off fast, but there is always one worker so rendering never stops completely
+			workers = Math.max(1, workers / 2);
+			chunkLoadsPerTick = Math.max(1, chunkLoadsPerTick / 2);
+		} else if (mspt < targetMspt * GROW_THRESHOLD) {
+			//grow slowly
+			workers = Math.min(maxWorkers, workers + 1);
+			chunkLoadsPerTick = Math.min(maxChunkLoadsPerTick, chunkLoadsPerTick * 2);
+		}
+		
+		if (workers < activeWorkers) workerSlots.reducePermits(activeWorkers - workers);
+		if (workers > activeWorkers) workerSlots.release(workers - activeWorkers);
+		activeWorkers = workers;
+	}
+	
+	/**
+	 * Blocks the calling render-thread as long as all active workers are rendering.<br>
+	 * This is called by the render-threads before they start to render a tile.
+	 * @return true if the thread got a worker-slot and has to return it with {@link #releaseWorkerSlot()} once the tile is rendered,
+	 * false if the render-throttle is disabled or has been shut down
+	 */
+	public boolean acquireWorkerSlot() throws InterruptedException {
+		if (!enabled) return false;
+		
+		while (!shutdown) {
+			if (workerSlots.tryAcquire(1, TimeUnit.SECONDS)) return true;
+		}
+		
+		return false;
+	}
+	
+	/**
+	 * Returns a worker-slot that has been acquired with {@link #acquireWorkerSlot()}
+	 */
+	public void releaseWorkerSlot() {
+		workerSlots.release();
+	}
+	
+	public int getChunkLoadsPerTick() {
+		if (!enabled) return maxChunkLoadsPerTick;
+		return chunkLoadsPerTick;
+	}
+	
+	public int getActiveWorkers() {
+		if (!enabled) return maxWorkers;
+		return activeWorkers;
+	}
+	
+	public int getMaxWorkers() {
+		return maxWorkers;
+	}
+	
+	public double getMspt() {
+		return mspt;
+	}
+	
+	public double getTargetMspt() {
+		return targetMspt;
+	}
+	
+	public boolean isEnabled() {
+		return enabled;
+	}
+	
+	/**
+	 * A semaphore with one permit per active worker, the permits can be reduced while they are in use
+	 */
+	private static class WorkerSlots extends Semaphore {
+		
+		private static final long serialVersionUID = 1L;
+
+		private WorkerSlots(int permits) {
+			super(permits, true);
+		}
+		
+		@Override
+		protected void reducePermits(int reduction) {
+			super.reducePermits(reduction);
+		}
+		
+	}
+	
+}
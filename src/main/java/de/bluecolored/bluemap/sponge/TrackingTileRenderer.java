@@ -0,0 +1,140 @@
+/*
+ * This file is part of BlueMapSponge, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) Blue (Lukas Rieger) <https://bluecolored.de>
+ * Copyright (c) contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package de.bluecolored.bluemap.sponge;
+
+import com.flowpowered.math.vector.Vector2i;
+
+import de.bluecolored.bluemap.render.RenderSettings;
+import de.bluecolored.bluemap.render.TileRenderer;
+import de.bluecolored.bluemap.render.WorldTile;
+import de.bluecolored.bluemap.render.hires.HiresModelManager;
+import de.bluecolored.bluemap.render.lowres.LowresModelManager;
+import de.bluecolored.bluemap.sponge.impl.WorldImpl;
+import de.bluecolored.bluemap.sponge.metrics.Metrics;
+import gnu.trove.set.hash.TLongHashSet;
+
+/**
+ * A {@link TileRenderer} that remembers which lowres-tiles have been changed by the tiles it rendered.<br>
+ * {@link #save()} only saves the lowres-models if any of them changed since the last save.
+ */
+public class TrackingTileRenderer extends TileRenderer {
+
+	private final Vector2i pointsPerLowresTile;
+	private final Vector2i pointsPerHiresTile;
+	
+	private TLongHashSet changedLowresTiles;
+	
+	public TrackingTileRenderer(HiresModelManager hiresModelManager, LowresModelManager lowresModelManager, RenderSettings renderSettings, Vector2i pointsPerLowresTile, Vector2i pointsPerHiresTile) {
+		super(hiresModelManager, lowresModelManager, renderSettings);
+		
+		this.pointsPerLowresTile = pointsPerLowresTile;
+		this.pointsPerHiresTile = pointsPerHiresTile;
+		this.changedLowresTiles = new TLongHashSet();
+	}
+	
+	@Override
+	public void render(WorldTile tile) throws Exception {
+		//wait here if the server is too busy, the worker-slot is held until the tile is rendered
+		RenderGovernor governor = null;
+		if (tile.getWorld() instanceof WorldImpl) {
+			governor = ((WorldImpl) tile.getWorld()).getRenderGovernor();
+			if (!governor.acquireWorkerSlot()) governor = null;
+		}
+		
+		long start = Metrics.TILE_RENDER.start();
+		try {
+			super.render(tile);
+			Metrics.TILES_RENDERED.increment();
+		} catch (Exception e) {
+			Metrics.TILES_FAILED.increment();
+			throw e;
+		} finally {
+			Metrics.TILE_RENDER.stop(start);
+			Metrics.BLOCK_FETCHES.flushLocal();
+			if (governor != null) governor.releaseWorkerSlot();
+			
+			//even a failed render might have changed some of the lowres-points
+			markChanged(tile.getTile());
+		}
+	}
+	
+	private void markChanged(Vector2i hiresTile) {
+		//the points on the edge of a lowres-tile are shared with the neighbouring tile
+		int minX = Math.floorDiv(hiresTile.getX() * pointsPerHiresTile.getX() - 1, pointsPerLowresTile.getX());
+		int maxX = Math.floorDiv((hiresTile.getX() + 1) * pointsPerHiresTile.getX(), pointsPerLowresTile.getX());
+		int minZ = Math.floorDiv(hiresTile.getY() * pointsPerHiresTile.getY() - 1, pointsPerLowresTile.getY());
+		int maxZ = Math.floorDiv((hiresTile.getY() + 1) * pointsPerHiresTile.getY(), pointsPerLowresTile.getY());
+		
+		synchronized (this) {
+			for (int x = minX; x <= maxX; x++) {
+				for (int z = minZ; z <= maxZ; z++) {
+					changedLowresTiles.add(WorldUtil.packXZ(x, z));
+				}
+			}
+		}
+	}
+	
+	/**
+	 * Returns the number of lowres-tiles that changed since the last save
+	 */
+	public synchronized int getChangedLowresTileCount() {
+		return changedLowresTiles.size();
+	}
+	
+	/**
+	 * Saves the lowres-models if any of them changed since the last save.
+	 */
+	@Override
+	public void save() {
+		saveChanges();
+	}
+	
+	/**
+	 * Saves the lowres-models if any of them changed since the last save.
+	 * @return the number of lowres-tiles that changed
+	 */
+	public int saveChanges() {
+		TLongHashSet saving;
+		synchronized (this) {
+			if (changedLowresTiles.isEmpty()) return 0;
+			
+			//tiles that are rendered while saving are saved with the next save
+			saving = changedLowresTiles;
+			changedLowresTiles = new TLongHashSet();
+		}
+		
+		try {
+			super.save();
+		} catch (RuntimeException e) {
+			synchronized (this) {
+				changedLowresTiles.addAll(saving);
+			}
+			throw e;
+		}
+		
+		return saving.size();
+	}
+	
+}
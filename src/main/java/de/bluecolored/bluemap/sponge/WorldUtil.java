@@ -46,7 +46,7 @@ public Iterator<Vector3i> iterator() {
 					
 					@Override
 					public boolean hasNext() {
-						return z <= max.getY() || x <= max.getX();
+						return z <= max.getY();
 					}
 
 					@Override
@@ -67,4 +67,35 @@ public Vector3i next() {
 		};
 	}
 	
+	public static long packXZ(int x, int z) {
+		return ((long) x << 32) | (z & 0xFFFFFFFFL);
+	}
+	
+	public static int unpackX(long packed) {
+		return (int) (packed >> 32);
+	}
+	
+	public static int unpackZ(long packed) {
+		return (int) packed;
+	}
+	
+	/**
+	 * Packs a block-position into a long, using 26 bits for x and z and 12 bits for y.
+	 */
+	public static long packBlockPos(int x, int y, int z) {
+		return ((long) (x & 0x3FFFFFF) << 38) | ((long) (z & 0x3FFFFFF) << 12) | (y & 0xFFF);
+	}
+	
+	public static int unpackBlockX(long packed) {
+		return (int) (packed >> 38);
+	}
+	
+	public static int unpackBlockY(long packed) {
+		return (int) (packed << 52 >> 52);
+	}
+	
+	public static int unpackBlockZ(long packed) {
+		return (int) (packed << 26 >> 38);
+	}
+	
 }
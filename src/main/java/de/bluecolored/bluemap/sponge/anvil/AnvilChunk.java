@@ -0,0 +1,194 @@
+/*
+ * This file is part of BlueMapSponge, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) Blue (Lukas Rieger) <https://bluecolored.de>
+ * Copyright (c) contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package de.bluecolored.bluemap.sponge.anvil;
+
+import java.io.DataInput;
+import java.io.IOException;
+
+/**
+ * The raw block- and light-data of one chunk-column as it is stored in the anvil-format (minecraft 1.12).<br>
+ * All arrays of a section are in the anvil order: <code>index = (y * 16 + z) * 16 + x</code>
+ */
+public class AnvilChunk {
+
+	public static final int SECTION_COUNT = 16;
+	
+	private int chunkX, chunkZ;
+	private boolean terrainPopulated;
+	
+	private Section[] sections;
+	private byte[] biomes;
+	
+	private AnvilChunk() {
+		this.sections = new Section[SECTION_COUNT];
+	}
+	
+	public int getChunkX() {
+		return chunkX;
+	}
+	
+	public int getChunkZ() {
+		return chunkZ;
+	}
+	
+	/**
+	 * Whether the chunk is fully generated, including trees, ores and other decorations.
+	 */
+	public boolean isTerrainPopulated() {
+		return terrainPopulated;
+	}
+	
+	/**
+	 * Returns the numeric biome-id of the column at that position (relative to this chunk), or -1 if the chunk has no biome-data.
+	 */
+	public int getBiomeId(int x, int z) {
+		if (biomes == null) return -1;
+		return biomes[(z & 15) * 16 + (x & 15)] & 0xFF;
+	}
+	
+	/**
+	 * Returns the section with that section-y (0-15) or null if the section is empty (only air).
+	 */
+	public Section getSection(int sectionY) {
+		return sections[sectionY];
+	}
+	
+	static AnvilChunk read(DataInput in) throws IOException {
+		NBTReader nbt = new NBTReader(in);
+		if (nbt.readType() != NBTReader.TAG_COMPOUND) throw new IOException("Invalid chunk-data: root is not a compound");
+		nbt.readName();
+		
+		AnvilChunk chunk = new AnvilChunk();
+		boolean hasLevel = false;
+		
+		byte type;
+		while ((type = nbt.readType()) != NBTReader.TAG_END) {
+			String name = nbt.readName();
+			if (type == NBTReader.TAG_COMPOUND && name.equals("Level")) {
+				chunk.readLevel(nbt);
+				hasLevel = true;
+			} else {
+				nbt.skip(type);
+			}
+		}
+		
+		if (!hasLevel) throw new IOException("Invalid chunk-data: missing Level-tag");
+		return chunk;
+	}
+	
+	private void readLevel(NBTReader nbt) throws IOException {
+		byte type;
+		while ((type = nbt.readType()) != NBTReader.TAG_END) {
+			switch (nbt.readName()) {
+			case "xPos": chunkX = nbt.readInt(type); break;
+			case "zPos": chunkZ = nbt.readInt(type); break;
+			case "TerrainPopulated": terrainPopulated = nbt.readInt(type) != 0; break;
+			case "Biomes":
+				biomes = nbt.readByteArray(type);
+				if (biomes.length != 256) biomes = null;
+				break;
+			case "Sections":
+				if (type != NBTReader.TAG_LIST) {
+					nbt.skip(type);
+					break;
+				}
+				
+				byte elementType = nbt.readListType();
+				int length = nbt.readListLength();
+				for (int i = 0; i < length; i++) {
+					if (elementType != NBTReader.TAG_COMPOUND) {
+						nbt.skip(elementType);
+						continue;
+					}
+					
+					Section section = Section.read(nbt);
+					if (section.y >= 0 && section.y < SECTION_COUNT) sections[section.y] = section;
+				}
+				break;
+			default: nbt.skip(type); break;
+			}
+		}
+	}
+	
+	public static class Section {
+		
+		private int y;
+		private byte[] blocks;
+		private byte[] add;
+		private byte[] data;
+		private byte[] blockLight;
+		private byte[] skyLight;
+		
+		private Section() {}
+		
+		/**
+		 * Returns the legacy block-state id (<code>blockId << 4 | meta</code>) of the block at that index.
+		 */
+		public int getStateId(int index) {
+			int blockId = blocks[index] & 0xFF;
+			if (add != null) blockId |= nibble(add, index) << 8;
+			return blockId << 4 | nibble(data, index);
+		}
+		
+		public int getBlockLight(int index) {
+			return blockLight != null ? nibble(blockLight, index) : 0;
+		}
+		
+		public int getSkyLight(int index) {
+			return skyLight != null ? nibble(skyLight, index) : 15;
+		}
+		
+		private static int nibble(byte[] array, int index) {
+			return (array[index >> 1] >> ((index & 1) << 2)) & 0xF;
+		}
+		
+		private static Section read(NBTReader nbt) throws IOException {
+			Section section = new Section();
+			
+			byte type;
+			while ((type = nbt.readType()) != NBTReader.TAG_END) {
+				switch (nbt.readName()) {
+				case "Y": section.y = nbt.readInt(type); break;
+				case "Blocks": section.blocks = nbt.readByteArray(type); break;
+				case "Add": section.add = nbt.readByteArray(type); break;
+				case "Data": section.data = nbt.readByteArray(type); break;
+				case "BlockLight": section.blockLight = nbt.readByteArray(type); break;
+				case "SkyLight": section.skyLight = nbt.readByteArray(type); break;
+				default: nbt.skip(type); break;
+				}
+			}
+			
+			if (section.blocks == null || section.blocks.length != 4096) throw new IOException("Invalid chunk-data: section " + section.y + " has no valid Blocks-tag");
+			if (section.data == null || section.data.length != 2048) throw new IOException("Invalid chunk-data: section " + section.y + " has no valid Data-tag");
+			if (section.add != null && section.add.length != 2048) section.add = null;
+			if (section.blockLight != null && section.blockLight.length != 2048) section.blockLight = null;
+			if (section.skyLight != null && section.skyLight.length != 2048) section.skyLight = null;
+			
+			return section;
+		}
+		
+	}
+	
+}
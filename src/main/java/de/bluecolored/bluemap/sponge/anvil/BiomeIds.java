@@ -0,0 +1,124 @@
+/*
+ * This file is part of BlueMapSponge, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) Blue (Lukas Rieger) <https://bluecolored.de>
+ * Copyright (c) contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package de.bluecolored.bluemap.sponge.anvil;
+
+import de.bluecolored.bluemap.sponge.impl.BiomeRegistry;
+
+/**
+ * The numeric biome-ids of minecraft 1.12, as they are stored in the region-files.<br>
+ * The names are the same that sponge uses as biome-ids (without the "minecraft:" prefix).
+ */
+public class BiomeIds {
+
+	private static final String DEFAULT_BIOME = "plains";
+	private static final String[] NAMES = new String[256];
+	private static final int[] REGISTRY_IDS = new int[256];
+	
+	static {
+		NAMES[0] = "ocean";
+		NAMES[1] = "plains";
+		NAMES[2] = "desert";
+		NAMES[3] = "extreme_hills";
+		NAMES[4] = "forest";
+		NAMES[5] = "taiga";
+		NAMES[6] = "swampland";
+		NAMES[7] = "river";
+		NAMES[8] = "hell";
+		NAMES[9] = "sky";
+		NAMES[10] = "frozen_ocean";
+		NAMES[11] = "frozen_river";
+		NAMES[12] = "ice_flats";
+		NAMES[13] = "ice_mountains";
+		NAMES[14] = "mushroom_island";
+		NAMES[15] = "mushroom_island_shore";
+		NAMES[16] = "beaches";
+		NAMES[17] = "desert_hills";
+		NAMES[18] = "forest_hills";
+		NAMES[19] = "taiga_hills";
+		NAMES[20] = "smaller_extreme_hills";
+		NAMES[21] = "jungle";
+		NAMES[22] = "jungle_hills";
+		NAMES[23] = "jungle_edge";
+		NAMES[24] = "deep_ocean";
+		NAMES[25] = "stone_beach";
+		NAMES[26] = "cold_beach";
+		NAMES[27] = "birch_forest";
+		NAMES[28] = "birch_forest_hills";
+		NAMES[29] = "roofed_forest";
+		NAMES[30] = "taiga_cold";
+		NAMES[31] = "taiga_cold_hills";
+		NAMES[32] = "redwood_taiga";
+		NAMES[33] = "redwood_taiga_hills";
+		NAMES[34] = "extreme_hills_with_trees";
+		NAMES[35] = "savanna";
+		NAMES[36] = "savanna_rock";
+		NAMES[37] = "mesa";
+		NAMES[38] = "mesa_rock";
+		NAMES[39] = "mesa_clear_rock";
+		NAMES[127] = "void";
+		NAMES[129] = "mutated_plains";
+		NAMES[130] = "mutated_desert";
+		NAMES[131] = "mutated_extreme_hills";
+		NAMES[132] = "mutated_forest";
+		NAMES[133] = "mutated_taiga";
+		NAMES[134] = "mutated_swampland";
+		NAMES[140] = "mutated_ice_flats";
+		NAMES[149] = "mutated_jungle";
+		NAMES[151] = "mutated_jungle_edge";
+		NAMES[155] = "mutated_birch_forest";
+		NAMES[156] = "mutated_birch_forest_hills";
+		NAMES[157] = "mutated_roofed_forest";
+		NAMES[158] = "mutated_taiga_cold";
+		NAMES[160] = "mutated_redwood_taiga";
+		NAMES[161] = "mutated_redwood_taiga_hills";
+		NAMES[162] = "mutated_extreme_hills_with_trees";
+		NAMES[163] = "mutated_savanna";
+		NAMES[164] = "mutated_savanna_rock";
+		NAMES[165] = "mutated_mesa";
+		NAMES[166] = "mutated_mesa_rock";
+		NAMES[167] = "mutated_mesa_clear_rock";
+		
+		for (int i = 0; i < NAMES.length; i++) {
+			REGISTRY_IDS[i] = BiomeRegistry.getId(getName(i));
+		}
+	}
+	
+	/**
+	 * Returns the name of the biome with that id, unknown ids (e.g. biomes of mods) are rendered as plains.
+	 */
+	public static String getName(int biomeId) {
+		if (biomeId < 0 || biomeId >= NAMES.length || NAMES[biomeId] == null) return DEFAULT_BIOME;
+		return NAMES[biomeId];
+	}
+	
+	/**
+	 * Returns the {@link BiomeRegistry}-id of the biome with that id, unknown ids (e.g. biomes of mods) are rendered as plains.
+	 */
+	public static int getRegistryId(int biomeId) {
+		if (biomeId < 0 || biomeId >= REGISTRY_IDS.length) return BiomeRegistry.getId(DEFAULT_BIOME);
+		return REGISTRY_IDS[biomeId];
+	}
+	
+}
@@ -0,0 +1,96 @@
+/*
+ * This file is part of BlueMapSponge, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) Blue (Lukas Rieger) <https://bluecolored.de>
+ * Copyright (c) contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package de.bluecolored.bluemap.sponge.anvil;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.zip.GZIPInputStream;
+
+import com.flowpowered.math.vector.Vector3i;
+
+/**
+ * The parts of a world's <code>level.dat</code> that are needed to render the world.
+ */
+public class LevelData {
+
+	private String levelName;
+	private Vector3i spawnPoint;
+	
+	private LevelData() {
+		this.levelName = "";
+		this.spawnPoint = new Vector3i(0, 64, 0);
+	}
+	
+	public String getLevelName() {
+		return levelName;
+	}
+	
+	public Vector3i getSpawnPoint() {
+		return spawnPoint;
+	}
+	
+	public static LevelData read(Path levelDat) throws IOException {
+		try (DataInputStream in = new DataInputStream(new BufferedInputStream(new GZIPInputStream(Files.newInputStream(levelDat))))) {
+			NBTReader nbt = new NBTReader(in);
+			if (nbt.readType() != NBTReader.TAG_COMPOUND) throw new IOException("Invalid level-data: root is not a compound");
+			nbt.readName();
+			
+			LevelData levelData = new LevelData();
+			
+			byte type;
+			while ((type = nbt.readType()) != NBTReader.TAG_END) {
+				String name = nbt.readName();
+				if (type == NBTReader.TAG_COMPOUND && name.equals("Data")) {
+					levelData.readData(nbt);
+				} else {
+					nbt.skip(type);
+				}
+			}
+			
+			return levelData;
+		}
+	}
+	
+	private void readData(NBTReader nbt) throws IOException {
+		int spawnX = spawnPoint.getX(), spawnY = spawnPoint.getY(), spawnZ = spawnPoint.getZ();
+		
+		byte type;
+		while ((type = nbt.readType()) != NBTReader.TAG_END) {
+			switch (nbt.readName()) {
+			case "LevelName": levelName = nbt.readString(type); break;
+			case "SpawnX": spawnX = nbt.readInt(type); break;
+			case "SpawnY": spawnY = nbt.readInt(type); break;
+			case "SpawnZ": spawnZ = nbt.readInt(type); break;
+			default: nbt.skip(type); break;
+			}
+		}
+		
+		spawnPoint = new Vector3i(spawnX, spawnY, spawnZ);
+	}
+	
+}
@@ -0,0 +1,167 @@
+/*
+ * This file is part of BlueMapSponge, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) Blue (Lukas Rieger) <https://bluecolored.de>
+ * Copyright (c) contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package de.bluecolored.bluemap.sponge.anvil;
+
+import java.io.DataInput;
+import java.io.IOException;
+
+/**
+ * A minimal streaming reader for the named-binary-tag (NBT) format minecraft uses to store chunks.<br>
+ * The reader does not build a tree, the caller walks through the tags and reads or skips them as needed.
+ */
+class NBTReader {
+
+	static final byte TAG_END = 0;
+	static final byte TAG_BYTE = 1;
+	static final byte TAG_SHORT = 2;
+	static final byte TAG_INT = 3;
+	static final byte TAG_LONG = 4;
+	static final byte TAG_FLOAT = 5;
+	static final byte TAG_DOUBLE = 6;
+	static final byte TAG_BYTE_ARRAY = 7;
+	static final byte TAG_STRING = 8;
+	static final byte TAG_LIST = 9;
+	static final byte TAG_COMPOUND = 10;
+	static final byte TAG_INT_ARRAY = 11;
+	static final byte TAG_LONG_ARRAY = 12;
+	
+	//no array in a chunk is bigger than this, bigger values mean that the data is corrupted
+	private static final int MAX_ARRAY_LENGTH = 1 << 20;
+	
+	private final DataInput in;
+	
+	public NBTReader(DataInput in) {
+		this.in = in;
+	}
+	
+	/**
+	 * Reads the type of the next tag in a compound, {@link #TAG_END} if the compound has no more tags.
+	 */
+	public byte readType() throws IOException {
+		return in.readByte();
+	}
+	
+	public String readName() throws IOException {
+		return in.readUTF();
+	}
+	
+	/**
+	 * Reads any number-tag as an int.
+	 */
+	public int readInt(byte type) throws IOException {
+		switch (type) {
+		case TAG_BYTE: return in.readByte();
+		case TAG_SHORT: return in.readShort();
+		case TAG_INT: return in.readInt();
+		case TAG_LONG: return (int) in.readLong();
+		default:
+			skip(type);
+			throw new IOException("Expected a number-tag but got tag-type " + type);
+		}
+	}
+	
+	public String readString(byte type) throws IOException {
+		if (type != TAG_STRING) {
+			skip(type);
+			throw new IOException("Expected a string-tag but got tag-type " + type);
+		}
+		
+		return in.readUTF();
+	}
+	
+	public byte[] readByteArray(byte type) throws IOException {
+		if (type != TAG_BYTE_ARRAY) {
+			skip(type);
+			throw new IOException("Expected a byte-array-tag but got tag-type " + type);
+		}
+		
+		byte[] array = new byte[readLength()];
+		in.readFully(array);
+		return array;
+	}
+	
+	/**
+	 * Reads the header of a list-tag and returns the type of its elements, use {@link #readListLength()} to get the number of elements.
+	 */
+	public byte readListType() throws IOException {
+		return in.readByte();
+	}
+	
+	public int readListLength() throws IOException {
+		return readLength();
+	}
+	
+	/**
+	 * Skips the payload of a tag with the given type.
+	 */
+	public void skip(byte type) throws IOException {
+		switch (type) {
+		case TAG_END: break;
+		case TAG_BYTE: skipBytes(1); break;
+		case TAG_SHORT: skipBytes(2); break;
+		case TAG_INT: skipBytes(4); break;
+		case TAG_LONG: skipBytes(8); break;
+		case TAG_FLOAT: skipBytes(4); break;
+		case TAG_DOUBLE: skipBytes(8); break;
+		case TAG_BYTE_ARRAY: skipBytes(readLength()); break;
+		case TAG_STRING: skipBytes(in.readUnsignedShort()); break;
+		case TAG_INT_ARRAY: skipBytes(readLength() * 4); break;
+		case TAG_LONG_ARRAY: skipBytes(readLength() * 8); break;
+		case TAG_LIST:
+			byte elementType = readListType();
+			int length = readListLength();
+			for (int i = 0; i < length; i++) skip(elementType);
+			break;
+		case TAG_COMPOUND:
+			byte tagType;
+			while ((tagType = readType()) != TAG_END) {
+				skipBytes(in.readUnsignedShort());
+				skip(tagType);
+			}
+			break;
+		default:
+			throw new IOException("Unknown tag-type: " + type);
+		}
+	}
+	
+	private int readLength() throws IOException {
+		int length = in.readInt();
+		if (length < 0 || length > MAX_ARRAY_LENGTH) throw new IOException("Invalid tag-length: " + length);
+		return length;
+	}
+	
+	private void skipBytes(int count) throws IOException {
+		while (count > 0) {
+			int skipped = in.skipBytes(count);
+			if (skipped <= 0) {
+				//skipBytes might skip nothing without reaching the end, so read one byte to be sure
+				in.readByte();
+				skipped = 1;
+			}
+			count -= skipped;
+		}
+	}
+	
+}
@@ -0,0 +1,189 @@
+/*
+ * This file is part of BlueMapSponge, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) Blue (Lukas Rieger) <https://bluecolored.de>
+ * Copyright (c) contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package de.bluecolored.bluemap.sponge.anvil;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.Inflater;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * Read-only access to one anvil region-file (<code>r.x.z.mca</code>) containing 32x32 chunks.<br>
+ * <br>
+ * The file is memory-mapped, so looking up the header is only a memory-access and the chunk-data is 
+ * decompressed directly from the mapped file without copying it first.<br>
+ * The server might write to the file at the same time, in that case reading a chunk might fail with an {@link IOException}.
+ */
+public class RegionFile {
+
+	private static final int SECTOR_SIZE = 4096;
+	private static final int HEADER_SIZE = 2 * SECTOR_SIZE;
+	
+	private static final int COMPRESSION_GZIP = 1;
+	private static final int COMPRESSION_ZLIB = 2;
+	
+	private final Path file;
+	private volatile ByteBuffer buffer;
+	
+	public RegionFile(Path file) throws IOException {
+		this.file = file;
+		this.buffer = map();
+	}
+	
+	public Path getFile() {
+		return file;
+	}
+	
+	/**
+	 * Whether the chunk at that position (relative to this region) has been saved to this region-file.
+	 */
+	public boolean hasChunk(int localX, int localZ) {
+		return getLocation(localX, localZ) != 0;
+	}
+	
+	/**
+	 * Returns the time (in seconds since epoch) the chunk at that position (relative to this region) has been written the last time, or 0 if the chunk does not exist.
+	 */
+	public int getTimestamp(int localX, int localZ) {
+		ByteBuffer buffer = this.buffer;
+		if (buffer == null) return 0;
+		
+		return buffer.getInt(SECTOR_SIZE + index(localX, localZ) * 4);
+	}
+	
+	/**
+	 * Reads and decompresses the chunk at that position (relative to this region).
+	 * @return the chunk or null if the chunk does not exist in this region-file
+	 * @throws IOException if the chunk-data could not be read, e.g. because it is corrupted or currently being written
+	 */
+	public AnvilChunk readChunk(int localX, int localZ) throws IOException {
+		int location = getLocation(localX, localZ);
+		if (location == 0) return null;
+		
+		int sectorOffset = location >>> 8;
+		int sectorCount = location & 0xFF;
+		long chunkStart = (long) sectorOffset * SECTOR_SIZE;
+		long chunkEnd = chunkStart + (long) sectorCount * SECTOR_SIZE;
+		
+		ByteBuffer buffer = this.buffer;
+		if (chunkEnd > buffer.capacity()) {
+			//the file has grown since we mapped it
+			buffer = remap();
+			if (chunkEnd > buffer.capacity()) throw new IOException("Chunk " + localX + ", " + localZ + " of region-file " + file + " is outside of the file");
+		}
+		
+		ByteBuffer chunkData = buffer.duplicate();
+		chunkData.position((int) chunkStart);
+		
+		int length = chunkData.getInt();
+		if (length <= 1 || length > sectorCount * SECTOR_SIZE - 4) throw new IOException("Chunk " + localX + ", " + localZ + " of region-file " + file + " has an invalid length: " + length);
+		int compression = chunkData.get();
+		chunkData.limit(chunkData.position() + length - 1);
+		
+		InputStream compressed = new ByteBufferInputStream(chunkData);
+		InputStream decompressed;
+		switch (compression) {
+		case COMPRESSION_GZIP: decompressed = new GZIPInputStream(compressed, 8192); break;
+		case COMPRESSION_ZLIB: decompressed = new InflaterInputStream(compressed, new Inflater(), 8192); break;
+		default: throw new IOException("Chunk " + localX + ", " + localZ + " of region-file " + file + " has an unknown compression-type: " + compression);
+		}
+		
+		try (DataInputStream in = new DataInputStream(new BufferedInputStream(decompressed))) {
+			return AnvilChunk.read(in);
+		} catch (RuntimeException e) {
+			//corrupted data might cause all kinds of exceptions in the inflater
+			throw new IOException("Failed to read chunk " + localX + ", " + localZ + " of region-file " + file, e);
+		}
+	}
+	
+	private int getLocation(int localX, int localZ) {
+		ByteBuffer buffer = this.buffer;
+		if (buffer == null) return 0;
+		
+		return buffer.getInt(index(localX, localZ) * 4);
+	}
+	
+	private synchronized ByteBuffer remap() throws IOException {
+		buffer = map();
+		return buffer;
+	}
+	
+	private ByteBuffer map() throws IOException {
+		if (!Files.exists(file)) return null;
+		
+		try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+			long size = channel.size();
+			if (size < HEADER_SIZE) return null;
+			if (size > Integer.MAX_VALUE) size = Integer.MAX_VALUE;
+			
+			//the mapping stays valid after the channel is closed
+			return channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+		}
+	}
+	
+	private static int index(int localX, int localZ) {
+		return (localZ & 31) * 32 + (localX & 31);
+	}
+	
+	private static class ByteBufferInputStream extends InputStream {
+		
+		private final ByteBuffer buffer;
+		
+		public ByteBufferInputStream(ByteBuffer buffer) {
+			this.buffer = buffer;
+		}
+		
+		@Override
+		public int read() {
+			if (!buffer.hasRemaining()) return -1;
+			return buffer.get() & 0xFF;
+		}
+		
+		@Override
+		public int read(byte[] b, int off, int len) {
+			if (len == 0) return 0;
+			if (!buffer.hasRemaining()) return -1;
+			
+			len = Math.min(len, buffer.remaining());
+			buffer.get(b, off, len);
+			return len;
+		}
+		
+		@Override
+		public int available() {
+			return buffer.remaining();
+		}
+		
+	}
+	
+}
@@ -0,0 +1,102 @@
+/*
+ * This file is part of BlueMapSponge, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) Blue (Lukas Rieger) <https://bluecolored.de>
+ * Copyright (c) contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package de.bluecolored.bluemap.sponge.anvil;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.util.concurrent.UncheckedExecutionException;
+
+import de.bluecolored.bluemap.sponge.WorldUtil;
+
+/**
+ * Reads the chunks of a world directly from its region-files, without loading them into the server.
+ */
+public class RegionStorage {
+
+	private final Path regionFolder;
+	private final Cache<Long, RegionFile> regionFileCache;
+	
+	public RegionStorage(Path regionFolder) {
+		this.regionFolder = regionFolder;
+		
+		//region-files that did not exist might be created later, so we don't keep them forever
+		this.regionFileCache = CacheBuilder.newBuilder()
+				.maximumSize(64)
+				.expireAfterWrite(1, TimeUnit.MINUTES)
+				.build();
+	}
+	
+	/**
+	 * Whether the chunk at that chunk-position has been saved to its region-file.
+	 */
+	public boolean hasChunk(int chunkX, int chunkZ) {
+		try {
+			return getRegionFile(chunkX >> 5, chunkZ >> 5).hasChunk(chunkX, chunkZ);
+		} catch (IOException e) {
+			return false;
+		}
+	}
+	
+	/**
+	 * Returns the time (in seconds since epoch) the chunk at that chunk-position has been saved the last time, or 0 if the chunk does not exist.
+	 */
+	public int getChunkTimestamp(int chunkX, int chunkZ) {
+		try {
+			return getRegionFile(chunkX >> 5, chunkZ >> 5).getTimestamp(chunkX, chunkZ);
+		} catch (IOException e) {
+			return 0;
+		}
+	}
+	
+	/**
+	 * Reads the chunk at that chunk-position from its region-file.
+	 * @return the chunk or null if the chunk does not exist in the region-file
+	 */
+	public AnvilChunk readChunk(int chunkX, int chunkZ) throws IOException {
+		return getRegionFile(chunkX >> 5, chunkZ >> 5).readChunk(chunkX, chunkZ);
+	}
+	
+	public RegionFile getRegionFile(int regionX, int regionZ) throws IOException {
+		try {
+			return regionFileCache.get(WorldUtil.packXZ(regionX, regionZ), () -> 
+				new RegionFile(regionFolder.resolve("r." + regionX + "." + regionZ + ".mca"))
+			);
+		} catch (ExecutionException | UncheckedExecutionException e) {
+			Throwable cause = e.getCause();
+			if (cause instanceof IOException) throw (IOException) cause;
+			throw new IOException("Failed to open region-file " + regionX + ", " + regionZ, cause);
+		}
+	}
+	
+	public Path getRegionFolder() {
+		return regionFolder;
+	}
+	
+}
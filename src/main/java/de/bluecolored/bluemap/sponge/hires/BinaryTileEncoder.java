@@ -0,0 +1,408 @@
+/*
+ * This file is part of BlueMapSponge, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) Blue (Lukas Rieger) <https://bluecolored.de>
+ * Copyright (c) contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package de.bluecolored.bluemap.sponge.hires;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+
+import gnu.trove.list.array.TFloatArrayList;
+import gnu.trove.list.array.TIntArrayList;
+import gnu.trove.map.hash.TLongIntHashMap;
+
+/**
+ * Converts the three.js BufferGeometry-json of a hires-tile into a compact binary format.<br>
+ * <br>
+ * The json is read as a stream, only the numbers are kept in primitive lists. Equal vertices are merged, so the 
+ * geometry becomes indexed, and every attribute is stored with the smallest type that keeps its precision.<br>
+ * All numbers are little-endian and every buffer starts at a multiple of 4 bytes, so the buffers can be used 
+ * as typed arrays in the browser directly:
+ * <pre>
+ * "BMHT"             4 bytes magic
+ * version            uint8, 3 bytes padding
+ * vertexCount        uint32
+ * indexCount         uint32
+ * attributeCount     uint32
+ * 
+ * for each attribute:
+ *   nameLength       uint8
+ *   name             utf-8
+ *   itemSize         uint8
+ *   type             uint8, see TYPE_*
+ *   (padding to 4 bytes)
+ *   if TYPE_QUANTIZED:
+ *     origin         float32[itemSize]
+ *     step           float32 (value = origin + data * step)
+ *   data             vertexCount * itemSize values of the type
+ *   (padding to 4 bytes)
+ * 
+ * indexSize          uint8, 2 (uint16) or 4 (uint32), 3 bytes padding
+ * indices            indexCount values
+ * (padding to 4 bytes)
+ * 
+ * groupCount         uint32
+ * for each group:    uint32 start, uint32 count, uint32 materialIndex (start and count in indices)
+ * </pre>
+ */
+public class BinaryTileEncoder {
+
+	public static final int VERSION = 1;
+	
+	/** The media-type a client sends in the accept-header if it can read this format instead of the json */
+	public static final String MEDIA_TYPE = "application/x-bluemap-hires-tile";
+	
+	public static final int TYPE_FLOAT32 = 0;
+	
+	/** uint16, value = origin + data * step */
+	public static final int TYPE_QUANTIZED = 1;
+	
+	/** int8, value = data / 127 */
+	public static final int TYPE_NORM_INT8 = 2;
+	
+	/** uint8, value = data / 255 */
+	public static final int TYPE_NORM_UINT8 = 3;
+	
+	/** uint16, value = data / 65535 */
+	public static final int TYPE_NORM_UINT16 = 4;
+	
+	private static final byte[] MAGIC = "BMHT".getBytes(StandardCharsets.US_ASCII);
+	
+	//positions are quantized to 1/64 of a block, that is a quarter of a texture-pixel
+	private static final float POSITION_STEP = 1f / 64f;
+	
+	private BinaryTileEncoder() {}
+	
+	/**
+	 * Reads the BufferGeometry-json and returns the encoded tile
+	 */
+	public static byte[] encode(Reader json) throws IOException {
+		List<Attribute> attributes = new ArrayList<>();
+		TIntArrayList groups = new TIntArrayList();
+		read(new JsonReader(json), attributes, groups);
+		
+		if (attributes.isEmpty()) throw new IOException("The geometry has no attributes");
+		
+		int vertexCount = attributes.get(0).values.size() / attributes.get(0).itemSize;
+		int stride = 0;
+		for (Attribute attribute : attributes) {
+			if (attribute.values.size() != vertexCount * attribute.itemSize) throw new IOException("Attribute " + attribute.name + " has the wrong length");
+			
+			attribute.chooseType();
+			attribute.offset = stride;
+			stride += attribute.itemSize * attribute.typeSize();
+		}
+		
+		//encode all vertices interleaved, so equal vertices can be found by comparing their bytes
+		ByteBuffer vertices = ByteBuffer.allocate(vertexCount * stride).order(ByteOrder.LITTLE_ENDIAN);
+		for (int v = 0; v < vertexCount; v++) {
+			for (Attribute attribute : attributes) {
+				attribute.write(vertices, v);
+			}
+		}
+		
+		int[] indices = new int[vertexCount];
+		int[] uniqueVertices = new int[vertexCount];
+		int uniqueCount = 0;
+		
+		TLongIntHashMap firstVertexByHash = new TLongIntHashMap(vertexCount, 0.5f, Long.MIN_VALUE, -1);
+		byte[] data = vertices.array();
+		for (int v = 0; v < vertexCount; v++) {
+			long hash = hash(data, v * stride, stride);
+			int unique = firstVertexByHash.get(hash);
+			
+			//on a hash-collision with a different vertex, the vertex just stays unmerged
+			if (unique == -1 || !equals(data, uniqueVertices[unique] * stride, v * stride, stride)) {
+				unique = uniqueCount++;
+				uniqueVertices[unique] = v;
+				firstVertexByHash.putIfAbsent(hash, unique);
+			}
+			
+			indices[v] = unique;
+		}
+		
+		//calculate the size of the result
+		int indexSize = uniqueCount <= 0xFFFF ? 2 : 4;
+		int size = 20;
+		for (Attribute attribute : attributes) {
+			size = pad(size + 1 + attribute.nameBytes.length + 2);
+			if (attribute.type == TYPE_QUANTIZED) size += (attribute.itemSize + 1) * 4;
+			size = pad(size + uniqueCount * attribute.itemSize * attribute.typeSize());
+		}
+		size = pad(4 + size + vertexCount * indexSize);
+		size += 4 + groups.size() * 4;
+		
+		ByteBuffer out = ByteBuffer.allocate(size).order(ByteOrder.LITTLE_ENDIAN);
+		out.put(MAGIC);
+		out.put((byte) VERSION);
+		padTo4(out);
+		out.putInt(uniqueCount);
+		out.putInt(vertexCount);
+		out.putInt(attributes.size());
+		
+		for (Attribute attribute : attributes) {
+			out.put((byte) attribute.nameBytes.length);
+			out.put(attribute.nameBytes);
+			out.put((byte) attribute.itemSize);
+			out.put((byte) attribute.type);
+			padTo4(out);
+			
+			if (attribute.type == TYPE_QUANTIZED) {
+				for (float origin : attribute.origin) out.putFloat(origin);
+				out.putFloat(attribute.step);
+			}
+			
+			int length = attribute.itemSize * attribute.typeSize();
+			for (int i = 0; i < uniqueCount; i++) {
+				out.put(data, uniqueVertices[i] * stride + attribute.offset, length);
+			}
+			padTo4(out);
+		}
+		
+		out.put((byte) indexSize);
+		padTo4(out);
+		for (int index : indices) {
+			if (indexSize == 2) out.putShort((short) index);
+			else out.putInt(index);
+		}
+		padTo4(out);
+		
+		out.putInt(groups.size() / 3);
+		for (int i = 0; i < groups.size(); i++) {
+			out.putInt(groups.get(i));
+		}
+		
+		return out.array();
+	}
+	
+	private static void read(JsonReader json, List<Attribute> attributes, TIntArrayList groups) throws IOException {
+		json.beginObject();
+		while (json.hasNext()) {
+			switch (json.nextName()) {
+			case "attributes":
+				json.beginObject();
+				while (json.hasNext()) {
+					attributes.add(readAttribute(json.nextName(), json));
+				}
+				json.endObject();
+				break;
+				
+			case "groups":
+				json.beginArray();
+				while (json.hasNext()) {
+					readGroup(json, groups);
+				}
+				json.endArray();
+				break;
+				
+			default:
+				json.skipValue();
+			}
+		}
+		json.endObject();
+	}
+	
+	private static Attribute readAttribute(String name, JsonReader json) throws IOException {
+		Attribute attribute = new Attribute(name);
+		
+		json.beginObject();
+		while (json.hasNext()) {
+			switch (json.nextName()) {
+			case "itemSize":
+				attribute.itemSize = json.nextInt();
+				break;
+				
+			case "array":
+				json.beginArray();
+				while (json.hasNext()) {
+					attribute.values.add((float) json.nextDouble());
+				}
+				json.endArray();
+				break;
+				
+			default:
+				json.skipValue();
+			}
+		}
+		json.endObject();
+		
+		if (attribute.itemSize <= 0 || attribute.itemSize > 4) throw new IOException("Attribute " + name + " has an invalid item-size: " + attribute.itemSize);
+		return attribute;
+	}
+	
+	private static void readGroup(JsonReader json, TIntArrayList groups) throws IOException {
+		int start = 0, count = 0, materialIndex = 0;
+		
+		json.beginObject();
+		while (json.hasNext()) {
+			String name = json.nextName();
+			if (json.peek() != JsonToken.NUMBER) {
+				json.skipValue();
+				continue;
+			}
+			
+			switch (name) {
+			case "start": start = json.nextInt(); break;
+			case "count": count = json.nextInt(); break;
+			case "materialIndex": materialIndex = json.nextInt(); break;
+			default: json.skipValue();
+			}
+		}
+		json.endObject();
+		
+		groups.add(start);
+		groups.add(count);
+		groups.add(materialIndex);
+	}
+	
+	private static long hash(byte[] data, int offset, int length) {
+		long hash = 0xcbf29ce484222325L;
+		for (int i = offset; i < offset + length; i++) {
+			hash = (hash ^ data[i]) * 0x100000001b3L;
+		}
+		return hash;
+	}
+	
+	private static boolean equals(byte[] data, int offsetA, int offsetB, int length) {
+		for (int i = 0; i < length; i++) {
+			if (data[offsetA + i] != data[offsetB + i]) return false;
+		}
+		return true;
+	}
+	
+	private static int pad(int position) {
+		return (position + 3) & ~3;
+	}
+	
+	private static void padTo4(ByteBuffer buffer) {
+		while ((buffer.position() & 3) != 0) buffer.put((byte) 0);
+	}
+	
+	private static class Attribute {
+		
+		private String name;
+		private byte[] nameBytes;
+		private int itemSize;
+		private TFloatArrayList values;
+		
+		private int type;
+		private float[] origin;
+		private float step;
+		private int offset;
+		
+		private Attribute(String name) {
+			this.name = name;
+			this.nameBytes = name.getBytes(StandardCharsets.UTF_8);
+			this.values = new TFloatArrayList();
+		}
+		
+		/**
+		 * Chooses the smallest type that can hold the values of this attribute without losing visible precision
+		 */
+		private void chooseType() throws IOException {
+			if (nameBytes.length > 255) throw new IOException("Attribute-name too long: " + name);
+			
+			float min = values.isEmpty() ? 0 : values.min();
+			float max = values.isEmpty() ? 0 : values.max();
+			
+			switch (name) {
+			case "position":
+				origin = new float[itemSize];
+				float range = 0;
+				for (int c = 0; c < itemSize; c++) {
+					float componentMin = Float.POSITIVE_INFINITY, componentMax = Float.NEGATIVE_INFINITY;
+					for (int i = c; i < values.size(); i += itemSize) {
+						componentMin = Math.min(componentMin, values.get(i));
+						componentMax = Math.max(componentMax, values.get(i));
+					}
+					
+					origin[c] = values.isEmpty() ? 0 : componentMin;
+					range = Math.max(range, componentMax - componentMin);
+				}
+				
+				step = POSITION_STEP;
+				type = range / step <= 0xFFFF ? TYPE_QUANTIZED : TYPE_FLOAT32;
+				break;
+				
+			case "normal":
+				type = min >= -1 && max <= 1 ? TYPE_NORM_INT8 : TYPE_FLOAT32;
+				break;
+				
+			case "uv":
+				//texture-coordinates point into a big texture-atlas and need more precision
+				type = min >= 0 && max <= 1 ? TYPE_NORM_UINT16 : TYPE_FLOAT32;
+				break;
+				
+			default:
+				type = min >= 0 && max <= 1 ? TYPE_NORM_UINT8 : TYPE_FLOAT32;
+			}
+		}
+		
+		private int typeSize() {
+			switch (type) {
+			case TYPE_QUANTIZED:
+			case TYPE_NORM_UINT16:
+				return 2;
+			case TYPE_NORM_INT8:
+			case TYPE_NORM_UINT8:
+				return 1;
+			default:
+				return 4;
+			}
+		}
+		
+		private void write(ByteBuffer buffer, int vertex) {
+			int start = vertex * itemSize;
+			for (int c = 0; c < itemSize; c++) {
+				float value = values.get(start + c);
+				
+				switch (type) {
+				case TYPE_QUANTIZED:
+					buffer.putShort((short) Math.round((value - origin[c]) / step));
+					break;
+				case TYPE_NORM_INT8:
+					buffer.put((byte) Math.round(value * 127));
+					break;
+				case TYPE_NORM_UINT8:
+					buffer.put((byte) Math.round(value * 255));
+					break;
+				case TYPE_NORM_UINT16:
+					buffer.putShort((short) Math.round(value * 65535));
+					break;
+				default:
+					buffer.putFloat(value);
+				}
+			}
+		}
+		
+	}
+	
+}
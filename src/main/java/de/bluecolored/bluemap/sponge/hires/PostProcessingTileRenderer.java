@@ -0,0 +1,311 @@
+/*
+ * This file is part of BlueMapSponge, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) Blue (Lukas Rieger) <https://bluecolored.de>
+ * Copyright (c) contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package de.bluecolored.bluemap.sponge.hires;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.GZIPOutputStream;
+
+import com.flowpowered.math.vector.Vector2i;
+
+import de.bluecolored.bluemap.logger.Logger;
+import de.bluecolored.bluemap.render.RenderSettings;
+import de.bluecolored.bluemap.render.TileRenderer;
+import de.bluecolored.bluemap.render.WorldTile;
+import de.bluecolored.bluemap.render.hires.HiresModelManager;
+import de.bluecolored.bluemap.render.lowres.LowresModelManager;
+import de.bluecolored.bluemap.sponge.TrackingTileRenderer;
+import de.bluecolored.bluemap.sponge.metrics.Metrics;
+
+/**
+ * A {@link TileRenderer} that processes every hires-tile it renders after the hires-model manager saved it: 
+ * the json is replaced by a gzip-compressed copy (<code>tile.json.gz</code>) and/or the binary format of the {@link BinaryTileEncoder}
+ * is stored next to it (<code>tile.bin</code>), so every client can still load the json.<br>
+ * The processing runs on the given executor, so it does not take any time of the render-threads. The webserver sends the
+ * compressed files as they are.
+ */
+public class PostProcessingTileRenderer extends TrackingTileRenderer {
+
+	//the hires-model manager saves the models asynchronously, so the compression waits until the file did not change for that time
+	private static final long SETTLE_TIME = 2000;
+	private static final int MAX_ATTEMPTS = 5;
+	
+	private Path hiresRoot;
+	private Format format;
+	private Compression compression;
+	private ScheduledExecutorService executor;
+	private Logger logger;
+	
+	//scheduled and running post-processing jobs, a retry is counted before the job that schedules it is done
+	private final AtomicInteger pendingJobs;
+	
+	public PostProcessingTileRenderer(HiresModelManager hiresModelManager, LowresModelManager lowresModelManager, RenderSettings renderSettings, Vector2i pointsPerLowresTile, Vector2i pointsPerHiresTile, Path hiresRoot, Format format, Compression compression, ScheduledExecutorService executor, Logger logger) {
+		super(hiresModelManager, lowresModelManager, renderSettings, pointsPerLowresTile, pointsPerHiresTile);
+		
+		this.hiresRoot = hiresRoot;
+		this.format = format;
+		this.compression = compression;
+		this.executor = executor;
+		this.logger = logger;
+		this.pendingJobs = new AtomicInteger(0);
+	}
+	
+	@Override
+	public void render(WorldTile tile) throws Exception {
+		super.render(tile);
+		
+		schedulePostProcessing(getHiresTileFile(hiresRoot, tile.getTile()), 1);
+	}
+	
+	/**
+	 * Returns true if the tiles of a map with these settings need to be processed after they have been saved
+	 */
+	public static boolean needsPostProcessing(Format format, Compression compression) {
+		return format != Format.JSON || compression != Compression.NONE;
+	}
+	
+	/**
+	 * Waits until all tiles that have been rendered so far are processed (including all retries), 
+	 * this needs to be called before the executor is shut down or the remaining tiles stay as they have been saved.
+	 * @return false if the timeout elapsed before all tiles have been processed
+	 */
+	public boolean awaitPostProcessing(long timeout, TimeUnit unit) throws InterruptedException {
+		long deadline = System.currentTimeMillis() + unit.toMillis(timeout);
+		synchronized (pendingJobs) {
+			while (pendingJobs.get() > 0) {
+				long remaining = deadline - System.currentTimeMillis();
+				if (remaining <= 0) return false;
+				pendingJobs.wait(remaining);
+			}
+		}
+		
+		return true;
+	}
+	
+	private void schedulePostProcessing(Path file, int attempt) {
+		pendingJobs.incrementAndGet();
+		try {
+			executor.schedule(() -> postProcess(file, attempt), SETTLE_TIME, TimeUnit.MILLISECONDS);
+		} catch (RejectedExecutionException e) {
+			//shutting down, the tile stays as it has been saved
+			jobDone();
+		}
+	}
+	
+	private void jobDone() {
+		if (pendingJobs.decrementAndGet() > 0) return;
+		
+		synchronized (pendingJobs) {
+			pendingJobs.notifyAll();
+		}
+	}
+	
+	private void postProcess(Path file, int attempt) {
+		try {
+			processTile(file, attempt);
+		} finally {
+			jobDone();
+		}
+	}
+	
+	private void processTile(Path file, int attempt) {
+		try {
+			BasicFileAttributes attributes;
+			try {
+				attributes = Files.readAttributes(file, BasicFileAttributes.class);
+			} catch (NoSuchFileException e) {
+				//not saved yet
+				if (attempt < MAX_ATTEMPTS) schedulePostProcessing(file, attempt + 1);
+				else logger.noFloodDebug("process-missing-tile", "Can't process hires-tile, it has not been saved: " + file);
+				return;
+			}
+			
+			if (attributes.lastModifiedTime().toMillis() + SETTLE_TIME > System.currentTimeMillis()) {
+				if (attempt < MAX_ATTEMPTS) schedulePostProcessing(file, attempt + 1);
+				return;
+			}
+			
+			long start = Metrics.HIRES_POST_PROCESS.start();
+			byte[] data = Files.readAllBytes(file);
+			boolean gzip = compression == Compression.GZIP;
+			
+			//the json is always kept (compressed or not), the binary tile is an additional representation for clients that ask for it
+			List<Path> tempFiles = new ArrayList<>(2);
+			if (gzip) tempFiles.add(writeTempFile(file, data, true));
+			if (format == Format.BINARY) {
+				byte[] binaryData = BinaryTileEncoder.encode(new InputStreamReader(new ByteArrayInputStream(data), StandardCharsets.UTF_8));
+				tempFiles.add(writeTempFile(getBinaryFile(file), binaryData, gzip));
+			}
+			
+			//the tile might have been rendered again in the meantime, then the next post-processing takes care of it
+			if (!isUnchanged(file, attributes)) {
+				for (Path tempFile : tempFiles) Files.deleteIfExists(tempFile);
+				return;
+			}
+			
+			for (Path tempFile : tempFiles) {
+				String name = tempFile.getFileName().toString();
+				Path targetFile = tempFile.resolveSibling(name.substring(0, name.length() - ".tmp".length()));
+				Files.move(tempFile, targetFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+			}
+			
+			//the uncompressed json is only replaced by its compressed copy
+			if (!gzip) {
+				Metrics.HIRES_POST_PROCESS.stop(start);
+				return;
+			}
+			
+			//the tile could be saved again right after the check above, so the file is renamed first and only deleted if the
+			//renamed file is still the one that has been processed, a tile that is saved after the rename is just kept
+			Path claimedFile = file.resolveSibling(file.getFileName() + ".processed");
+			try {
+				Files.move(file, claimedFile, StandardCopyOption.ATOMIC_MOVE);
+			} catch (NoSuchFileException e) {
+				return;
+			}
+			
+			if (!isUnchanged(claimedFile, attributes)) {
+				//not atomic, an atomic move would replace the file if it exists
+				try {
+					Files.move(claimedFile, file);
+				} catch (FileAlreadyExistsException e) {
+					//an even newer tile has been saved in the meantime
+				}
+				
+				Files.deleteIfExists(claimedFile);
+				if (attempt < MAX_ATTEMPTS) schedulePostProcessing(file, attempt + 1);
+				return;
+			}
+			
+			Files.delete(claimedFile);
+			
+			Metrics.HIRES_POST_PROCESS.stop(start);
+		} catch (IOException | RuntimeException e) {
+			logger.noFloodError("process-tile-" + e.getClass().getSimpleName(), "Failed to process hires-tile: " + file, e);
+		}
+	}
+	
+	/**
+	 * Writes the data to a temporary file next to the target file (with an additional .gz extension if it is compressed) and returns it
+	 */
+	private static Path writeTempFile(Path targetFile, byte[] data, boolean gzip) throws IOException {
+		if (gzip) targetFile = targetFile.resolveSibling(targetFile.getFileName() + ".gz");
+		Path tempFile = targetFile.resolveSibling(targetFile.getFileName() + ".tmp");
+		
+		try (OutputStream out = gzip ? new GZIPOutputStream(Files.newOutputStream(tempFile), 8192) : Files.newOutputStream(tempFile)) {
+			out.write(data);
+		}
+		
+		return tempFile;
+	}
+	
+	/**
+	 * Returns the file that the binary representation of that hires-tile (without compression) is stored in: <code>tile.bin</code> for <code>tile.json</code>
+	 */
+	public static Path getBinaryFile(Path jsonFile) {
+		String name = jsonFile.getFileName().toString();
+		if (name.endsWith(".json")) name = name.substring(0, name.length() - ".json".length());
+		return jsonFile.resolveSibling(name + ".bin");
+	}
+	
+	private static boolean isUnchanged(Path file, BasicFileAttributes attributes) throws IOException {
+		try {
+			BasicFileAttributes now = Files.readAttributes(file, BasicFileAttributes.class);
+			return 
+					now.lastModifiedTime().equals(attributes.lastModifiedTime()) && 
+					now.size() == attributes.size();
+		} catch (NoSuchFileException e) {
+			return false;
+		}
+	}
+	
+	/**
+	 * Returns the file that the {@link HiresModelManager} saves the model of that tile to.<br>
+	 * The path is split after every number, so a folder never has too many files: tile (-12, 5) is stored as <code>x-1/2/z5.json</code>.
+	 */
+	public static Path getHiresTileFile(Path hiresRoot, Vector2i tile) {
+		String path = "x" + tile.getX() + "z" + tile.getY();
+		
+		Path file = hiresRoot;
+		int partStart = 0;
+		for (int i = 0; i < path.length(); i++) {
+			char c = path.charAt(i);
+			if (c < '0' || c > '9') continue;
+			
+			//the last part is the file-name
+			if (i == path.length() - 1) break;
+			
+			file = file.resolve(path.substring(partStart, i + 1));
+			partStart = i + 1;
+		}
+		
+		return file.resolve(path.substring(partStart) + ".json");
+	}
+	
+	/**
+	 * The format hires-tiles are stored in
+	 */
+	public enum Format {
+		
+		/** The BufferGeometry-json as it is written by the hires-model manager */
+		JSON,
+		
+		/** 
+		 * The json is kept and the format of the {@link BinaryTileEncoder} is stored next to it as <code>tile.bin</code>, 
+		 * the webserver sends it to clients that accept {@link BinaryTileEncoder#MEDIA_TYPE}
+		 */
+		BINARY;
+		
+	}
+	
+	/**
+	 * How hires-tiles are compressed
+	 */
+	public enum Compression {
+		
+		/** The tiles are stored uncompressed */
+		NONE,
+		
+		/** The tiles are stored gzip-compressed with an additional .gz extension */
+		GZIP;
+		
+	}
+	
+}
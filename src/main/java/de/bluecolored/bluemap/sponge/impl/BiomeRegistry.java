@@ -0,0 +1,98 @@
+/*
+ * This file is part of BlueMapSponge, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) Blue (Lukas Rieger) <https://bluecolored.de>
+ * Copyright (c) contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package de.bluecolored.bluemap.sponge.impl;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.spongepowered.api.world.biome.BiomeType;
+
+/**
+ * Assigns a small int-id to each biome, so chunk-snapshots and block-data can store the biome as an int 
+ * and the name is only looked up (with an array-read) when it is needed.<br>
+ * The names are the biome-ids of sponge without the "minecraft:" prefix.<br>
+ * <br>
+ * The int-ids are assigned in the order the biomes are first used, so they are only valid during the runtime and must not be persisted.
+ */
+public class BiomeRegistry {
+
+	private static final Object REGISTER_LOCK = new Object();
+	private static final Map<String, Integer> IDS = new ConcurrentHashMap<>();
+	private static final Map<BiomeType, Integer> TYPE_IDS = new ConcurrentHashMap<>();
+	
+	//copied on write, there are only a few biomes and they are registered once
+	private static volatile String[] names = new String[0];
+	
+	/**
+	 * Returns the id of the biome with that name, if the biome is not registered yet it gets a new id.
+	 */
+	public static int getId(String name) {
+		Integer id = IDS.get(name);
+		if (id == null) id = register(name);
+		return id;
+	}
+	
+	/**
+	 * Returns the id of that sponge-biome, if the biome is not registered yet it gets a new id.
+	 */
+	public static int getId(BiomeType biome) {
+		Integer id = TYPE_IDS.get(biome);
+		if (id == null) {
+			String name = biome.getId();
+			if (name.startsWith("minecraft:")) name = name.substring("minecraft:".length());
+			
+			id = getId(name);
+			TYPE_IDS.put(biome, id);
+		}
+		
+		return id;
+	}
+	
+	/**
+	 * Returns the name of the biome with that id.
+	 * @throws IndexOutOfBoundsException if there is no biome with that id
+	 */
+	public static String getName(int id) {
+		return names[id];
+	}
+	
+	private static int register(String name) {
+		synchronized (REGISTER_LOCK) {
+			Integer id = IDS.get(name);
+			if (id != null) return id;
+			
+			//the name has to be published before the id, so every registered id can be resolved
+			String[] newNames = Arrays.copyOf(names, names.length + 1);
+			newNames[names.length] = name;
+			names = newNames;
+			
+			id = newNames.length - 1;
+			IDS.put(name, id);
+			return id;
+		}
+	}
+	
+}
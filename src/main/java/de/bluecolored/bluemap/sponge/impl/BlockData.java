@@ -0,0 +1,111 @@
+/*
+ * This file is part of BlueMapSponge, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) Blue (Lukas Rieger) <https://bluecolored.de>
+ * Copyright (c) contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package de.bluecolored.bluemap.sponge.impl;
+
+import de.bluecolored.bluemap.api.BlockState;
+
+/**
+ * The position-independent data of a block, this is shared between all blocks that have the same state, light, biome and culling.
+ */
+public class BlockData {
+
+	private BlockState state;
+	private int sunLight, blockLight;
+	private int biomeId;
+	private boolean isCulling;
+	private boolean isOccluding;
+	
+	private int hash;
+	
+	public BlockData(BlockState state, int sunLight, int blockLight, int biomeId, boolean isCulling, boolean isOccluding) {
+		this.state = state;
+		this.sunLight = sunLight;
+		this.blockLight = blockLight;
+		this.biomeId = biomeId;
+		this.isCulling = isCulling;
+		this.isOccluding = isOccluding;
+		
+		int hash = state.hashCode();
+		hash = hash * 31 + sunLight;
+		hash = hash * 31 + blockLight;
+		hash = hash * 31 + biomeId;
+		hash = hash * 31 + (isCulling ? 1 : 0);
+		hash = hash * 31 + (isOccluding ? 1 : 0);
+		this.hash = hash;
+	}
+
+	public BlockState getBlockState() {
+		return state;
+	}
+
+	public int getSunLightLevel() {
+		return sunLight;
+	}
+
+	public int getBlockLightLevel() {
+		return blockLight;
+	}
+
+	public String getBiome() {
+		return BiomeRegistry.getName(biomeId);
+	}
+	
+	/**
+	 * The id of the biome in the {@link BiomeRegistry}
+	 */
+	public int getBiomeId() {
+		return biomeId;
+	}
+
+	public boolean isCulling() {
+		return isCulling;
+	}
+
+	public boolean isOccluding() {
+		return isOccluding;
+	}
+	
+	@Override
+	public boolean equals(Object obj) {
+		if (this == obj) return true;
+		if (!(obj instanceof BlockData)) return false;
+		
+		BlockData other = (BlockData) obj;
+		return 
+				hash == other.hash &&
+				biomeId == other.biomeId &&
+				sunLight == other.sunLight &&
+				blockLight == other.blockLight &&
+				isCulling == other.isCulling &&
+				isOccluding == other.isOccluding &&
+				state.equals(other.state);
+	}
+	
+	@Override
+	public int hashCode() {
+		return hash;
+	}
+	
+}
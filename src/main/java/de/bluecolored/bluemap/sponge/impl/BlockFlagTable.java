@@ -0,0 +1,162 @@
+/*
+ * This file is part of BlueMapSponge, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) Blue (Lukas Rieger) <https://bluecolored.de>
+ * Copyright (c) contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package de.bluecolored.bluemap.sponge.impl;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import javax.annotation.Nullable;
+
+import org.spongepowered.api.block.BlockState;
+import org.spongepowered.api.block.BlockType;
+import org.spongepowered.api.block.BlockTypes;
+import org.spongepowered.api.data.Property;
+import org.spongepowered.api.data.property.block.FullBlockSelectionBoxProperty;
+import org.spongepowered.api.data.property.block.SolidCubeProperty;
+import org.spongepowered.api.world.schematic.BlockPalette;
+
+import com.google.common.collect.Sets;
+
+import de.bluecolored.bluemap.sponge.BlueMapConfig.BlockFlagConfig;
+import gnu.trove.map.TObjectByteMap;
+import gnu.trove.map.hash.TObjectByteHashMap;
+
+/**
+ * Holds the {@link #FLAG_SOLID} and {@link #FLAG_OCCLUDING} flags of all block-states.<br>
+ * <br>
+ * The flags are properties of the block-state and not of the position, so they are computed once for each state of the palette 
+ * and looked up with an array-read. States that are not in the palette (e.g. of blocks that have been registered later) 
+ * are computed on their first lookup and remembered.
+ */
+public class BlockFlagTable {
+
+	/** the block is a full opaque cube that hides the faces of its neighbours */
+	public static final byte FLAG_SOLID = 1;
+	
+	/** the block casts ambient-occlusion onto its neighbours, even if it is not solid */
+	public static final byte FLAG_OCCLUDING = 2;
+	
+	private static final Set<BlockType> OCCLUDING_BLOCKS = Collections.unmodifiableSet(Sets.newHashSet(
+				BlockTypes.LEAVES,
+				BlockTypes.LEAVES2
+			));
+	
+	//the ids of the global palette are (blockId << 4 | meta) and there are at most 4096 block-ids
+	private static final int MIN_STATE_ID_COUNT = 1 << 16;
+	
+	@Nullable
+	private final BlockPalette palette;
+	
+	/** the states of the palette and their flags, indexed by their palette-id */
+	private final BlockState[] paletteStates;
+	private final byte[] flags;
+	
+	/** flags of states that are not in the palette */
+	private final Map<BlockState, Byte> unindexedFlags;
+	
+	/** the flags that are configured to be always set or cleared for all states of a block-id */
+	private final TObjectByteMap<String> forcedFlags, clearedFlags;
+	
+	public BlockFlagTable(@Nullable BlockPalette palette, Collection<BlockFlagConfig> blockFlagConfigs) {
+		forcedFlags = new TObjectByteHashMap<>();
+		clearedFlags = new TObjectByteHashMap<>();
+		for (BlockFlagConfig config : blockFlagConfigs) {
+			byte forced = 0, cleared = 0;
+			if (config.getSolid() != null) {
+				if (config.getSolid()) forced |= FLAG_SOLID; else cleared |= FLAG_SOLID;
+			}
+			if (config.getOccluding() != null) {
+				if (config.getOccluding()) forced |= FLAG_OCCLUDING; else cleared |= FLAG_OCCLUDING;
+			}
+			
+			forcedFlags.put(config.getBlockId(), forced);
+			clearedFlags.put(config.getBlockId(), cleared);
+		}
+		
+		this.palette = palette;
+		int idCount = palette != null ? Math.max(MIN_STATE_ID_COUNT, palette.getHighestId() + 1) : 0;
+		paletteStates = new BlockState[idCount];
+		flags = new byte[idCount];
+		for (int stateId = 0; stateId < idCount; stateId++) {
+			BlockState state = palette.get(stateId).orElse(null);
+			if (state == null) continue;
+			
+			paletteStates[stateId] = state;
+			flags[stateId] = computeFlags(state);
+		}
+		
+		unindexedFlags = new ConcurrentHashMap<>();
+	}
+	
+	/**
+	 * Returns the flags of the state with this id in the palette of this table, or 0 if there is no state with this id.
+	 */
+	public byte getFlags(int stateId) {
+		if (stateId < 0 || stateId >= flags.length) return 0;
+		return flags[stateId];
+	}
+	
+	public byte getFlags(BlockState state) {
+		if (palette != null) {
+			//the palette might return the id of the base-state for a state with extended properties, so we check that it is really the same state
+			int stateId = palette.get(state).orElse(-1);
+			if (stateId >= 0 && stateId < paletteStates.length && paletteStates[stateId] == state) return flags[stateId];
+		}
+		
+		Byte stateFlags = unindexedFlags.get(state);
+		if (stateFlags == null) {
+			stateFlags = computeFlags(state);
+			unindexedFlags.put(state, stateFlags);
+		}
+		
+		return stateFlags;
+	}
+	
+	private byte computeFlags(BlockState state) {
+		boolean solidCube = getPropertyOrDefault(state, SolidCubeProperty.class, false);
+		boolean fullBox = getPropertyOrDefault(state, FullBlockSelectionBoxProperty.class, false);
+		
+		byte stateFlags = 0;
+		if (solidCube && fullBox) stateFlags |= FLAG_SOLID;
+		if (OCCLUDING_BLOCKS.contains(state.getType())) stateFlags |= FLAG_OCCLUDING;
+		
+		//apply the configured flags
+		String blockId = state.getType().getId();
+		stateFlags &= ~clearedFlags.get(blockId);
+		stateFlags |= forcedFlags.get(blockId);
+		
+		return stateFlags;
+	}
+	
+	private static <V, K> V getPropertyOrDefault(BlockState blockState, Class<? extends Property<K, V>> propertyClass, V defaultValue){
+		Property<K, V> property = blockState.getProperty(propertyClass).orElse(null);
+		if (property == null) return defaultValue;
+		return property.getValue();
+	}
+	
+}
@@ -24,42 +24,30 @@
  */
 package de.bluecolored.bluemap.sponge.impl;
 
-import org.spongepowered.api.world.biome.BiomeType;
-
 import com.flowpowered.math.vector.Vector3i;
 
 import de.bluecolored.bluemap.api.Block;
 import de.bluecolored.bluemap.api.BlockState;
 import de.bluecolored.bluemap.api.World;
 
+/**
+ * A lightweight view of a {@link BlockData} at a specific position.
+ */
 public class BlockImpl extends Block {
 
 	private World world;
-	private BlockState state;
 	private Vector3i position;
-	private double sunLight, blockLight;
-	private String biome;
-	private boolean isCulling;
-	private boolean isOccluding;
+	private BlockData data;
 	
-	public BlockImpl(World world, BlockState state, Vector3i position, double sunLight, double blockLight, BiomeType biome, boolean isCulling, boolean isOccluding) {
+	public BlockImpl(World world, Vector3i position, BlockData data) {
 		this.world = world;
-		this.state = state;
 		this.position = position;
-		this.sunLight = sunLight;
-		this.blockLight = blockLight;
-		this.biome = biome.getId();
-		this.isCulling = isCulling;
-		this.isOccluding = isOccluding;
-		
-		if (this.biome.startsWith("minecraft:")){
-			this.biome = this.biome.substring("minecraft:".length());
-		}
+		this.data = data;
 	}
 
 	@Override
 	public BlockState getBlockState() {
-		return state;
+		return data.getBlockState();
 	}
 
 	@Override
@@ -74,27 +62,31 @@ public Vector3i getPosition() {
 
 	@Override
 	public double getSunLightLevel() {
-		return sunLight;
+		return data.getSunLightLevel();
 	}
 
 	@Override
 	public double getBlockLightLevel() {
-		return blockLight;
+		return data.getBlockLightLevel();
 	}
 
 	@Override
 	public boolean isCullingNeighborFaces() {
-		return isCulling;
+		return data.isCulling();
 	}
 	
 	@Override
 	public boolean isOccludingNeighborFaces() {
-		return isOccluding;
+		return data.isOccluding();
 	}
 
 	@Override
 	public String getBiome() {
-		return biome;
+		return data.getBiome();
+	}
+	
+	public BlockData getData() {
+		return data;
 	}
 
 }
@@ -24,29 +24,190 @@
  */
 package de.bluecolored.bluemap.sponge.impl;
 
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Arrays;
 import java.util.Collections;
+import java.util.Iterator;
 import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 
 import de.bluecolored.bluemap.api.BlockState;
 
+/**
+ * An immutable block-state. All instances are interned, there is only one instance for each distinct resource-id and properties, 
+ * so two {@link BlockStateImpl}s are equal if they are the same instance.<br>
+ * The properties are stored as sorted arrays of keys and values.
+ */
 public class BlockStateImpl extends BlockState {
 
-	private String resourceId;
-	private Map<String, String> properties;
+	private static final String[] EMPTY = new String[0];
+	private static final ConcurrentHashMap<Key, BlockStateImpl> INTERNED = new ConcurrentHashMap<>();
+	
+	private final Key key;
+	private final Map<String, String> properties;
+	
+	private BlockStateImpl(Key key) {
+		this.key = key;
+		this.properties = key.keys.length == 0 ? Collections.emptyMap() : new PropertyMap(key);
+	}
 	
-	public BlockStateImpl(String resourceId, Map<String, String> properties) {
-		this.resourceId = resourceId;
-		this.properties = Collections.unmodifiableMap(properties);
+	/**
+	 * Returns the block-state with that resource-id and properties
+	 */
+	public static BlockStateImpl of(String resourceId, Map<String, String> properties) {
+		String[] keys = EMPTY, values = EMPTY;
+		
+		if (!properties.isEmpty()) {
+			keys = properties.keySet().toArray(new String[properties.size()]);
+			Arrays.sort(keys);
+			
+			values = new String[keys.length];
+			for (int i = 0; i < keys.length; i++) {
+				values[i] = properties.get(keys[i]);
+			}
+		}
+		
+		Key key = new Key(resourceId, keys, values);
+		BlockStateImpl state = INTERNED.get(key);
+		if (state == null) {
+			state = INTERNED.computeIfAbsent(key, BlockStateImpl::new);
+		}
+		
+		return state;
 	}
 	
 	@Override
 	public String getResourceId() {		
-		return resourceId;
+		return key.resourceId;
 	}
 
 	@Override
 	public Map<String, String> getProperties() {
 		return properties;
 	}
+	
+	@Override
+	public boolean equals(Object obj) {
+		if (obj == this) return true;
+		if (obj instanceof BlockStateImpl || !(obj instanceof BlockState)) return false;
+		
+		//other implementations are compared by their content
+		BlockState other = (BlockState) obj;
+		return key.resourceId.equals(other.getResourceId()) && properties.equals(other.getProperties());
+	}
+	
+	@Override
+	public int hashCode() {
+		return key.hash;
+	}
+	
+	private static class Key {
+		
+		private final String resourceId;
+		private final String[] keys;
+		private final String[] values;
+		private final int propertiesHash;
+		private final int hash;
+		
+		private Key(String resourceId, String[] keys, String[] values) {
+			this.resourceId = resourceId;
+			this.keys = keys;
+			this.values = values;
+			
+			//the same hash that a map with these properties has
+			int propertiesHash = 0;
+			for (int i = 0; i < keys.length; i++) {
+				propertiesHash += keys[i].hashCode() ^ values[i].hashCode();
+			}
+			this.propertiesHash = propertiesHash;
+			this.hash = resourceId.hashCode() * 31 + propertiesHash;
+		}
+		
+		@Override
+		public boolean equals(Object obj) {
+			if (obj == this) return true;
+			if (!(obj instanceof Key)) return false;
+			
+			Key other = (Key) obj;
+			return hash == other.hash && resourceId.equals(other.resourceId) && Arrays.equals(keys, other.keys) && Arrays.equals(values, other.values);
+		}
+		
+		@Override
+		public int hashCode() {
+			return hash;
+		}
+		
+	}
+	
+	/**
+	 * A read-only map-view on the sorted property-arrays of a key
+	 */
+	private static class PropertyMap extends AbstractMap<String, String> {
+		
+		private final Key key;
+		
+		private PropertyMap(Key key) {
+			this.key = key;
+		}
+		
+		@Override
+		public String get(Object property) {
+			if (!(property instanceof String)) return null;
+			
+			int index = Arrays.binarySearch(key.keys, property);
+			return index >= 0 ? key.values[index] : null;
+		}
+		
+		@Override
+		public boolean containsKey(Object property) {
+			return property instanceof String && Arrays.binarySearch(key.keys, property) >= 0;
+		}
+		
+		@Override
+		public int size() {
+			return key.keys.length;
+		}
+		
+		@Override
+		public int hashCode() {
+			return key.propertiesHash;
+		}
+		
+		@Override
+		public Set<Entry<String, String>> entrySet() {
+			return new AbstractSet<Entry<String, String>>() {
+				
+				@Override
+				public Iterator<Entry<String, String>> iterator() {
+					return new Iterator<Entry<String, String>>() {
+						private int index = 0;
+						
+						@Override
+						public boolean hasNext() {
+							return index < key.keys.length;
+						}
+						
+						@Override
+						public Entry<String, String> next() {
+							if (!hasNext()) throw new NoSuchElementException();
+							Entry<String, String> entry = new SimpleImmutableEntry<>(key.keys[index], key.values[index]);
+							index++;
+							return entry;
+						}
+					};
+				}
+				
+				@Override
+				public int size() {
+					return key.keys.length;
+				}
+				
+			};
+		}
+		
+	}
 
 }
@@ -26,6 +26,7 @@
 
 import java.io.IOException;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Optional;
@@ -33,12 +34,12 @@
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
+import javax.annotation.Nullable;
+
 import org.spongepowered.api.CatalogType;
-import org.spongepowered.api.block.BlockTypes;
 import org.spongepowered.api.block.trait.BlockTrait;
+import org.spongepowered.api.world.schematic.BlockPalette;
 
-import com.google.common.cache.Cache;
-import com.google.common.cache.CacheBuilder;
 import com.google.common.collect.HashMultimap;
 import com.google.common.collect.Multimap;
 import com.google.common.collect.Multimaps;
@@ -51,12 +52,25 @@ public class BlockStateResourceNameMapper {
 
 	private static Pattern BLOCKSTATE_SERIALIZATION_PATTERN = Pattern.compile("^(.+?)(?:\\[(.+)\\])?$");
 	
+	//the ids of the global palette are (blockId << 4 | meta) and there are at most 4096 block-ids
+	private static final int MIN_STATE_ID_COUNT = 1 << 16;
+	
 	private Multimap<String, BlockMapping> mappings;
-	private Cache<org.spongepowered.api.block.BlockState, BlockState> mappingCache;
 	
-	public final BlockState AIR;
+	@Nullable
+	private BlockPalette palette;
+	
+	/** the states of the palette and their mapped states, indexed by their palette-id */
+	private org.spongepowered.api.block.BlockState[] paletteStates;
+	private BlockState[] mappedStates;
+	
+	/** mapped states that are not in the palette, e.g. block-states with extended properties */
+	private Map<org.spongepowered.api.block.BlockState, BlockState> unindexedStates;
 	
-	private BlockStateResourceNameMapper() throws IOException {
+	/** air has no properties and no mapping, so this is what mapping the sponge air-block results in (without needing a running server) */
+	public static final BlockState AIR = BlockStateImpl.of("air", Collections.emptyMap());
+	
+	private BlockStateResourceNameMapper(@Nullable BlockPalette palette) throws IOException {
 		mappings = HashMultimap.create();
 		
 		HoconConfigurationLoader loader = HoconConfigurationLoader.builder()
@@ -76,20 +90,42 @@ private BlockStateResourceNameMapper() throws IOException {
 		
 		mappings = Multimaps.unmodifiableMultimap(mappings);
 		
-		mappingCache = CacheBuilder.newBuilder()
-				.concurrencyLevel(8) //TODO: find out configured thread count
-				.maximumSize(10000)
-				.build();
+		//all states of the palette are mapped once, so a lookup is only an array-read
+		this.palette = palette;
+		int idCount = palette != null ? Math.max(MIN_STATE_ID_COUNT, palette.getHighestId() + 1) : 0;
+		paletteStates = new org.spongepowered.api.block.BlockState[idCount];
+		mappedStates = new BlockState[idCount];
+		for (int stateId = 0; stateId < idCount; stateId++) {
+			org.spongepowered.api.block.BlockState state = palette.get(stateId).orElse(null);
+			if (state == null) continue;
+			
+			paletteStates[stateId] = state;
+			mappedStates[stateId] = mapNoCache(state);
+		}
 		
-		AIR = map(BlockTypes.AIR.getDefaultState());
+		unindexedStates = new ConcurrentHashMap<>();
+	}
+	
+	/**
+	 * Returns the mapped block-state of the state with this id in the palette of this mapper, or null if there is no state with this id.
+	 */
+	@Nullable
+	public BlockState map(int stateId) {
+		if (stateId < 0 || stateId >= mappedStates.length) return null;
+		return mappedStates[stateId];
 	}
 	
 	public BlockState map(org.spongepowered.api.block.BlockState from){
-		BlockState to = mappingCache.getIfPresent(from);
+		if (palette != null) {
+			//the palette might return the id of the base-state for a state with extended properties, so we check that it is really the same state
+			int stateId = palette.get(from).orElse(-1);
+			if (stateId >= 0 && stateId < paletteStates.length && paletteStates[stateId] == from) return mappedStates[stateId];
+		}
 		
-		if (to == null){
+		BlockState to = unindexedStates.get(from);
+		if (to == null) {
 			to = mapNoCache(from);
-			mappingCache.put(from, to);
+			unindexedStates.put(from, to);
 		}
 		
 		return to;
@@ -102,7 +138,7 @@ private BlockState mapNoCache(org.spongepowered.api.block.BlockState from){
 			if (bm.fitsTo(bs)){
 				BlockState mapped = bm.getMappedBlockState();
 				
-				Map<String, String> properties = new ConcurrentHashMap<>(); 
+				Map<String, String> properties = new HashMap<>();
 				
 				//add original properties
 				properties.putAll(bs.getProperties());
@@ -115,14 +151,14 @@ private BlockState mapNoCache(org.spongepowered.api.block.BlockState from){
 				//add mapped properties
 				properties.putAll(mapped.getProperties());
 				
-				return new BlockStateImpl(mapped.getResourceId(), properties);
+				return BlockStateImpl.of(mapped.getResourceId(), properties);
 			}
 		}
 		
 		String id = bs.getResourceId();
 		id = id.substring(id.lastIndexOf(':') + 1);
 		
-		return new BlockStateImpl(id, bs.getProperties());
+		return BlockStateImpl.of(id, bs.getProperties());
 	}
 	
 	private BlockState blockStateFromString(String serializedBlockState){
@@ -130,7 +166,7 @@ private BlockState blockStateFromString(String serializedBlockState){
 		Matcher m = BLOCKSTATE_SERIALIZATION_PATTERN.matcher(serializedBlockState);
 		m.find();
 
-		Map<String, String> pt = new ConcurrentHashMap<>();
+		Map<String, String> pt = new HashMap<>();
 		String g2 = m.group(2);
 		if (g2 != null){
 			String[] propertyStrings = g2.trim().split(",");
@@ -141,15 +177,14 @@ private BlockState blockStateFromString(String serializedBlockState){
 		}
 
 		String blockId = m.group(1).trim();
-		Map<String, String> properties = Collections.unmodifiableMap(pt);
 		
-		return new BlockStateImpl(blockId, properties);
+		return BlockStateImpl.of(blockId, pt);
 	}
 	
 	private BlockState blockStateFromSponge(org.spongepowered.api.block.BlockState blockState){
 		String blockId = blockState.getType().getId();
 		
-		Map<String, String> properties = new ConcurrentHashMap<>();
+		Map<String, String> properties = new HashMap<>();
 		for(BlockTrait<?> bt : blockState.getTraits()){
 			
 			Optional<?> oP = blockState.getTraitValue(bt);
@@ -169,11 +204,21 @@ private BlockState blockStateFromSponge(org.spongepowered.api.block.BlockState b
 			}
 		}
 		
-		return new BlockStateImpl(blockId, properties);
+		return BlockStateImpl.of(blockId, properties);
 	}
 	
+	/**
+	 * Loads the mappings without a palette, every distinct block-state is mapped on its first lookup.
+	 */
 	public static BlockStateResourceNameMapper load() throws IOException {
-		return new BlockStateResourceNameMapper();
+		return new BlockStateResourceNameMapper(null);
+	}
+	
+	/**
+	 * Loads the mappings and maps all states of the palette (e.g. the global palette of the server) in advance.
+	 */
+	public static BlockStateResourceNameMapper load(BlockPalette palette) throws IOException {
+		return new BlockStateResourceNameMapper(palette);
 	}
 	
 	class BlockMapping {
@@ -30,17 +30,33 @@
 import de.bluecolored.bluemap.api.ChunkNotGeneratedException;
 import de.bluecolored.bluemap.util.AABB;
 
+/**
+ * A {@link WorldChunkImpl} that caches all requested blocks.<br>
+ * <br>
+ * The blocks are stored as indices into the prebuilt {@link BlockData} of their chunk-snapshots, 
+ * the {@link Block}-objects itself are only created on demand.
+ */
 public class CachedWorldChunkImpl extends WorldChunkImpl {
 
 	private Vector3i min; 
 	private Vector3i size; 
-	private Block[][][] blockCache;
+	
+	/** the slot of the chunk-snapshot (upper 16 bits) and the block-data index in that snapshot (lower 16 bits) + 1 for each position, 0 means not cached yet */
+	private int[] blockCache;
+	
+	/** the snapshots of the chunks inside the bounds in z-x order, a snapshot is kept once it has been used so all blocks come from the same snapshot */
+	private ChunkSnapshot[] snapshots;
+	private int minChunkX, minChunkZ, chunkCountX;
 	
 	public CachedWorldChunkImpl(WorldImpl world, AABB bounds) {
 		super(world, bounds);
 		
 		this.min = bounds.getMin().floor().toInt();
 		this.size = bounds.getSize().floor().toInt().add(1, 1, 1);
+		
+		this.minChunkX = Math.floorDiv(min.getX(), 16);
+		this.minChunkZ = Math.floorDiv(min.getZ(), 16);
+		this.chunkCountX = Math.floorDiv(min.getX() + size.getX() - 1, 16) - minChunkX + 1;
 	}
 	
 	@Override
@@ -48,20 +64,38 @@ public Block getBlock(Vector3i pos) throws ChunkNotGeneratedException {
 		//if(!bounds.contains(pos)) throw new IndexOutOfBoundsException(pos + " is not inside this world-chunks's bounds " + bounds);
 
 		//initialise cache on first call to getBlock() to avoid useless memory-allocation
-		if (blockCache == null) blockCache = new Block[size.getX()][size.getY()][size.getZ()];
+		if (blockCache == null) {
+			int chunkCountZ = Math.floorDiv(min.getZ() + size.getZ() - 1, 16) - minChunkZ + 1;
+			
+			blockCache = new int[size.getX() * size.getY() * size.getZ()];
+			snapshots = new ChunkSnapshot[chunkCountX * chunkCountZ];
+		}
 		
 		int x = pos.getX() - min.getX();
 		int y = pos.getY() - min.getY();
 		int z = pos.getZ() - min.getZ();
+		int index = (y * size.getZ() + z) * size.getX() + x;
 		
-		Block block = blockCache[x][y][z];
+		int cached = blockCache[index] - 1;
 		
-		if (block == null){
-			block = super.getBlock(pos);
-			blockCache[x][y][z] = block; 
+		if (cached == -1){
+			getFetchCount().increment();
+			
+			int chunkX = Math.floorDiv(pos.getX(), 16);
+			int chunkZ = Math.floorDiv(pos.getZ(), 16);
+			int slot = (chunkZ - minChunkZ) * chunkCountX + (chunkX - minChunkX);
+			
+			ChunkSnapshot snapshot = snapshots[slot];
+			if (snapshot == null) {
+				snapshot = getWorld().getChunkSnapshot(chunkX, chunkZ);
+				snapshots[slot] = snapshot;
+			}
+			
+			cached = slot << 16 | snapshot.getBlockDataIndex(pos);
+			blockCache[index] = cached + 1;
 		}
 		
-		return block;
+		return new BlockImpl(getWorld(), pos, snapshots[cached >>> 16].getBlockData(cached & 0xFFFF));
 	}
 
 }
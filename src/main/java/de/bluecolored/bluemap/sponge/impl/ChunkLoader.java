@@ -0,0 +1,146 @@
+/*
+ * This file is part of BlueMapSponge, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) Blue (Lukas Rieger) <https://bluecolored.de>
+ * Copyright (c) contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package de.bluecolored.bluemap.sponge.impl;
+
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import com.flowpowered.math.vector.Vector3i;
+
+import de.bluecolored.bluemap.logger.Logger;
+import de.bluecolored.bluemap.sponge.RenderGovernor;
+import de.bluecolored.bluemap.sponge.WorldUtil;
+
+/**
+ * Collects chunk-load requests from the render-threads and submits them in one batch per server-tick.<br>
+ * The amount of chunks that are loaded per tick is limited by the {@link RenderGovernor}.<br>
+ * Each requested chunk gets its own future, so render-threads only wait for the chunks they actually need.
+ */
+public class ChunkLoader {
+
+	private SpongeWorldSource source;
+	private ExecutorService syncExecutor;
+	private RenderGovernor governor;
+	private Logger logger;
+	
+	private Map<Long, CompletableFuture<Boolean>> pendingChunks;
+	private Queue<Long> queue;
+	private AtomicBoolean batchScheduled;
+	
+	public ChunkLoader(SpongeWorldSource source, ExecutorService syncExecutor, RenderGovernor governor, Logger logger) {
+		this.source = source;
+		this.syncExecutor = syncExecutor;
+		this.governor = governor;
+		this.logger = logger;
+		
+		this.pendingChunks = new ConcurrentHashMap<>();
+		this.queue = new ConcurrentLinkedQueue<>();
+		this.batchScheduled = new AtomicBoolean(false);
+	}
+	
+	/**
+	 * Requests the chunk at that chunk-position to be loaded.<br>
+	 * The returned future completes with true if the chunk has been loaded, or false if it could not be loaded (e.g. it is not generated).
+	 */
+	public CompletableFuture<Boolean> requestChunk(int chunkX, int chunkZ) {
+		long key = WorldUtil.packXZ(chunkX, chunkZ);
+		
+		CompletableFuture<Boolean> future = pendingChunks.computeIfAbsent(key, k -> {
+			queue.add(k);
+			return new CompletableFuture<>();
+		});
+		
+		scheduleBatch();
+		
+		return future;
+	}
+	
+	private void scheduleBatch() {
+		if (queue.isEmpty()) return;
+		if (!batchScheduled.compareAndSet(false, true)) return;
+		
+		try {
+			syncExecutor.execute(this::processBatch);
+		} catch (RejectedExecutionException e) {
+			batchScheduled.set(false);
+			
+			//the plugin is shutting down, fail all waiting requests
+			Long key;
+			while ((key = queue.poll()) != null) complete(key, false);
+		}
+	}
+	
+	/**
+	 * Called on the server-thread, starts loading the queued chunks.<br>
+	 * At most {@link RenderGovernor#getChunkLoadsPerTick()} chunks are loaded per batch, the remaining chunks are loaded with the next batch.
+	 */
+	private void processBatch() {
+		batchScheduled.set(false);
+		
+		org.spongepowered.api.world.World spongeWorld = source.getSpongeWorld();
+		
+		int budget = governor.getChunkLoadsPerTick();
+		Long key;
+		while (budget > 0 && (key = queue.poll()) != null) {
+			final long chunkKey = key;
+			Vector3i chunkPosition = new Vector3i(WorldUtil.unpackX(chunkKey), 0, WorldUtil.unpackZ(chunkKey));
+			
+			if (spongeWorld.getChunk(chunkPosition).isPresent()) {
+				complete(chunkKey, true);
+				continue;
+			}
+			
+			budget--;
+			try {
+				spongeWorld.loadChunkAsync(chunkPosition, false).whenComplete((chunk, throwable) -> {
+					if (throwable != null) {
+						logger.logError("Failed to load Chunk: " + chunkPosition, throwable);
+						complete(chunkKey, false);
+						return;
+					}
+					
+					complete(chunkKey, chunk.isPresent());
+				});
+			} catch (Throwable t) {
+				logger.logError("Failed to load Chunk: " + chunkPosition, t);
+				complete(chunkKey, false);
+			}
+		}
+		
+		scheduleBatch();
+	}
+	
+	private void complete(long key, boolean loaded) {
+		CompletableFuture<Boolean> future = pendingChunks.remove(key);
+		if (future != null) future.complete(loaded);
+	}
+	
+}
@@ -0,0 +1,447 @@
+/*
+ * This file is part of BlueMapSponge, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) Blue (Lukas Rieger) <https://bluecolored.de>
+ * Copyright (c) contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package de.bluecolored.bluemap.sponge.impl;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.spongepowered.api.block.BlockState;
+import org.spongepowered.api.block.BlockTypes;
+import org.spongepowered.api.data.Property;
+import org.spongepowered.api.data.property.block.GroundLuminanceProperty;
+import org.spongepowered.api.data.property.block.SkyLuminanceProperty;
+import org.spongepowered.api.world.Location;
+
+import com.flowpowered.math.vector.Vector3i;
+
+import de.bluecolored.bluemap.api.Block;
+import de.bluecolored.bluemap.api.World;
+import de.bluecolored.bluemap.sponge.anvil.AnvilChunk;
+import gnu.trove.list.array.TIntArrayList;
+import gnu.trove.map.hash.TIntIntHashMap;
+import gnu.trove.map.hash.TLongIntHashMap;
+import gnu.trove.map.hash.TObjectIntHashMap;
+
+/**
+ * A copy of all the data of one 16x16 chunk-column that is needed to render it.<br>
+ * The chunk is only read once for each block when this snapshot is created, 
+ * all later block-accesses are served from the primitive arrays of this snapshot.<br>
+ * <br>
+ * The {@link BlockData} of each distinct combination of state, light and biome is built once when the snapshot is created, 
+ * so reading a block does not allocate anything.
+ */
+public class ChunkSnapshot {
+
+	/** the light of air that is lit by the sky and not by any block-light */
+	private static final byte SKY_AIR_LIGHT = (byte) (15 << 4);
+	
+	private World world;
+	private int blockMinX, blockMinZ;
+	private int minY, maxY;
+
+	private de.bluecolored.bluemap.api.BlockState[] palette;
+	private byte[] paletteFlags;
+	
+	/** the palette-index and light of each block, they are only needed until the block-data is built */
+	private short[] states;
+	private byte[] light;
+	private int[] biomes;
+	
+	/** the distinct block-data of this chunk */
+	private BlockData[] blockData;
+	
+	/** the palette-index (upper 16 bits) and light (lower 8 bits) of each block-data */
+	private int[] blockDataKeys;
+	
+	/** the index of the block-data of each block in y-z-x order */
+	private short[] blocks;
+	
+	/** the y of the highest block that is not air in each column in z-x order, or minY - 1 if the column is empty */
+	private short[] heightmap;
+	
+	/** the index of the block-data of the sky-lit air above the heightmap and the unlit air below the world-height of each column */
+	private short[] skyAir, voidAir;
+	
+	private volatile long contentHash;
+	
+	private ChunkSnapshot(World world, int chunkX, int chunkZ, int minY, int maxY) {
+		this.world = world;
+		this.blockMinX = chunkX * 16;
+		this.blockMinZ = chunkZ * 16;
+		this.minY = minY;
+		this.maxY = maxY;
+		
+		//the block-data indices are stored as shorts, so there can't be more blocks than that
+		int size = 16 * 16 * (maxY - minY + 1);
+		if (size > 0x10000) throw new IllegalArgumentException("The chunk is too high: " + minY + " to " + maxY);
+		
+		this.states = new short[size];
+		this.light = new byte[size];
+		this.biomes = new int[16 * 16];
+		this.heightmap = new short[16 * 16];
+		this.skyAir = new short[16 * 16];
+		this.voidAir = new short[16 * 16];
+	}
+	
+	public Block getBlock(Vector3i pos) {
+		return new BlockImpl(world, pos, getBlockData(pos));
+	}
+	
+	public BlockData getBlockData(Vector3i pos) {
+		return blockData[getBlockDataIndex(pos)];
+	}
+	
+	/**
+	 * Returns the index of the block-data at that position, it can be resolved with {@link #getBlockData(int)}.<br>
+	 * All air above the heightmap is the same sky-lit air of its column.
+	 */
+	public int getBlockDataIndex(Vector3i pos) {
+		int x = pos.getX() - blockMinX;
+		int z = pos.getZ() - blockMinZ;
+		int column = z * 16 + x;
+		
+		if (pos.getY() > heightmap[column]) return skyAir[column] & 0xFFFF;
+		if (pos.getY() < minY) return voidAir[column] & 0xFFFF;
+		
+		return blocks[index(x, pos.getY() - minY, z)] & 0xFFFF;
+	}
+	
+	public BlockData getBlockData(int index) {
+		return blockData[index];
+	}
+	
+	/**
+	 * Returns the y of the highest block that is not air in that column (in world-coordinates), or minY - 1 if the column is empty
+	 */
+	public int getHighestBlockY(int x, int z) {
+		return heightmap[(z - blockMinZ) * 16 + (x - blockMinX)];
+	}
+	
+	/**
+	 * Returns a hash of everything in this snapshot that affects the rendered model: the block-states, the light and the biomes.<br>
+	 * The hash does not depend on the order of the palette and is stable across restarts, so it can be persisted to detect changes of the chunk.<br>
+	 * A content-hash is never 0.
+	 */
+	public long getContentHash() {
+		long hash = contentHash;
+		if (hash == 0) {
+			hash = computeContentHash();
+			contentHash = hash;
+		}
+		
+		return hash;
+	}
+	
+	private long computeContentHash() {
+		long[] paletteHashes = new long[palette.length];
+		for (int i = 0; i < palette.length; i++) {
+			paletteHashes[i] = (long) palette[i].getResourceId().hashCode() << 32 | (palette[i].getProperties().hashCode() & 0xFFFFFFFFL);
+		}
+		
+		long hash = mixHash(minY, maxY);
+		for (int i = 0; i < blocks.length; i++) {
+			int key = blockDataKeys[blocks[i] & 0xFFFF];
+			hash = mixHash(hash, paletteHashes[key >>> 16]);
+			hash = mixHash(hash, (byte) key);
+		}
+		
+		//the biome-ids are not stable across restarts, but the names are
+		for (int biome : biomes) {
+			hash = mixHash(hash, BiomeRegistry.getName(biome).hashCode());
+		}
+		
+		return hash == 0 ? 1 : hash;
+	}
+	
+	/**
+	 * Mixes the value into the hash, used to build the content-hashes of chunks and tiles.
+	 */
+	public static long mixHash(long hash, long value) {
+		hash = (hash ^ value) * 0x9E3779B97F4A7C15L;
+		return hash ^ (hash >>> 29);
+	}
+	
+	/**
+	 * Fills the heightmap and builds the block-data of all blocks, this has to be called once the states, light and biomes are set.<br>
+	 * The air above the heightmap is always stored as sky-lit air, like the sponge-world is copied.
+	 */
+	private void init() {
+		//the first palette-entry is always air, but it might be in the palette more than once
+		boolean[] isAir = new boolean[palette.length];
+		for (int i = 0; i < palette.length; i++) {
+			isAir[i] = palette[i].equals(palette[0]);
+		}
+		
+		for (int z = 0; z < 16; z++) {
+			for (int x = 0; x < 16; x++) {
+				int column = z * 16 + x;
+				
+				int y = maxY;
+				while (y >= minY && isAir[states[index(x, y - minY, z)] & 0xFFFF]) y--;
+				
+				heightmap[column] = (short) y;
+			}
+		}
+		
+		BlockDataBuilder builder = new BlockDataBuilder();
+		
+		//the first palette-entry is always air
+		for (int column = 0; column < 16 * 16; column++) {
+			skyAir[column] = (short) builder.get(0, SKY_AIR_LIGHT, biomes[column]);
+			voidAir[column] = (short) builder.get(0, (byte) 0, biomes[column]);
+		}
+		
+		blocks = new short[states.length];
+		for (int i = 0; i < states.length; i++) {
+			//the lower 8 bits of a y-z-x index are the z-x index of the column
+			int column = i & 0xFF;
+			
+			//the air above the heightmap is not looked up block by block
+			if ((i >> 8) + minY > heightmap[column]) blocks[i] = skyAir[column];
+			else blocks[i] = (short) builder.get(states[i] & 0xFFFF, light[i], biomes[column]);
+		}
+		
+		blockData = builder.data.toArray(new BlockData[builder.data.size()]);
+		blockDataKeys = builder.keys.toArray();
+		
+		states = null;
+		light = null;
+	}
+
+	
+	private static int index(int x, int y, int z) {
+		return (y * 16 + z) * 16 + x;
+	}
+	
+	/**
+	 * Copies the chunk-column at the given chunk-position from the sponge-world.<br>
+	 * The chunk needs to be loaded already.<br>
+	 * <br>
+	 * The sponge-api has no bulk-access for the extended block-states and the light of a chunk, so this still costs one 
+	 * {@link Location}, the extended state and two property-lookups for every block below the highest block of its column, 
+	 * and one block-type lookup for every block above it. Per block that is about a fifth of what a block-access cost before 
+	 * the snapshots (see the CachedWorldChunkBenchmark), and it is paid once per snapshot instead of on every access. Chunks that are not loaded are read from 
+	 * their region-files instead, which is much faster.
+	 */
+	static ChunkSnapshot create(WorldImpl world, org.spongepowered.api.world.World spongeWorld, int chunkX, int chunkZ) {
+		int minY = spongeWorld.getBlockMin().getY();
+		int maxY = spongeWorld.getBlockMax().getY();
+		ChunkSnapshot snapshot = new ChunkSnapshot(world, chunkX, chunkZ, minY, maxY);
+		
+		List<de.bluecolored.bluemap.api.BlockState> palette = new ArrayList<>();
+		List<Byte> paletteFlags = new ArrayList<>();
+		TObjectIntHashMap<BlockState> paletteIndex = new TObjectIntHashMap<>(64, 0.5f, -1);
+		
+		//air is always the first entry of the palette
+		palette.add(BlockStateResourceNameMapper.AIR);
+		paletteFlags.add((byte) 0);
+		byte airLight = SKY_AIR_LIGHT; //block-light is incorrect (this does't matter now but has to be corrected if we'd generate night-maps)
+		
+		for (int z = 0; z < 16; z++) {
+			for (int x = 0; x < 16; x++) {
+				int worldX = snapshot.blockMinX + x;
+				int worldZ = snapshot.blockMinZ + z;
+				
+				snapshot.biomes[z * 16 + x] = BiomeRegistry.getId(spongeWorld.getBiome(worldX, 0, worldZ));
+				int sunHeight = spongeWorld.getHighestYAt(worldX, worldZ);
+				
+				for (int y = maxY; y >= minY; y--) {
+					int index = index(x, y - minY, z);
+					
+					//try to shortcut block generation
+					if (y > sunHeight && spongeWorld.getBlockType(worldX, y, worldZ) == BlockTypes.AIR) {
+						snapshot.light[index] = airLight;
+						continue;
+					}
+					
+					Location<org.spongepowered.api.world.World> location = spongeWorld.getLocation(worldX, y, worldZ);
+					BlockState baseState = location.getBlock();
+					BlockState blockState = baseState.withExtendedProperties(location);
+					
+					int state = paletteIndex.get(blockState);
+					if (state == -1) {
+						state = palette.size();
+						paletteIndex.put(blockState, state);
+						palette.add(world.getBlockStateMapper().map(blockState));
+						
+						//the extended properties don't change the flags, but the base-state can be looked up in the palette of the flag-table
+						paletteFlags.add(world.getBlockFlagTable().getFlags(baseState));
+					}
+					
+					int sunLight = getPropertyOrDefault(location, SkyLuminanceProperty.class, 15d).intValue();
+					int blockLight = getPropertyOrDefault(location, GroundLuminanceProperty.class, 15d).intValue();
+					
+					snapshot.states[index] = (short) state;
+					snapshot.light[index] = (byte) ((sunLight & 0xF) << 4 | (blockLight & 0xF));
+				}
+			}
+		}
+		
+		snapshot.palette = palette.toArray(new de.bluecolored.bluemap.api.BlockState[palette.size()]);
+		snapshot.paletteFlags = new byte[paletteFlags.size()];
+		for (int i = 0; i < snapshot.paletteFlags.length; i++) {
+			snapshot.paletteFlags[i] = paletteFlags.get(i);
+		}
+		
+		snapshot.init();
+		return snapshot;
+	}
+	
+	/**
+	 * Creates a snapshot from the chunk-data that has been read from a region-file.<br>
+	 * The blocks are used as they are stored, without the extended properties (e.g. the connections of fences) that 
+	 * would need the neighbouring blocks from the live world.
+	 * @param biomes the {@link BiomeRegistry}-ids of the biomes of the 16x16 columns of this chunk, in z-x order
+	 */
+	public static ChunkSnapshot create(World world, AnvilChunk chunk, LegacyBlockPalette blockPalette, int[] biomes, int minY, int maxY) {
+		ChunkSnapshot snapshot = new ChunkSnapshot(world, chunk.getChunkX(), chunk.getChunkZ(), minY, maxY);
+		System.arraycopy(biomes, 0, snapshot.biomes, 0, snapshot.biomes.length);
+		
+		List<de.bluecolored.bluemap.api.BlockState> palette = new ArrayList<>();
+		List<Byte> paletteFlags = new ArrayList<>();
+		TIntIntHashMap paletteIndex = new TIntIntHashMap(64, 0.5f, -1, -1);
+		
+		//air is always the first entry of the palette
+		LegacyBlockPalette.PaletteEntry air = blockPalette.get(0);
+		palette.add(air.getState());
+		paletteFlags.add((byte) 0);
+		paletteIndex.put(0, 0);
+		byte airLight = SKY_AIR_LIGHT;
+		
+		for (int sectionY = 0; sectionY < AnvilChunk.SECTION_COUNT; sectionY++) {
+			int sectionMinY = sectionY * 16;
+			if (sectionMinY + 15 < minY || sectionMinY > maxY) continue;
+			
+			AnvilChunk.Section section = chunk.getSection(sectionY);
+			
+			for (int i = 0; i < 4096; i++) {
+				int y = sectionMinY + (i >> 8);
+				if (y < minY || y > maxY) continue;
+				
+				//both use the same y-z-x order, so only the y-offset differs
+				int index = (y - minY) * 256 + (i & 0xFF);
+				
+				if (section == null) {
+					snapshot.light[index] = airLight;
+					continue;
+				}
+				
+				int stateId = section.getStateId(i);
+				int state = paletteIndex.get(stateId);
+				if (state == -1) {
+					LegacyBlockPalette.PaletteEntry entry = blockPalette.get(stateId);
+					state = palette.size();
+					paletteIndex.put(stateId, state);
+					palette.add(entry.getState());
+					paletteFlags.add(entry.getFlags());
+				}
+				
+				snapshot.states[index] = (short) state;
+				snapshot.light[index] = (byte) (section.getSkyLight(i) << 4 | section.getBlockLight(i));
+			}
+		}
+		
+		snapshot.palette = palette.toArray(new de.bluecolored.bluemap.api.BlockState[palette.size()]);
+		snapshot.paletteFlags = new byte[paletteFlags.size()];
+		for (int i = 0; i < snapshot.paletteFlags.length; i++) {
+			snapshot.paletteFlags[i] = paletteFlags.get(i);
+		}
+		
+		snapshot.init();
+		return snapshot;
+	}
+	
+	/**
+	 * Creates a snapshot from raw chunk-data, e.g. of a synthetic world.
+	 * @param palette the block-states that are referenced by the states, the first entry has to be air
+	 * @param paletteFlags the {@link BlockFlagTable#FLAG_SOLID} and {@link BlockFlagTable#FLAG_OCCLUDING} flags of each palette-entry
+	 * @param states the palette-index of each block in y-z-x order, starting at minY
+	 * @param light the sky-light (upper 4 bits) and block-light (lower 4 bits) of each block in the same order as the states
+	 * @param biomes the {@link BiomeRegistry}-ids of the biomes of the 16x16 columns of this chunk, in z-x order
+	 */
+	static ChunkSnapshot create(World world, int chunkX, int chunkZ, int minY, int maxY, de.bluecolored.bluemap.api.BlockState[] palette, byte[] paletteFlags, short[] states, byte[] light, int[] biomes) {
+		ChunkSnapshot snapshot = new ChunkSnapshot(world, chunkX, chunkZ, minY, maxY);
+		if (palette.length == 0 || palette.length != paletteFlags.length) throw new IllegalArgumentException("Invalid palette");
+		if (states.length != snapshot.states.length || light.length != snapshot.light.length || biomes.length != snapshot.biomes.length) throw new IllegalArgumentException("Invalid chunk-data size");
+		
+		snapshot.palette = palette.clone();
+		snapshot.paletteFlags = paletteFlags.clone();
+		System.arraycopy(states, 0, snapshot.states, 0, states.length);
+		System.arraycopy(light, 0, snapshot.light, 0, light.length);
+		System.arraycopy(biomes, 0, snapshot.biomes, 0, biomes.length);
+		
+		snapshot.init();
+		return snapshot;
+	}
+	
+	/**
+	 * Collects the distinct block-data while a snapshot is initialized
+	 */
+	private class BlockDataBuilder {
+		
+		private List<BlockData> data = new ArrayList<>();
+		private TIntArrayList keys = new TIntArrayList();
+		private TLongIntHashMap index = new TLongIntHashMap(64, 0.5f, -1, -1);
+		
+		private long lastKey = -1;
+		private int lastIndex = -1;
+		
+		/**
+		 * Returns the index of the block-data with that palette-index, light and biome, and builds it if it does not exist yet
+		 */
+		private int get(int state, byte light, int biome) {
+			long key = (long) state << 40 | (long) (light & 0xFF) << 32 | (biome & 0xFFFFFFFFL);
+			
+			//neighbouring blocks are often the same
+			if (key == lastKey) return lastIndex;
+			
+			int i = index.get(key);
+			if (i == -1) {
+				int sunLight = (light >> 4) & 0xF;
+				int blockLight = light & 0xF;
+				
+				boolean isCulling = (paletteFlags[state] & BlockFlagTable.FLAG_SOLID) != 0 && sunLight == 0 && blockLight == 0;
+				boolean isOccluding = isCulling || (paletteFlags[state] & BlockFlagTable.FLAG_OCCLUDING) != 0;
+				
+				i = data.size();
+				data.add(new BlockData(palette[state], sunLight, blockLight, biome, isCulling, isOccluding));
+				keys.add(state << 16 | (light & 0xFF));
+				index.put(key, i);
+			}
+			
+			lastKey = key;
+			lastIndex = i;
+			return i;
+		}
+		
+	}
+	
+	private static <V, K> V getPropertyOrDefault(Location<org.spongepowered.api.world.World> loc, Class<? extends Property<K, V>> propertyClass, V defaultValue){
+		Property<K, V> property = loc.getProperty(propertyClass).orElse(null);
+		if (property == null) return defaultValue;
+		return property.getValue();
+	}
+	
+}
@@ -0,0 +1,182 @@
+/*
+ * This file is part of BlueMapSponge, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) Blue (Lukas Rieger) <https://bluecolored.de>
+ * Copyright (c) contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package de.bluecolored.bluemap.sponge.impl;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.IntFunction;
+
+import org.spongepowered.api.block.BlockState;
+import org.spongepowered.api.world.schematic.BlockPalette;
+import org.spongepowered.api.world.schematic.BlockPaletteTypes;
+
+import ninja.leaping.configurate.ConfigurationNode;
+import ninja.leaping.configurate.gson.GsonConfigurationLoader;
+import ninja.leaping.configurate.loader.ConfigurationLoader;
+
+/**
+ * Maps the legacy block-state ids that are stored in the region-files (<code>blockId << 4 | meta</code>) to mapped block-states.<br>
+ * <br>
+ * On the server the ids are resolved with the global block-palette, so this also works for blocks of mods.
+ * Without a server the palette can be loaded from a file that has been written by the server with {@link #save(File)}.
+ */
+public class LegacyBlockPalette {
+
+	private static final int ID_COUNT = 1 << 16;
+	private static final int FORMAT_VERSION = 1;
+	
+	private final IntFunction<PaletteEntry> resolver;
+	
+	//resolved lazily, the same id might be resolved twice by different threads but that doesn't hurt
+	private final AtomicReferenceArray<PaletteEntry> entries;
+	
+	private LegacyBlockPalette(IntFunction<PaletteEntry> resolver) {
+		this.resolver = resolver;
+		this.entries = new AtomicReferenceArray<>(ID_COUNT);
+	}
+	
+	public PaletteEntry get(int stateId) {
+		PaletteEntry entry = entries.get(stateId);
+		if (entry == null) {
+			entry = resolver.apply(stateId);
+			entries.set(stateId, entry);
+		}
+		
+		return entry;
+	}
+	
+	/**
+	 * Writes all known ids of this palette to a file, so it can be loaded with {@link #load(File)} without a server.
+	 */
+	public void save(File file) throws IOException {
+		ConfigurationLoader<ConfigurationNode> loader = GsonConfigurationLoader.builder().setFile(file).build();
+		ConfigurationNode rootNode = loader.createEmptyNode();
+		
+		rootNode.getNode("version").setValue(FORMAT_VERSION);
+		ConfigurationNode statesNode = rootNode.getNode("states");
+		for (int stateId = 0; stateId < ID_COUNT; stateId++) {
+			PaletteEntry entry = get(stateId);
+			if (!entry.isKnown()) continue;
+			
+			ConfigurationNode stateNode = statesNode.getNode(String.valueOf(stateId));
+			stateNode.getNode("id").setValue(entry.getState().getResourceId());
+			for (Entry<String, String> property : entry.getState().getProperties().entrySet()) {
+				stateNode.getNode("properties", property.getKey()).setValue(property.getValue());
+			}
+			stateNode.getNode("flags").setValue(entry.getFlags());
+		}
+		
+		loader.save(rootNode);
+	}
+	
+	/**
+	 * Creates a palette that resolves the ids with the global block-palette of the server.
+	 */
+	public static LegacyBlockPalette fromServer(BlockStateResourceNameMapper bsrnm, BlockFlagTable flagTable) {
+		BlockPalette globalPalette = BlockPaletteTypes.GLOBAL.create();
+		PaletteEntry air = new PaletteEntry(BlockStateResourceNameMapper.AIR, (byte) 0, false);
+		
+		return new LegacyBlockPalette(stateId -> {
+			BlockState blockState = globalPalette.get(stateId).orElse(null);
+			
+			//unknown ids (e.g. of removed mods) are rendered as air
+			if (blockState == null) return air;
+			
+			return new PaletteEntry(bsrnm.map(blockState), flagTable.getFlags(blockState), true);
+		});
+	}
+	
+	/**
+	 * Loads a palette that has been saved with {@link #save(File)}.
+	 */
+	public static LegacyBlockPalette load(File file) throws IOException {
+		ConfigurationNode rootNode = GsonConfigurationLoader.builder().setFile(file).build().load();
+		
+		int version = rootNode.getNode("version").getInt(-1);
+		if (version != FORMAT_VERSION) throw new IOException("Unsupported block-id file version: " + version);
+		
+		//unknown ids are rendered as air, like on the server
+		PaletteEntry air = new PaletteEntry(BlockStateResourceNameMapper.AIR, (byte) 0, false);
+		PaletteEntry[] loaded = new PaletteEntry[ID_COUNT];
+		for (Entry<Object, ? extends ConfigurationNode> stateEntry : rootNode.getNode("states").getChildrenMap().entrySet()) {
+			int stateId;
+			try {
+				stateId = Integer.parseInt(stateEntry.getKey().toString());
+			} catch (NumberFormatException e) {
+				throw new IOException("Invalid block-id: " + stateEntry.getKey(), e);
+			}
+			if (stateId < 0 || stateId >= ID_COUNT) throw new IOException("Invalid block-id: " + stateId);
+			
+			ConfigurationNode stateNode = stateEntry.getValue();
+			Map<String, String> properties = new HashMap<>();
+			for (Entry<Object, ? extends ConfigurationNode> property : stateNode.getNode("properties").getChildrenMap().entrySet()) {
+				properties.put(property.getKey().toString(), property.getValue().getString());
+			}
+			
+			String id = stateNode.getNode("id").getString();
+			loaded[stateId] = new PaletteEntry(
+					id != null ? BlockStateImpl.of(id, properties) : BlockStateResourceNameMapper.AIR, 
+					(byte) stateNode.getNode("flags").getInt(0), 
+					true
+				);
+		}
+		
+		return new LegacyBlockPalette(stateId -> loaded[stateId] != null ? loaded[stateId] : air);
+	}
+	
+	public static class PaletteEntry {
+		
+		private final de.bluecolored.bluemap.api.BlockState state;
+		private final byte flags;
+		private final boolean known;
+		
+		private PaletteEntry(de.bluecolored.bluemap.api.BlockState state, byte flags, boolean known) {
+			this.state = state;
+			this.flags = flags;
+			this.known = known;
+		}
+		
+		public de.bluecolored.bluemap.api.BlockState getState() {
+			return state;
+		}
+		
+		public byte getFlags() {
+			return flags;
+		}
+		
+		/**
+		 * Whether this id is a valid block-state, unknown ids are mapped to air.
+		 */
+		public boolean isKnown() {
+			return known;
+		}
+		
+	}
+	
+}
@@ -0,0 +1,202 @@
+/*
+ * This file is part of BlueMapSponge, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) Blue (Lukas Rieger) <https://bluecolored.de>
+ * Copyright (c) contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package de.bluecolored.bluemap.sponge.impl;
+
+import java.io.IOException;
+import java.lang.ref.SoftReference;
+import java.util.NoSuchElementException;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+
+import javax.annotation.Nullable;
+
+import org.spongepowered.api.Sponge;
+import org.spongepowered.api.world.World;
+
+import com.flowpowered.math.vector.Vector3i;
+
+import de.bluecolored.bluemap.api.ChunkNotGeneratedException;
+import de.bluecolored.bluemap.logger.Logger;
+import de.bluecolored.bluemap.sponge.RenderGovernor;
+import de.bluecolored.bluemap.sponge.anvil.AnvilChunk;
+import de.bluecolored.bluemap.sponge.anvil.BiomeIds;
+import de.bluecolored.bluemap.sponge.anvil.RegionStorage;
+import de.bluecolored.bluemap.sponge.metrics.Metrics;
+import de.bluecolored.bluemap.util.AABB;
+
+/**
+ * A {@link WorldSource} that takes the chunks from a sponge-world, or from its region-files if the chunks are not loaded.
+ */
+public class SpongeWorldSource implements WorldSource {
+
+	private UUID uuid;
+	private Logger logger;
+	
+	private SoftReference<World> worldRef;
+	private ChunkLoader chunkLoader;
+	private AABB bounds;
+	
+	@Nullable
+	private RegionStorage regionStorage;
+	@Nullable
+	private LegacyBlockPalette legacyBlockPalette;
+	
+	public SpongeWorldSource(ExecutorService syncExecutor, RenderGovernor governor, BlockStateResourceNameMapper bsrnm, BlockFlagTable blockFlagTable, boolean useRegionFiles, UUID uuid, Logger logger) {
+		this.uuid = uuid;
+		this.logger = logger;
+		
+		this.chunkLoader = new ChunkLoader(this, syncExecutor, governor, logger);
+		
+		World world = getSpongeWorld();
+		
+		this.bounds = new AABB(world.getBlockMin(), world.getBlockMax());
+		
+		if (useRegionFiles) {
+			this.regionStorage = new RegionStorage(world.getDirectory().resolve("region"));
+			this.legacyBlockPalette = LegacyBlockPalette.fromServer(bsrnm, blockFlagTable);
+		}
+		
+		/* TODO
+		chunkLoadingTicket = Sponge.getServer().getChunkTicketManager().createTicket(BlueMapSponge.getPlugin(), world).orElse(null);
+		if (chunkLoadingTicket != null) {
+			chunkLoadingTicket.setNumChunks(Math.min(100, chunkLoadingTicket.getMaxNumChunks()));
+		}
+		*/
+	}
+	
+	@Override
+	public ChunkSnapshot createChunkSnapshot(WorldImpl world, int chunkX, int chunkZ) throws ChunkNotGeneratedException {
+		//loaded chunks are always taken from the live world, they might have changes that are not saved yet
+		if (regionStorage != null && !isChunkLoaded(chunkX, chunkZ)) {
+			ChunkSnapshot snapshot = readChunkSnapshot(world, chunkX, chunkZ);
+			if (snapshot != null) return snapshot;
+		}
+		
+		if (!ensureLoadedChunk(world, chunkX, chunkZ)){
+			throw new ChunkNotGeneratedException("Cannot access chunk: " + chunkX + ", " + chunkZ + ". Failed to load chunk!");
+		}
+		
+		return ChunkSnapshot.create(world, getSpongeWorld(), chunkX, chunkZ);
+	}
+	
+	/**
+	 * Creates a chunk-snapshot from the region-file without loading the chunk into the server.
+	 * @return the snapshot or null if reading the region-files is disabled, the chunk is not (fully) generated on disk or could not be read
+	 */
+	@Override
+	@Nullable
+	public ChunkSnapshot readChunkSnapshot(WorldImpl world, int chunkX, int chunkZ) {
+		if (regionStorage == null) return null;
+		
+		try {
+			AnvilChunk chunk = regionStorage.readChunk(chunkX, chunkZ);
+			if (chunk == null || !chunk.isTerrainPopulated()) return null;
+			
+			//the chunk is not loaded, reading the biomes from the sponge-world would load it, so they are taken from the chunk-data as well
+			int[] biomes = new int[16 * 16];
+			for (int z = 0; z < 16; z++) {
+				for (int x = 0; x < 16; x++) {
+					biomes[z * 16 + x] = BiomeIds.getRegistryId(chunk.getBiomeId(x, z));
+				}
+			}
+			
+			return ChunkSnapshot.create(world, chunk, legacyBlockPalette, biomes, bounds.getMin().getFloorY(), bounds.getMax().getFloorY());
+		} catch (IOException e) {
+			//the server might be writing this chunk right now, loading it is the safe way then
+			logger.logDebug("Failed to read chunk " + chunkX + ", " + chunkZ + " from its region-file, loading it instead: " + e);
+			return null;
+		}
+	}
+	
+	/**
+	 * Ensures that the chunk at that location is loaded and if not, tries to load it.
+	 * @return true if successful, false if not
+	 */
+	private boolean ensureLoadedChunk(WorldImpl world, int chunkX, int chunkZ){
+		CompletableFuture<Boolean> chunkFuture = requestChunk(chunkX, chunkZ);
+		if (chunkFuture.isDone()) return world.awaitChunk(chunkFuture);
+		
+		long start = Metrics.CHUNK_LOAD_WAIT.start();
+		try {
+			return world.awaitChunk(chunkFuture);
+		} finally {
+			Metrics.CHUNK_LOAD_WAIT.stop(start);
+		}
+	}
+	
+	@Override
+	public CompletableFuture<Boolean> requestChunk(int chunkX, int chunkZ) {
+		//most of the time it should be loaded and present
+		if (isChunkLoaded(chunkX, chunkZ)) return CompletableFuture.completedFuture(true);
+		
+		//if not, request the chunk to be loaded with the next batch on the server-thread
+		return chunkLoader.requestChunk(chunkX, chunkZ);
+	}
+	
+	@Override
+	public boolean isChunkLoaded(int chunkX, int chunkZ) {
+		return getSpongeWorld().getChunk(chunkX, 0, chunkZ).isPresent();
+	}
+	
+	@Override
+	@Nullable
+	public RegionStorage getRegionStorage() {
+		return regionStorage;
+	}
+	
+	@Override
+	public AABB getBoundaries() {
+		return bounds;
+	}
+	
+	@Override
+	public String getName() {
+		return getSpongeWorld().getName();
+	}
+	
+	@Override
+	public int getSeaLevel() {
+		return getSpongeWorld().getSeaLevel();
+	}
+	
+	@Override
+	public Vector3i getSpawnPoint() {
+		return getSpongeWorld().getSpawnLocation().getBlockPosition();
+	}
+	
+	public World getSpongeWorld() {
+		if (worldRef == null || worldRef.get() == null){
+			try {
+				worldRef = new SoftReference<World>(Sponge.getServer().getWorld(uuid).get());
+			} catch (NoSuchElementException e){
+				throw new RuntimeException("The world " + uuid + " is gone!");
+			}
+		}
+		
+		return worldRef.get();
+	}
+	
+}
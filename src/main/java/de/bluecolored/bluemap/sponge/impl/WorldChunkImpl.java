@@ -24,12 +24,19 @@
  */
 package de.bluecolored.bluemap.sponge.impl;
 
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
 import com.flowpowered.math.vector.Vector3i;
 
 import de.bluecolored.bluemap.api.Block;
 import de.bluecolored.bluemap.api.ChunkNotGeneratedException;
 import de.bluecolored.bluemap.api.WorldChunk;
+import de.bluecolored.bluemap.sponge.TrackingTileRenderer;
 import de.bluecolored.bluemap.sponge.WorldUtil;
+import de.bluecolored.bluemap.sponge.metrics.Counter;
+import de.bluecolored.bluemap.sponge.metrics.Metrics;
 import de.bluecolored.bluemap.util.AABB;
 
 public class WorldChunkImpl implements WorldChunk {
@@ -40,6 +47,8 @@ public class WorldChunkImpl implements WorldChunk {
 	private boolean isGenerated;
 	private boolean checkedGenerated;
 	
+	private Counter.Local fetchCount;
+	
 	public WorldChunkImpl(WorldImpl world, AABB bounds) {
 		this.world = world;
 		this.bounds = bounds;
@@ -59,8 +68,18 @@ public WorldImpl getWorld() {
 	public Block getBlock(Vector3i pos) throws ChunkNotGeneratedException {
 		//if(!bounds.contains(pos)) throw new IndexOutOfBoundsException(pos + " is not inside this world-chunks's bounds " + bounds);
 		
+		getFetchCount().increment();
 		return world.getBlock(pos);
 	}
+	
+	/**
+	 * Returns the local {@link Metrics#BLOCK_FETCHES}-count of the render-thread, it is flushed once per tile by the {@link TrackingTileRenderer}.
+	 */
+	protected Counter.Local getFetchCount() {
+		//this is taken on the first block-access, which is always done by the render-thread that uses this world-chunk
+		if (fetchCount == null) fetchCount = Metrics.BLOCK_FETCHES.getLocal();
+		return fetchCount;
+	}
 
 	@Override
 	public AABB getBoundaries() {
@@ -91,11 +110,18 @@ public boolean isGenerated() {
 	}
 	
 	private boolean checkGenerated(){ 
+		//request all chunks at once so they can be loaded in one batch
+		List<CompletableFuture<Boolean>> chunkFutures = new ArrayList<>();
 		for (Vector3i chunk : WorldUtil.getContainedSpongeChunks(bounds)) {
-			if(!world.ensureLoadedChunk(chunk)) return false;
+			chunkFutures.add(world.requestChunk(chunk));
+		}
+		
+		boolean generated = true;
+		for (CompletableFuture<Boolean> chunkFuture : chunkFutures) {
+			if (!world.awaitChunk(chunkFuture)) generated = false;
 		}
 		
-		return true;
+		return generated;
 	}
 
 }
@@ -24,79 +24,55 @@
  */
 package de.bluecolored.bluemap.sponge.impl;
 
-import java.lang.ref.SoftReference;
-import java.util.Collections;
-import java.util.NoSuchElementException;
-import java.util.Optional;
-import java.util.Set;
 import java.util.UUID;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ExecutionException;
-import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Future;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
 
 import javax.annotation.Nullable;
 
-import org.spongepowered.api.Sponge;
-import org.spongepowered.api.block.BlockState;
-import org.spongepowered.api.block.BlockType;
-import org.spongepowered.api.block.BlockTypes;
-import org.spongepowered.api.data.Property;
-import org.spongepowered.api.data.property.block.FullBlockSelectionBoxProperty;
-import org.spongepowered.api.data.property.block.GroundLuminanceProperty;
-import org.spongepowered.api.data.property.block.SkyLuminanceProperty;
-import org.spongepowered.api.data.property.block.SolidCubeProperty;
-import org.spongepowered.api.world.Chunk;
-import org.spongepowered.api.world.ChunkTicketManager.LoadingTicket;
-import org.spongepowered.api.world.Location;
-
 import com.flowpowered.math.vector.Vector3i;
-import com.google.common.collect.Sets;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.util.concurrent.UncheckedExecutionException;
 
 import de.bluecolored.bluemap.api.Block;
 import de.bluecolored.bluemap.api.ChunkNotGeneratedException;
 import de.bluecolored.bluemap.api.World;
 import de.bluecolored.bluemap.logger.Logger;
+import de.bluecolored.bluemap.sponge.RenderGovernor;
+import de.bluecolored.bluemap.sponge.WorldUtil;
+import de.bluecolored.bluemap.sponge.anvil.RegionStorage;
+import de.bluecolored.bluemap.sponge.metrics.Metrics;
 import de.bluecolored.bluemap.util.AABB;
 
 public class WorldImpl implements World {
 
-	private static final Set<BlockType> OCCLUDING_BLOCKS = Collections.unmodifiableSet(Sets.newHashSet(
-				BlockTypes.LEAVES,
-				BlockTypes.LEAVES2
-			));
-	
-	private ExecutorService syncExecutor;
-	private Logger logger;
+	private WorldSource source;
+	private RenderGovernor governor;
 	private BlockStateResourceNameMapper bsrnm;
+	private BlockFlagTable blockFlagTable;
 	private UUID uuid;
-	private AABB bounds;
-	private SoftReference<org.spongepowered.api.world.World> worldRef;
-	
-	@Nullable
-	private LoadingTicket chunkLoadingTicket;
+	private Logger logger;
+	private Cache<Long, ChunkSnapshot> chunkSnapshotCache;
 	
-	public WorldImpl(ExecutorService syncExecutor, BlockStateResourceNameMapper bsrnm, UUID uuid, Logger logger) {
-		this.syncExecutor = syncExecutor;
+	public WorldImpl(WorldSource source, RenderGovernor governor, BlockStateResourceNameMapper bsrnm, BlockFlagTable blockFlagTable, UUID uuid, Logger logger) {
+		this.source = source;
+		this.governor = governor;
 		this.bsrnm = bsrnm;
+		this.blockFlagTable = blockFlagTable;
 		this.uuid = uuid;
-
-		org.spongepowered.api.world.World world = getSpongeWorld();
-		
-		this.bounds = new AABB(world.getBlockMin(), world.getBlockMax());
+		this.logger = logger;
 		
-		/* TODO
-		chunkLoadingTicket = Sponge.getServer().getChunkTicketManager().createTicket(BlueMapSponge.getPlugin(), world).orElse(null);
-		if (chunkLoadingTicket != null) {
-			chunkLoadingTicket.setNumChunks(Math.min(100, chunkLoadingTicket.getMaxNumChunks()));
-			
-			//System.out.println("Num Chunks: " + chunkLoadingTicket.getNumChunks() + " (" + chunkLoadingTicket.getMaxNumChunks() + ")");
-		}
-		*/
+		this.chunkSnapshotCache = CacheBuilder.newBuilder()
+				.maximumSize(256)
+				.expireAfterWrite(30, TimeUnit.SECONDS)
+				.softValues()
+				.build();
 	}
-
+	
 	@Override
 	public World getWorld() {
 		return this;
@@ -105,62 +81,57 @@ public World getWorld() {
 	@Override
 	public Block getBlock(Vector3i pos) throws ChunkNotGeneratedException {
 		//if(!bounds.contains(pos)) throw new IndexOutOfBoundsException(pos + " is not inside this world's bounds " + bounds);
+		
+		return getChunkSnapshot(Math.floorDiv(pos.getX(), 16), Math.floorDiv(pos.getZ(), 16)).getBlock(pos);
+	}
 	
-		if (!ensureLoadedChunkAtBlock(pos)){
-			throw new ChunkNotGeneratedException("Cannot access block for position: " + pos + ". Failed to load chunk!");
-		}
-
-		org.spongepowered.api.world.World world = getSpongeWorld();
-		int sunHeight = world.getHighestYAt(pos.getX(), pos.getZ());
-
-		//try to shortcut block generation
-		if (pos.getY() > sunHeight){
-			BlockType blockType = world.getBlockType(pos);
-			if (blockType == BlockTypes.AIR){
-				return new BlockImpl(
-						this, 
-						bsrnm.AIR, 
-						pos,
-						15d,
-						0d, //incorrect value (this does't matter now but has to be corrected if we'd generate night-maps)
-						world.getBiome(pos),
-						false, 
-						false
-					);
-			}
+	public BlockData getBlockData(Vector3i pos) throws ChunkNotGeneratedException {
+		return getChunkSnapshot(Math.floorDiv(pos.getX(), 16), Math.floorDiv(pos.getZ(), 16)).getBlockData(pos);
+	}
+	
+	/**
+	 * Returns a {@link ChunkSnapshot} of the chunk at that chunk-position, the snapshot is cached for a short time so that multiple tiles can share it.
+	 * @throws ChunkNotGeneratedException if the chunk could not be loaded
+	 */
+	public ChunkSnapshot getChunkSnapshot(int chunkX, int chunkZ) throws ChunkNotGeneratedException {
+		try {
+			return chunkSnapshotCache.get(WorldUtil.packXZ(chunkX, chunkZ), () -> {
+				long start = Metrics.CHUNK_READ.start();
+				try {
+					return source.createChunkSnapshot(this, chunkX, chunkZ);
+				} finally {
+					Metrics.CHUNK_READ.stop(start);
+				}
+			});
+		} catch (ExecutionException | UncheckedExecutionException e) {
+			Throwable cause = e.getCause();
+			if (cause instanceof ChunkNotGeneratedException) throw (ChunkNotGeneratedException) cause;
+			logger.logError("Failed to create chunk-snapshot: " + chunkX + ", " + chunkZ, cause);
+			throw new ChunkNotGeneratedException("Cannot access chunk: " + chunkX + ", " + chunkZ + ". Failed to create chunk-snapshot!");
 		}
-		
-		Location<org.spongepowered.api.world.World> location = world.getLocation(pos);
-		BlockState blockState = location.getBlock().withExtendedProperties(location);
-		
-		double sunLight = getPropertyOrDefault(location, SkyLuminanceProperty.class, 15d);
-		double blockLight = getPropertyOrDefault(location, GroundLuminanceProperty.class, 15d);
-		boolean solidCube = getPropertyOrDefault(location, SolidCubeProperty.class, false);
-		boolean fullBox = getPropertyOrDefault(location, FullBlockSelectionBoxProperty.class, false);
-		boolean isCulling = fullBox && solidCube && sunLight == 0 && blockLight == 0;
-		boolean isOccluding = isCulling || OCCLUDING_BLOCKS.contains(blockState.getType());
-		
-		return new BlockImpl(
-			this, 
-			bsrnm.map(blockState), 
-			pos,
-			sunLight,
-			blockLight,
-			location.getBiome(),
-			isCulling, 
-			isOccluding
-		);
 	}
 	
-	private <V, K> V getPropertyOrDefault(Location<org.spongepowered.api.world.World> loc, Class<? extends Property<K, V>> propertyClass, V defaultValue){
-		Property<K, V> property = loc.getProperty(propertyClass).orElse(null);
-		if (property == null) return defaultValue;
-		return property.getValue();
+	/**
+	 * Removes the cached snapshot of this chunk, so the next access creates a new snapshot with the current state of the chunk.
+	 */
+	public void invalidateChunkSnapshot(int chunkX, int chunkZ) {
+		chunkSnapshotCache.invalidate(WorldUtil.packXZ(chunkX, chunkZ));
 	}
-
+	
+	/**
+	 * Reads the chunk from its region-file and replaces the cached snapshot of that chunk with it, so following renders use the same data.
+	 * @return the snapshot or null if reading the region-files is disabled or the chunk can not be read from them
+	 */
+	@Nullable
+	public ChunkSnapshot reloadChunkSnapshot(int chunkX, int chunkZ) {
+		ChunkSnapshot snapshot = source.readChunkSnapshot(this, chunkX, chunkZ);
+		if (snapshot != null) chunkSnapshotCache.put(WorldUtil.packXZ(chunkX, chunkZ), snapshot);
+		return snapshot;
+	}
+	
 	@Override
 	public AABB getBoundaries() {
-		return bounds;
+		return source.getBoundaries();
 	}
 
 	@Override
@@ -183,7 +154,7 @@ public boolean isGenerated() {
 
 	@Override
 	public String getName() {
-		return getSpongeWorld().getName();
+		return source.getName();
 	}
 
 	@Override
@@ -193,66 +164,72 @@ public UUID getUUID() {
 
 	@Override
 	public int getSeaLevel() {
-		return getSpongeWorld().getSeaLevel();
+		return source.getSeaLevel();
 	}
 	
 	@Override
 	public Vector3i getSpawnPoint() {
-		return getSpongeWorld().getSpawnLocation().getBlockPosition();
+		return source.getSpawnPoint();
 	}
 	
-	public org.spongepowered.api.world.World getSpongeWorld() {
-		if (worldRef == null || worldRef.get() == null){
-			try {
-				worldRef = new SoftReference<org.spongepowered.api.world.World>(Sponge.getServer().getWorld(uuid).get());
-			} catch (NoSuchElementException e){
-				throw new RuntimeException("The world " + uuid + " is gone!");
-			}
-		}
-		
-		return worldRef.get();
+	public WorldSource getSource() {
+		return source;
+	}
+	
+	public RenderGovernor getRenderGovernor() {
+		return governor;
+	}
+	
+	public BlockStateResourceNameMapper getBlockStateMapper() {
+		return bsrnm;
+	}
+	
+	public BlockFlagTable getBlockFlagTable() {
+		return blockFlagTable;
+	}
+	
+	public boolean isChunkLoaded(int chunkX, int chunkZ) {
+		return source.isChunkLoaded(chunkX, chunkZ);
 	}
 	
 	/**
-	 * Ensures that the chunk at that location is loaded and if not, tries to load it.
-	 * @return true if successful, false if not
+	 * Returns the region-storage of this world, or null if reading the region-files is disabled.
 	 */
-	protected boolean ensureLoadedChunkAtBlock(Vector3i blockPosition){
-		Vector3i chunkPosition = new Vector3i(Math.floorDiv(blockPosition.getX(), 16), 0, Math.floorDiv(blockPosition.getZ(), 16));
-		return ensureLoadedChunk(chunkPosition);
+	@Nullable
+	public RegionStorage getRegionStorage() {
+		return source.getRegionStorage();
 	}
-		
+	
 	/**
-	 * Ensures that the chunk at that location is loaded and if not, tries to load it.
-	 * @return true if successful, false if not
+	 * Requests the chunk at that location to be loaded, without waiting for it.<br>
+	 * Chunks that are not loaded are read from their region-file right away if possible, only if that fails the chunk is loaded.<br>
+	 * The returned future completes with true if a snapshot of the chunk can be created, false if it could not be loaded.
 	 */
-	protected boolean ensureLoadedChunk(final Vector3i chunkPosition){
-		final org.spongepowered.api.world.World world = getSpongeWorld();
-
-		/* TODO
-		if (chunkLoadingTicket != null) {
-			chunkLoadingTicket.forceChunk(chunkPosition);
-		}
-		*/
+	public CompletableFuture<Boolean> requestChunk(Vector3i chunkPosition) {
+		int chunkX = chunkPosition.getX();
+		int chunkZ = chunkPosition.getZ();
 		
-		//most of the time it should be loaded and present
-		if (world.getChunk(chunkPosition).isPresent()) return true;
+		if (chunkSnapshotCache.getIfPresent(WorldUtil.packXZ(chunkX, chunkZ)) != null) return CompletableFuture.completedFuture(true);
 		
-		synchronized (this) {
-			//if not, start the chunk-loading on the server Thread, but try to do it async 
-			Future<CompletableFuture<Optional<Chunk>>> futureFuture = syncExecutor.submit(() -> {
-				return world.loadChunkAsync(chunkPosition, false);
-			});
+		//the snapshot is only cached if it could actually be read, e.g. chunks that are not populated yet have to be loaded
+		if (!source.isChunkLoaded(chunkX, chunkZ) && reloadChunkSnapshot(chunkX, chunkZ) != null) return CompletableFuture.completedFuture(true);
+		
+		return source.requestChunk(chunkX, chunkZ);
+	}
 	
-			//wait for the futures to complete and return the result
-			try {
-				return futureFuture.get(10, TimeUnit.SECONDS).get(10, TimeUnit.SECONDS).isPresent();
-			} catch (InterruptedException e) {
-				return false;
-			} catch (ExecutionException | TimeoutException e){
-				logger.logError("Failed to load Chunk: " + chunkPosition, e);
-				return false;
-			}
+	/**
+	 * Waits for a future returned by {@link #requestChunk(Vector3i)}.
+	 * @return true if the chunk has been loaded, false if not
+	 */
+	protected boolean awaitChunk(Future<Boolean> chunkFuture) {
+		try {
+			return chunkFuture.get(20, TimeUnit.SECONDS);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			return false;
+		} catch (ExecutionException | TimeoutException e){
+			logger.logError("Failed to load Chunk", e);
+			return false;
 		}
 	}
 	
@@ -269,17 +246,5 @@ public boolean equals(Object obj) {
 	public int hashCode() {
 		return getUUID().hashCode();
 	}
-	
-	/* TODO
-	@Override
-	protected void finalize() throws Throwable {
-		if (chunkLoadingTicket != null) {
-			chunkLoadingTicket.release();
-			chunkLoadingTicket = null;
-		}
-		
-		super.finalize();
-	}
-	*/
 
 }
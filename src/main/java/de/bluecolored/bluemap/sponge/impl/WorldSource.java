@@ -0,0 +1,81 @@
+/*
+ * This file is part of BlueMapSponge, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) Blue (Lukas Rieger) <https://bluecolored.de>
+ * Copyright (c) contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package de.bluecolored.bluemap.sponge.impl;
+
+import java.util.concurrent.CompletableFuture;
+
+import javax.annotation.Nullable;
+
+import com.flowpowered.math.vector.Vector3i;
+
+import de.bluecolored.bluemap.api.ChunkNotGeneratedException;
+import de.bluecolored.bluemap.sponge.anvil.RegionStorage;
+import de.bluecolored.bluemap.util.AABB;
+
+/**
+ * The source of the chunks and properties of a {@link WorldImpl}.<br>
+ * The world caches the chunk-snapshots that are created by its source, so the source only has to create them.
+ */
+public interface WorldSource {
+
+	/**
+	 * Creates a new snapshot of the chunk at that chunk-position, this is called by the world if the snapshot is not cached.
+	 * @throws ChunkNotGeneratedException if the chunk is not generated or could not be loaded
+	 */
+	ChunkSnapshot createChunkSnapshot(WorldImpl world, int chunkX, int chunkZ) throws ChunkNotGeneratedException;
+	
+	/**
+	 * Reads the chunk at that chunk-position from its region-file without loading it.
+	 * @return the snapshot or null if the chunk can not be read from the region-files
+	 */
+	@Nullable
+	ChunkSnapshot readChunkSnapshot(WorldImpl world, int chunkX, int chunkZ);
+	
+	/**
+	 * Requests the chunk at that chunk-position to be loaded, without waiting for it.<br>
+	 * The returned future completes with true if the chunk is loaded and a snapshot of it can be created, false if not.
+	 */
+	CompletableFuture<Boolean> requestChunk(int chunkX, int chunkZ);
+	
+	/**
+	 * Whether the chunk is loaded right now, loaded chunks might have changes that are not saved to the region-files yet.
+	 */
+	boolean isChunkLoaded(int chunkX, int chunkZ);
+	
+	/**
+	 * Returns the region-storage of this world, or null if the region-files are not read.
+	 */
+	@Nullable
+	RegionStorage getRegionStorage();
+	
+	AABB getBoundaries();
+	
+	String getName();
+	
+	int getSeaLevel();
+	
+	Vector3i getSpawnPoint();
+	
+}
@@ -0,0 +1,98 @@
+/*
+ * This file is part of BlueMapSponge, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) Blue (Lukas Rieger) <https://bluecolored.de>
+ * Copyright (c) contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package de.bluecolored.bluemap.sponge.metrics;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A value that only ever increases, like the number of rendered tiles.
+ */
+public class Counter extends Metric {
+
+	private final LongAdder value;
+	private final ThreadLocal<Local> localValue;
+	
+	public Counter(String name, String help) {
+		super(name, help);
+		
+		this.value = new LongAdder();
+		this.localValue = ThreadLocal.withInitial(Local::new);
+	}
+	
+	public void increment() {
+		value.increment();
+	}
+	
+	public void add(long amount) {
+		value.add(amount);
+	}
+	
+	public long get() {
+		return value.sum();
+	}
+	
+	/**
+	 * Returns the local count of the calling thread, it is only added to this counter with {@link #flushLocal()}.<br>
+	 * This is for hot paths that would increment this counter very often, the local count must only be used by the calling thread.
+	 */
+	public Local getLocal() {
+		return localValue.get();
+	}
+	
+	/**
+	 * Adds the local count of the calling thread to this counter and resets it.
+	 */
+	public void flushLocal() {
+		Local local = localValue.get();
+		if (local.count == 0) return;
+		
+		value.add(local.count);
+		local.count = 0;
+	}
+	
+	@Override
+	protected void writeSamples(StringBuilder out) {
+		out.append(getName()).append(' ').append(get()).append('\n');
+	}
+	
+	@Override
+	protected String getType() {
+		return "counter";
+	}
+	
+	/**
+	 * A count of one thread that is not synchronized at all, see {@link Counter#getLocal()}
+	 */
+	public static class Local {
+		
+		private long count;
+		
+		public void increment() {
+			count++;
+		}
+		
+	}
+	
+}
@@ -0,0 +1,56 @@
+/*
+ * This file is part of BlueMapSponge, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) Blue (Lukas Rieger) <https://bluecolored.de>
+ * Copyright (c) contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package de.bluecolored.bluemap.sponge.metrics;
+
+import java.util.function.DoubleSupplier;
+
+/**
+ * A value that is read when the metrics are collected, like the number of scheduled render-tickets.
+ */
+public class Gauge extends Metric {
+
+	private final DoubleSupplier value;
+	
+	public Gauge(String name, String help, DoubleSupplier value) {
+		super(name, help);
+		
+		this.value = value;
+	}
+	
+	public double get() {
+		return value.getAsDouble();
+	}
+	
+	@Override
+	protected void writeSamples(StringBuilder out) {
+		out.append(getName()).append(' ').append(get()).append('\n');
+	}
+	
+	@Override
+	protected String getType() {
+		return "gauge";
+	}
+	
+}
@@ -0,0 +1,89 @@
+/*
+ * This file is part of BlueMapSponge, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) Blue (Lukas Rieger) <https://bluecolored.de>
+ * Copyright (c) contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package de.bluecolored.bluemap.sponge.metrics;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.DoubleSupplier;
+
+/**
+ * The metrics of the render-pipeline. They are collected for the whole plugin, so they can be recorded from anywhere without passing them around.
+ */
+public class Metrics {
+	
+	public static final Timer CHUNK_LOAD_WAIT = new Timer("bluemap_chunk_load_wait_seconds", "Time a render-thread waited for a chunk to be loaded by the server");
+	public static final Timer CHUNK_READ = new Timer("bluemap_chunk_read_seconds", "Time to create a chunk-snapshot from a region-file or a loaded chunk, including the wait for the chunk to load");
+	public static final Counter BLOCK_FETCHES = new Counter("bluemap_block_fetches_total", "Number of blocks that have been read from chunk-snapshots by tile-renders");
+	public static final Timer TILE_RENDER = new Timer("bluemap_tile_render_seconds", "Time to build and store the hires- and lowres-models of a tile");
+	public static final Counter TILES_RENDERED = new Counter("bluemap_tiles_rendered_total", "Number of tiles that have been rendered");
+	public static final Counter TILES_FAILED = new Counter("bluemap_tiles_failed_total", "Number of tiles that failed to render");
+	public static final Counter TILES_SKIPPED = new Counter("bluemap_tiles_skipped_total", "Number of tiles that have been skipped by render-tasks because they did not change");
+	public static final Timer HIRES_POST_PROCESS = new Timer("bluemap_hires_post_process_seconds", "Time to encode, compress and write a hires-tile after it has been saved");
+	public static final Timer LOWRES_SAVE = new Timer("bluemap_lowres_save_seconds", "Time to write the changed lowres-tiles of a map");
+	
+	private static final List<Metric> METRICS = Arrays.asList(
+			CHUNK_LOAD_WAIT,
+			CHUNK_READ,
+			BLOCK_FETCHES,
+			TILE_RENDER,
+			TILES_RENDERED,
+			TILES_FAILED,
+			TILES_SKIPPED,
+			HIRES_POST_PROCESS,
+			LOWRES_SAVE
+			);
+	
+	private static final Map<String, Gauge> GAUGES = new ConcurrentHashMap<>();
+	
+	private Metrics() {}
+	
+	/**
+	 * Registers a gauge, a gauge that has been registered with the same name before is replaced
+	 */
+	public static void registerGauge(String name, String help, DoubleSupplier value) {
+		GAUGES.put(name, new Gauge(name, help, value));
+	}
+	
+	public static List<Metric> getMetrics() {
+		List<Metric> metrics = new ArrayList<>(METRICS);
+		metrics.addAll(GAUGES.values());
+		return metrics;
+	}
+	
+	/**
+	 * Returns all metrics in the prometheus text-format
+	 */
+	public static String toPrometheusFormat() {
+		StringBuilder out = new StringBuilder();
+		for (Metric metric : getMetrics()) {
+			metric.write(out);
+		}
+		return out.toString();
+	}
+	
+}
@@ -0,0 +1,137 @@
+/*
+ * This file is part of BlueMapSponge, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) Blue (Lukas Rieger) <https://bluecolored.de>
+ * Copyright (c) contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package de.bluecolored.bluemap.sponge.metrics;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A histogram of durations with fixed buckets.<br>
+ * Recording is lock-free, so it can be used on the render-threads.
+ */
+public class Timer extends Metric {
+
+	//upper bounds of the buckets in seconds
+	private static final double[] BUCKETS = {0.0001, 0.0005, 0.001, 0.0025, 0.005, 0.01, 0.025, 0.05, 0.1, 0.25, 0.5, 1, 2.5, 5, 10};
+	
+	private final LongAdder[] bucketCounts;
+	private final LongAdder count;
+	private final LongAdder totalNanos;
+	
+	public Timer(String name, String help) {
+		super(name, help);
+		
+		this.bucketCounts = new LongAdder[BUCKETS.length + 1];
+		for (int i = 0; i < bucketCounts.length; i++) bucketCounts[i] = new LongAdder();
+		this.count = new LongAdder();
+		this.totalNanos = new LongAdder();
+	}
+	
+	/**
+	 * Returns the start-time to pass to {@link #stop(long)}
+	 */
+	public long start() {
+		return System.nanoTime();
+	}
+	
+	/**
+	 * Records the time since the start-time returned by {@link #start()}
+	 */
+	public void stop(long start) {
+		record(System.nanoTime() - start);
+	}
+	
+	public void record(long nanos) {
+		double seconds = nanos / 1000000000d;
+		
+		int bucket = 0;
+		while (bucket < BUCKETS.length && seconds > BUCKETS[bucket]) bucket++;
+		
+		bucketCounts[bucket].increment();
+		count.increment();
+		totalNanos.add(nanos);
+	}
+	
+	public long getCount() {
+		return count.sum();
+	}
+	
+	public double getTotalSeconds() {
+		return totalNanos.sum() / 1000000000d;
+	}
+	
+	/**
+	 * Returns the mean duration in seconds, or 0 if nothing has been recorded yet
+	 */
+	public double getMeanSeconds() {
+		long count = getCount();
+		if (count == 0) return 0;
+		return getTotalSeconds() / count;
+	}
+	
+	/**
+	 * Estimates the quantile (0 - 1) in seconds by returning the upper bound of the bucket it falls into.<br>
+	 * Returns {@link Double#POSITIVE_INFINITY} if it is above the largest bucket and 0 if nothing has been recorded yet.
+	 */
+	public double getQuantileSeconds(double quantile) {
+		long[] counts = new long[bucketCounts.length];
+		long count = 0;
+		for (int i = 0; i < counts.length; i++) {
+			counts[i] = bucketCounts[i].sum();
+			count += counts[i];
+		}
+		
+		if (count == 0) return 0;
+		
+		long rank = (long) Math.ceil(quantile * count);
+		long cumulative = 0;
+		for (int i = 0; i < BUCKETS.length; i++) {
+			cumulative += counts[i];
+			if (cumulative >= rank) return BUCKETS[i];
+		}
+		
+		return Double.POSITIVE_INFINITY;
+	}
+	
+	@Override
+	protected void writeSamples(StringBuilder out) {
+		//the buckets are read before the count, so that the +Inf bucket never exceeds the count
+		long cumulative = 0;
+		for (int i = 0; i < BUCKETS.length; i++) {
+			cumulative += bucketCounts[i].sum();
+			out.append(getName()).append("_bucket{le=\"").append(BUCKETS[i]).append("\"} ").append(cumulative).append('\n');
+		}
+		cumulative += bucketCounts[BUCKETS.length].sum();
+		out.append(getName()).append("_bucket{le=\"+Inf\"} ").append(cumulative).append('\n');
+		
+		out.append(getName()).append("_sum ").append(getTotalSeconds()).append('\n');
+		out.append(getName()).append("_count ").append(cumulative).append('\n');
+	}
+	
+	@Override
+	protected String getType() {
+		return "histogram";
+	}
+	
+}
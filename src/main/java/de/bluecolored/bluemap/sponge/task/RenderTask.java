@@ -40,6 +40,11 @@ public RenderTask() {
 	
 	public abstract void interruptAndSave(ConfigurationNode node);
 	
+	/**
+	 * Saves the current progress of this task without interrupting it.
+	 */
+	public abstract void save(ConfigurationNode node);
+	
 	public abstract boolean isFinished();
 	
 	public void notifyFinished() {
@@ -49,7 +54,7 @@ public void notifyFinished() {
 	}
 	
 	public void registerListender(Consumer<RenderTask> listener) {
-		
+		this.listener.add(listener);
 	}
 	
 }
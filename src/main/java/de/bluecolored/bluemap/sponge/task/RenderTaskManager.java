@@ -26,53 +26,130 @@
 
 import java.io.File;
 import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.HashSet;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.spongepowered.api.Sponge;
+import org.spongepowered.api.scheduler.Task;
 
 import de.bluecolored.bluemap.logger.Logger;
 import de.bluecolored.bluemap.render.RenderManager;
+import de.bluecolored.bluemap.sponge.BlueMapSponge;
 import de.bluecolored.bluemap.sponge.MapType;
+import de.bluecolored.bluemap.sponge.RenderGovernor;
 import ninja.leaping.configurate.ConfigurationNode;
 import ninja.leaping.configurate.gson.GsonConfigurationLoader;
 
 public class RenderTaskManager {
 
+	private static final long CHECKPOINT_INTERVAL_MINUTES = 5;
+	
 	private File file;
 	private Logger logger;
 	
 	private Collection<RenderTask> renderTasks;
+	private Task checkpointTask;
+	private Object fileLock;
 	
 	public RenderTaskManager(File file, Logger logger) {
 		this.file = file;
 		this.logger = logger;
 		this.renderTasks = new HashSet<>();
+		this.fileLock = new Object();
 	}
 	
-	public synchronized void loadAndResumeTasks(RenderManager renderManager, Collection<MapType> mapTypes) throws IOException {
+	public synchronized void loadAndResumeTasks(RenderManager renderManager, RenderGovernor governor, Collection<MapType> mapTypes) throws IOException {
 		if (!file.exists()) return;
 		
 		GsonConfigurationLoader configurationLoader = GsonConfigurationLoader.builder().setFile(file).build();
 		ConfigurationNode node = configurationLoader.load();
 		
-		WorldRenderTask.loadAndResumeTasks(this, renderManager, node, mapTypes, logger);
+		WorldRenderTask.loadAndResumeTasks(this, renderManager, governor, node, mapTypes, logger);
+	}
+	
+	/**
+	 * Starts saving the progress of all running tasks periodically, so they can be resumed even if the server crashes.
+	 */
+	public synchronized void startCheckpoints() {
+		if (checkpointTask != null) checkpointTask.cancel();
 		
-		file.delete();
+		checkpointTask = Sponge.getScheduler().createTaskBuilder()
+				.async()
+				.delay(CHECKPOINT_INTERVAL_MINUTES, TimeUnit.MINUTES)
+				.interval(CHECKPOINT_INTERVAL_MINUTES, TimeUnit.MINUTES)
+				.execute(this::checkpoint)
+				.submit(BlueMapSponge.getPlugin());
 	}
 	
-	public synchronized void stopAndSaveTasks() throws IOException {
-		file.getParentFile().mkdirs();
-		if (!file.exists()) file.createNewFile();
+	private void checkpoint() {
+		//don't hold the lock on this manager while saving the tasks, a finishing task unregisters itself while holding its own lock
+		List<RenderTask> tasks;
+		synchronized (this) {
+			tasks = new ArrayList<>(renderTasks);
+		}
 		
-		GsonConfigurationLoader configLoader = GsonConfigurationLoader.builder().setFile(file).setIndent(1).build();
-		ConfigurationNode taskNode = configLoader.createEmptyNode();
+		synchronized (fileLock) {
+			try {
+				GsonConfigurationLoader configLoader = createSaveLoader();
+				ConfigurationNode taskNode = configLoader.createEmptyNode();
+				
+				for (RenderTask task : tasks) {
+					task.save(taskNode);
+				}
+				
+				save(configLoader, taskNode);
+			} catch (IOException e) {
+				logger.logError("Failed to save render-task checkpoint", e);
+			}
+		}
+	}
+	
+	public void stopAndSaveTasks() throws IOException {
+		List<RenderTask> tasks;
+		synchronized (this) {
+			if (checkpointTask != null) checkpointTask.cancel();
+			checkpointTask = null;
+			
+			tasks = new ArrayList<>(renderTasks);
+			renderTasks.clear();
+		}
 		
-		for (RenderTask task : renderTasks) {
-			task.interruptAndSave(taskNode);
+		synchronized (fileLock) {
+			GsonConfigurationLoader configLoader = createSaveLoader();
+			ConfigurationNode taskNode = configLoader.createEmptyNode();
+			
+			for (RenderTask task : tasks) {
+				task.interruptAndSave(taskNode);
+			}
+			
+			save(configLoader, taskNode);
 		}
+	}
+	
+	private GsonConfigurationLoader createSaveLoader() throws IOException {
+		File tempFile = getTempFile();
+		tempFile.getParentFile().mkdirs();
+		if (!tempFile.exists()) tempFile.createNewFile();
 		
-		renderTasks.clear();
-
-		configLoader.save(taskNode);
+		return GsonConfigurationLoader.builder().setFile(tempFile).setIndent(1).build();
+	}
+	
+	/**
+	 * Saves the node to a temporary file first and then replaces the actual file with it, 
+	 * so that there is always a complete file even if the server crashes while saving.
+	 */
+	private void save(GsonConfigurationLoader configLoader, ConfigurationNode node) throws IOException {
+		configLoader.save(node);
+		Files.move(getTempFile().toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+	}
+	
+	private File getTempFile() {
+		return new File(file.getParentFile(), file.getName() + ".tmp");
 	}
 	
 	public synchronized void registerRenderTask(RenderTask task) {
@@ -0,0 +1,299 @@
+/*
+ * This file is part of BlueMapSponge, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) Blue (Lukas Rieger) <https://bluecolored.de>
+ * Copyright (c) contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package de.bluecolored.bluemap.sponge.task;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.Collection;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.InflaterInputStream;
+
+import com.flowpowered.math.vector.Vector3i;
+import com.google.common.hash.Hasher;
+import com.google.common.hash.Hashing;
+
+import de.bluecolored.bluemap.api.ChunkNotGeneratedException;
+import de.bluecolored.bluemap.render.hires.HiresModelManager;
+import de.bluecolored.bluemap.sponge.BlueMapConfig.MapConfig;
+import de.bluecolored.bluemap.sponge.WorldUtil;
+import de.bluecolored.bluemap.sponge.anvil.RegionStorage;
+import de.bluecolored.bluemap.sponge.impl.ChunkSnapshot;
+import de.bluecolored.bluemap.sponge.impl.WorldImpl;
+import gnu.trove.map.hash.TLongIntHashMap;
+import gnu.trove.map.hash.TLongLongHashMap;
+
+/**
+ * Remembers for each rendered hires-tile a hash of the chunks it has been rendered from, so a later render can skip all tiles whose chunks did not change.<br>
+ * <br>
+ * Together with the hash the newest timestamp that the region-files store for those chunks is remembered, so as long as the server 
+ * did not save any of the chunks again, the tile is known to be unchanged by only reading the region-file headers.
+ */
+public class TileFingerprints {
+
+	/**
+	 * The hash of a tile that can not be determined, such a tile always needs to be rendered.
+	 */
+	public static final long UNKNOWN = 0;
+	
+	private static final int FORMAT_VERSION = 1;
+	
+	//hash of chunks that do not exist (yet)
+	private static final long NOT_GENERATED = 1;
+	
+	//timestamp of tiles that have a loaded chunk, their hash is always computed from the live world
+	private static final int NO_TIMESTAMP = 0;
+	
+	private final File file;
+	private final WorldImpl world;
+	private final int tileSize;
+	private final int tileOffsetX, tileOffsetZ;
+	private final long settingsHash;
+	
+	private final TLongLongHashMap tileHashes;
+	private final TLongIntHashMap tileTimestamps;
+	private final TLongIntHashMap pendingTimestamps;
+	
+	private boolean changed;
+	
+	/**
+	 * @param resourcesHash a hash of the resource-pack that the tiles are rendered with, see {@link #hashResources(Collection)}
+	 */
+	public TileFingerprints(File file, WorldImpl world, HiresModelManager hiresModelManager, MapConfig config, long resourcesHash) {
+		this.file = file;
+		this.world = world;
+		this.tileSize = config.getHiresTileSize();
+		this.tileOffsetX = findTileOffset(hiresModelManager, tileSize, true);
+		this.tileOffsetZ = findTileOffset(hiresModelManager, tileSize, false);
+		
+		//rendered tiles are only valid for the settings they have been rendered with
+		long settingsHash = FORMAT_VERSION;
+		settingsHash = ChunkSnapshot.mixHash(settingsHash, tileSize);
+		settingsHash = ChunkSnapshot.mixHash(settingsHash, config.isRenderCaves() ? 1 : 0);
+		settingsHash = ChunkSnapshot.mixHash(settingsHash, config.isAmbientOcclusion() ? 1 : 0);
+		settingsHash = ChunkSnapshot.mixHash(settingsHash, config.isLighting() ? 1 : 0);
+		settingsHash = ChunkSnapshot.mixHash(settingsHash, config.getLowresPointsPerHiresTile());
+		settingsHash = ChunkSnapshot.mixHash(settingsHash, config.getLowresPointsPerLowresTile());
+		settingsHash = ChunkSnapshot.mixHash(settingsHash, config.getHiresFormat().ordinal());
+		settingsHash = ChunkSnapshot.mixHash(settingsHash, config.getHiresCompression().ordinal());
+		settingsHash = ChunkSnapshot.mixHash(settingsHash, resourcesHash);
+		this.settingsHash = settingsHash;
+		
+		this.tileHashes = new TLongLongHashMap(1000, 0.75f, Long.MIN_VALUE, UNKNOWN);
+		this.tileTimestamps = new TLongIntHashMap(1000, 0.75f, Long.MIN_VALUE, NO_TIMESTAMP);
+		this.pendingTimestamps = new TLongIntHashMap(100, 0.5f, Long.MIN_VALUE, NO_TIMESTAMP);
+	}
+	
+	/**
+	 * Computes the hash of all chunks that the tile is rendered from.<br>
+	 * The chunks are only read if the server saved one of them since the tile has been rendered, this never loads a chunk.<br>
+	 * The chunks are read and hashed without holding the lock of these fingerprints, so multiple threads can compute hashes at the same time.
+	 * @return the hash or {@link #UNKNOWN} if one of the chunks could not be hashed
+	 */
+	public long computeTileHash(int tileX, int tileZ) {
+		RegionStorage regionStorage = world.getRegionStorage();
+		if (regionStorage == null) return UNKNOWN;
+		
+		//one block around the tile is included, the faces on the border of a tile depend on the neighbouring blocks
+		int minX = tileX * tileSize + tileOffsetX - 1;
+		int minZ = tileZ * tileSize + tileOffsetZ - 1;
+		int minChunkX = Math.floorDiv(minX, 16), maxChunkX = Math.floorDiv(minX + tileSize + 1, 16);
+		int minChunkZ = Math.floorDiv(minZ, 16), maxChunkZ = Math.floorDiv(minZ + tileSize + 1, 16);
+		
+		long key = WorldUtil.packXZ(tileX, tileZ);
+		
+		int timestamp = NO_TIMESTAMP;
+		boolean loaded = false;
+		for (int chunkX = minChunkX; chunkX <= maxChunkX && !loaded; chunkX++) {
+			for (int chunkZ = minChunkZ; chunkZ <= maxChunkZ && !loaded; chunkZ++) {
+				//loaded chunks might have changes that are not saved yet
+				loaded = world.isChunkLoaded(chunkX, chunkZ);
+				timestamp = Math.max(timestamp, regionStorage.getChunkTimestamp(chunkX, chunkZ));
+			}
+		}
+		if (loaded) timestamp = NO_TIMESTAMP;
+		
+		synchronized (this) {
+			int renderedTimestamp = tileTimestamps.get(key);
+			if (timestamp != NO_TIMESTAMP && renderedTimestamp != NO_TIMESTAMP && timestamp <= renderedTimestamp) return tileHashes.get(key);
+		}
+		
+		long hash = settingsHash;
+		for (int chunkX = minChunkX; chunkX <= maxChunkX; chunkX++) {
+			for (int chunkZ = minChunkZ; chunkZ <= maxChunkZ; chunkZ++) {
+				long chunkHash = computeChunkHash(chunkX, chunkZ);
+				if (chunkHash == UNKNOWN) return UNKNOWN;
+				hash = ChunkSnapshot.mixHash(hash, chunkHash);
+			}
+		}
+		if (hash == UNKNOWN) hash = 1;
+		
+		synchronized (this) {
+			if (tileHashes.get(key) == hash) {
+				//the chunks have been saved again without any change (e.g. the inhabited-time is updated on every save)
+				tileTimestamps.put(key, timestamp);
+				changed = true;
+			} else {
+				pendingTimestamps.put(key, timestamp);
+			}
+		}
+		
+		return hash;
+	}
+	
+	private long computeChunkHash(int chunkX, int chunkZ) {
+		try {
+			if (world.isChunkLoaded(chunkX, chunkZ)) return world.getChunkSnapshot(chunkX, chunkZ).getContentHash();
+		} catch (ChunkNotGeneratedException e) {
+			return UNKNOWN;
+		}
+		
+		if (!world.getRegionStorage().hasChunk(chunkX, chunkZ)) return NOT_GENERATED;
+		
+		//the chunk is read again even if it is cached, so the hash can not be older than the timestamp
+		ChunkSnapshot snapshot = world.reloadChunkSnapshot(chunkX, chunkZ);
+		if (snapshot == null) return UNKNOWN;
+		
+		return snapshot.getContentHash();
+	}
+	
+	/**
+	 * Returns true if the tile has been rendered with exactly this hash before
+	 */
+	public synchronized boolean isUnchanged(int tileX, int tileZ, long hash) {
+		return hash != UNKNOWN && tileHashes.get(WorldUtil.packXZ(tileX, tileZ)) == hash;
+	}
+	
+	/**
+	 * Remembers the hash that the tile has been rendered with
+	 */
+	public synchronized void setRendered(int tileX, int tileZ, long hash) {
+		long key = WorldUtil.packXZ(tileX, tileZ);
+		int timestamp = pendingTimestamps.remove(key);
+		if (hash == UNKNOWN) return;
+		
+		tileHashes.put(key, hash);
+		tileTimestamps.put(key, timestamp);
+		changed = true;
+	}
+	
+	/**
+	 * Forgets all rendered tiles, so every tile will be rendered again
+	 */
+	public synchronized void clear() {
+		tileHashes.clear();
+		tileTimestamps.clear();
+		pendingTimestamps.clear();
+		changed = true;
+	}
+	
+	public synchronized void load() throws IOException {
+		clear();
+		changed = false;
+		
+		if (!file.exists()) return;
+		
+		try (DataInputStream in = new DataInputStream(new InflaterInputStream(new BufferedInputStream(new FileInputStream(file))))) {
+			int version = in.readInt();
+			if (version != FORMAT_VERSION) return;
+			
+			//tiles that have been rendered with other settings need to be rendered again
+			if (in.readLong() != settingsHash) return;
+			
+			int tileCount = in.readInt();
+			for (int i = 0; i < tileCount; i++) {
+				long key = in.readLong();
+				tileHashes.put(key, in.readLong());
+				tileTimestamps.put(key, in.readInt());
+			}
+		}
+	}
+	
+	/**
+	 * Saves the fingerprints to a temporary file first and then replaces the actual file with it, 
+	 * so that there is always a complete file even if the server crashes while saving.<br>
+	 * Nothing is written if the fingerprints did not change since they have been loaded or saved.
+	 */
+	public synchronized void save() throws IOException {
+		if (!changed) return;
+		
+		File tempFile = new File(file.getParentFile(), file.getName() + ".tmp");
+		tempFile.getParentFile().mkdirs();
+		
+		try (DataOutputStream out = new DataOutputStream(new DeflaterOutputStream(new BufferedOutputStream(new FileOutputStream(tempFile))))) {
+			out.writeInt(FORMAT_VERSION);
+			out.writeLong(settingsHash);
+			
+			out.writeInt(tileHashes.size());
+			for (long key : tileHashes.keys()) {
+				out.writeLong(key);
+				out.writeLong(tileHashes.get(key));
+				out.writeInt(tileTimestamps.get(key));
+			}
+		}
+		
+		Files.move(tempFile.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+		changed = false;
+	}
+	
+	/**
+	 * Hashes the content of the resource-files, so that all tiles are rendered again if the resources change.
+	 */
+	public static long hashResources(Collection<File> resourceFiles) throws IOException {
+		Hasher hasher = Hashing.murmur3_128().newHasher();
+		for (File resourceFile : resourceFiles) {
+			hasher.putString(resourceFile.getName(), StandardCharsets.UTF_8);
+			hasher.putLong(com.google.common.io.Files.asByteSource(resourceFile).hash(Hashing.murmur3_128()).asLong());
+		}
+		
+		return hasher.hash().asLong();
+	}
+	
+	/**
+	 * Finds the block-offset of the hires-tile grid, so that tile t starts at block t * tileSize + offset
+	 */
+	private static int findTileOffset(HiresModelManager hiresModelManager, int tileSize, boolean xAxis) {
+		int base = tile(hiresModelManager, 0, xAxis);
+		for (int d = 1; d <= tileSize; d++) {
+			if (tile(hiresModelManager, d, xAxis) != base) return d - (base + 1) * tileSize;
+		}
+		
+		return 0;
+	}
+	
+	private static int tile(HiresModelManager hiresModelManager, int blockPos, boolean xAxis) {
+		if (xAxis) return hiresModelManager.posToTile(new Vector3i(blockPos, 0, 0)).getX();
+		return hiresModelManager.posToTile(new Vector3i(0, 0, blockPos)).getY();
+	}
+	
+}
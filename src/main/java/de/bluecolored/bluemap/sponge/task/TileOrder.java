@@ -0,0 +1,229 @@
+/*
+ * This file is part of BlueMapSponge, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) Blue (Lukas Rieger) <https://bluecolored.de>
+ * Copyright (c) contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package de.bluecolored.bluemap.sponge.task;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.spongepowered.api.Sponge;
+import org.spongepowered.api.entity.living.player.Player;
+import org.spongepowered.api.world.World;
+
+import com.flowpowered.math.vector.Vector2i;
+
+import de.bluecolored.bluemap.render.hires.HiresModelManager;
+import de.bluecolored.bluemap.sponge.BlueMapSponge;
+import de.bluecolored.bluemap.sponge.MapType;
+import gnu.trove.list.array.TIntArrayList;
+
+/**
+ * Defines the order in which a {@link WorldRenderTask} renders its open tiles.<br>
+ * Tiles with a lower priority are rendered first, tiles with the same priority are rendered in the order they have been found.
+ */
+public interface TileOrder {
+
+	long getPriority(int x, int z);
+	
+	/**
+	 * Called periodically by the render-task.
+	 * @return true if the priorities of the tiles have changed and the open tiles need to be re-sorted
+	 */
+	default boolean update() {
+		return false;
+	}
+	
+	/**
+	 * Returns the index of the given position on a square spiral around 0|0, starting with 0 in the center.
+	 */
+	static long spiralIndex(int x, int z) {
+		long ring = Math.max(Math.abs((long) x), Math.abs((long) z));
+		if (ring == 0) return 0;
+		
+		long pos;
+		if (z == -ring && x < ring) pos = x + ring;
+		else if (x == ring && z < ring) pos = 2 * ring + (z + ring);
+		else if (z == ring && x > -ring) pos = 4 * ring + (ring - x);
+		else pos = 6 * ring + (ring - z);
+		
+		return (2 * ring - 1) * (2 * ring - 1) + pos;
+	}
+	
+	public enum Type {
+		
+		/**
+		 * Flood-fill from the start-tile, in the order the tiles have been discovered
+		 */
+		FLOOD {
+			@Override
+			public TileOrder create(MapType mapType, Vector2i start) {
+				return (x, z) -> 0;
+			}
+		},
+		
+		/**
+		 * A square spiral around the start-tile
+		 */
+		SPIRAL {
+			@Override
+			public TileOrder create(MapType mapType, Vector2i start) {
+				return (x, z) -> spiralIndex(x - start.getX(), z - start.getY());
+			}
+		},
+		
+		/**
+		 * The tiles closest to the online players of the world first
+		 */
+		PLAYERS {
+			@Override
+			public TileOrder create(MapType mapType, Vector2i start) {
+				return new PlayerTileOrder(mapType, start);
+			}
+		},
+		
+		/**
+		 * Region-file by region-file, so that the chunks of a region-file are read in one go
+		 */
+		REGION {
+			@Override
+			public TileOrder create(MapType mapType, Vector2i start) {
+				return new RegionTileOrder(mapType.getConfig().getHiresTileSize(), start);
+			}
+		};
+		
+		public abstract TileOrder create(MapType mapType, Vector2i start);
+		
+	}
+	
+	class RegionTileOrder implements TileOrder {
+		
+		private static final int REGION_BLOCK_BITS = 9;
+		
+		private final int tileSize;
+		private final int tilesPerRegionRow;
+		private final int startRegionX, startRegionZ;
+		
+		public RegionTileOrder(int tileSize, Vector2i start) {
+			this.tileSize = tileSize;
+			this.tilesPerRegionRow = ((1 << REGION_BLOCK_BITS) + tileSize - 1) / tileSize;
+			this.startRegionX = regionOf(start.getX());
+			this.startRegionZ = regionOf(start.getY());
+		}
+		
+		@Override
+		public long getPriority(int x, int z) {
+			//regions in a spiral around the start, and inside each region the tiles in the order the chunks are stored in the region-file
+			long region = spiralIndex(regionOf(x) - startRegionX, regionOf(z) - startRegionZ);
+			long inRegion = (long) localOf(z) * tilesPerRegionRow + localOf(x);
+			
+			return region * tilesPerRegionRow * tilesPerRegionRow + inRegion;
+		}
+		
+		private int regionOf(int tile) {
+			return (int) (((long) tile * tileSize) >> REGION_BLOCK_BITS);
+		}
+		
+		private int localOf(int tile) {
+			return (int) (((long) tile * tileSize) & ((1 << REGION_BLOCK_BITS) - 1)) / tileSize;
+		}
+		
+	}
+	
+	class PlayerTileOrder implements TileOrder {
+		
+		private final MapType mapType;
+		private final Vector2i start;
+		
+		/** the tiles of the players, read on the server-thread */
+		private volatile int[] publishedPlayerTiles;
+		private final AtomicBoolean readScheduled;
+		
+		/** the tiles of the players that the current priorities are based on */
+		private int[] playerTiles;
+		
+		public PlayerTileOrder(MapType mapType, Vector2i start) {
+			this.mapType = mapType;
+			this.start = start;
+			this.publishedPlayerTiles = new int[0];
+			this.readScheduled = new AtomicBoolean(false);
+			this.playerTiles = new int[0];
+		}
+		
+		@Override
+		public long getPriority(int x, int z) {
+			//without players we fall back to a spiral around the start-tile
+			if (playerTiles.length == 0) return spiralIndex(x - start.getX(), z - start.getY());
+			
+			long nearest = Long.MAX_VALUE;
+			for (int i = 0; i < playerTiles.length; i += 2) {
+				long dx = x - playerTiles[i];
+				long dz = z - playerTiles[i + 1];
+				nearest = Math.min(nearest, dx * dx + dz * dz);
+			}
+			
+			return nearest;
+		}
+		
+		@Override
+		public boolean update() {
+			//the players can only be accessed on the server-thread, so this compares the tiles of the last read and schedules the next one
+			if (readScheduled.compareAndSet(false, true)) {
+				Sponge.getScheduler().createTaskBuilder()
+						.execute(this::readPlayerTiles)
+						.submit(BlueMapSponge.getPlugin());
+			}
+			
+			int[] tiles = publishedPlayerTiles;
+			if (Arrays.equals(tiles, playerTiles)) return false;
+			
+			playerTiles = tiles;
+			return true;
+		}
+		
+		private void readPlayerTiles() {
+			try {
+				HiresModelManager hiresModelManager = mapType.getTileRenderer().getHiresModelManager();
+				
+				Collection<Player> players = Sponge.getServer().getWorld(mapType.getWorld().getUUID())
+						.map(World::getPlayers)
+						.orElse(Collections.emptyList());
+				
+				TIntArrayList tiles = new TIntArrayList(players.size() * 2);
+				for (Player player : players) {
+					Vector2i tile = hiresModelManager.posToTile(player.getLocation().getPosition());
+					tiles.add(tile.getX());
+					tiles.add(tile.getY());
+				}
+				
+				publishedPlayerTiles = tiles.toArray();
+			} finally {
+				readScheduled.set(false);
+			}
+		}
+		
+	}
+	
+}
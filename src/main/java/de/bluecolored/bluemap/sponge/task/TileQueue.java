@@ -0,0 +1,206 @@
+/*
+ * This file is part of BlueMapSponge, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) Blue (Lukas Rieger) <https://bluecolored.de>
+ * Copyright (c) contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package de.bluecolored.bluemap.sponge.task;
+
+import java.util.NoSuchElementException;
+
+import de.bluecolored.bluemap.sponge.WorldUtil;
+
+/**
+ * A priority-queue of packed tile-positions ({@link WorldUtil#packXZ(int, int)}) without any boxing.<br>
+ * The tiles are ordered by their {@link TileOrder}-priority, tiles with the same priority are ordered first-in-first-out.<br>
+ * Each tile can only be in the queue once.
+ */
+class TileQueue {
+
+	private TileOrder order;
+	
+	//binary min-heap stored in parallel arrays
+	private long[] priorities;
+	private long[] sequences;
+	private long[] tiles;
+	private int size;
+	
+	private long nextSequence;
+	private TileSet members;
+	
+	public TileQueue(TileOrder order) {
+		this.order = order;
+		
+		this.priorities = new long[64];
+		this.sequences = new long[64];
+		this.tiles = new long[64];
+		this.size = 0;
+		
+		this.nextSequence = 0;
+		this.members = new TileSet();
+	}
+	
+	/**
+	 * Adds the tile to this queue, if it is not already in this queue.
+	 * @return true if the tile has been added
+	 */
+	public boolean add(int x, int z) {
+		if (!members.add(x, z)) return false;
+		
+		if (size == tiles.length) grow();
+		
+		int index = size++;
+		priorities[index] = order.getPriority(x, z);
+		sequences[index] = nextSequence++;
+		tiles[index] = WorldUtil.packXZ(x, z);
+		siftUp(index);
+		
+		return true;
+	}
+	
+	/**
+	 * Removes and returns the packed tile-position with the lowest priority.
+	 * @throws NoSuchElementException if this queue is empty
+	 */
+	public long poll() {
+		if (size == 0) throw new NoSuchElementException();
+		
+		long tile = tiles[0];
+		
+		size--;
+		if (size > 0) {
+			move(size, 0);
+			siftDown(0);
+		}
+		
+		members.remove(WorldUtil.unpackX(tile), WorldUtil.unpackZ(tile));
+		return tile;
+	}
+	
+	/**
+	 * Updates the priorities of all tiles in this queue using the {@link TileOrder}.
+	 */
+	public void reprioritize() {
+		for (int i = 0; i < size; i++) {
+			priorities[i] = order.getPriority(WorldUtil.unpackX(tiles[i]), WorldUtil.unpackZ(tiles[i]));
+		}
+		
+		for (int i = (size >>> 1) - 1; i >= 0; i--) {
+			siftDown(i);
+		}
+	}
+	
+	public TileOrder getOrder() {
+		return order;
+	}
+	
+	public boolean contains(int x, int z) {
+		return members.contains(x, z);
+	}
+	
+	public int size() {
+		return size;
+	}
+	
+	public boolean isEmpty() {
+		return size == 0;
+	}
+	
+	public void clear() {
+		size = 0;
+		members.clear();
+	}
+	
+	/**
+	 * Passes all tiles of this queue to the consumer, in no particular order.
+	 */
+	public void forEach(TileSet.TileConsumer consumer) {
+		for (int i = 0; i < size; i++) {
+			consumer.accept(WorldUtil.unpackX(tiles[i]), WorldUtil.unpackZ(tiles[i]));
+		}
+	}
+	
+	private void siftUp(int index) {
+		long priority = priorities[index], sequence = sequences[index], tile = tiles[index];
+		
+		while (index > 0) {
+			int parent = (index - 1) >>> 1;
+			if (!less(priority, sequence, parent)) break;
+			
+			move(parent, index);
+			index = parent;
+		}
+		
+		priorities[index] = priority;
+		sequences[index] = sequence;
+		tiles[index] = tile;
+	}
+	
+	private void siftDown(int index) {
+		long priority = priorities[index], sequence = sequences[index], tile = tiles[index];
+		
+		int half = size >>> 1;
+		while (index < half) {
+			int child = 2 * index + 1;
+			if (child + 1 < size && less(priorities[child + 1], sequences[child + 1], child)) child++;
+			if (!less(priorities[child], sequences[child], priority, sequence)) break;
+			
+			move(child, index);
+			index = child;
+		}
+		
+		priorities[index] = priority;
+		sequences[index] = sequence;
+		tiles[index] = tile;
+	}
+	
+	private boolean less(long priority, long sequence, int index) {
+		return less(priority, sequence, priorities[index], sequences[index]);
+	}
+	
+	private static boolean less(long priorityA, long sequenceA, long priorityB, long sequenceB) {
+		if (priorityA != priorityB) return priorityA < priorityB;
+		return sequenceA < sequenceB;
+	}
+	
+	private void move(int from, int to) {
+		priorities[to] = priorities[from];
+		sequences[to] = sequences[from];
+		tiles[to] = tiles[from];
+	}
+	
+	private void grow() {
+		int length = tiles.length * 2;
+		
+		long[] grown = new long[length];
+		System.arraycopy(priorities, 0, grown, 0, size);
+		priorities = grown;
+		
+		grown = new long[length];
+		System.arraycopy(sequences, 0, grown, 0, size);
+		sequences = grown;
+		
+		grown = new long[length];
+		System.arraycopy(tiles, 0, grown, 0, size);
+		tiles = grown;
+	}
+	
+}
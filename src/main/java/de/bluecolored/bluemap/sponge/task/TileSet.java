@@ -0,0 +1,208 @@
+/*
+ * This file is part of BlueMapSponge, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) Blue (Lukas Rieger) <https://bluecolored.de>
+ * Copyright (c) contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package de.bluecolored.bluemap.sponge.task;
+
+import de.bluecolored.bluemap.sponge.WorldUtil;
+import gnu.trove.iterator.TLongObjectIterator;
+import gnu.trove.map.hash.TLongObjectHashMap;
+
+/**
+ * A set of tile-positions without any boxing.<br>
+ * The tiles are grouped into regions of 32x32 tiles, each region is stored as a bitmap of 1024 bits (16 longs).
+ */
+class TileSet {
+
+	static final int REGION_BITS = 5;
+	static final int REGION_SIZE = 1 << REGION_BITS;
+	static final int REGION_MASK = REGION_SIZE - 1;
+	static final int REGION_LONGS = REGION_SIZE * REGION_SIZE / 64;
+	
+	private TLongObjectHashMap<long[]> regions;
+	private int size;
+	
+	public TileSet() {
+		this.regions = new TLongObjectHashMap<>();
+		this.size = 0;
+	}
+	
+	public boolean add(int x, int z) {
+		long regionKey = regionKey(x, z);
+		long[] bitmap = regions.get(regionKey);
+		if (bitmap == null) {
+			bitmap = new long[REGION_LONGS];
+			regions.put(regionKey, bitmap);
+		}
+		
+		int bit = bit(x, z);
+		long mask = 1L << (bit & 63);
+		if ((bitmap[bit >> 6] & mask) != 0) return false;
+		
+		bitmap[bit >> 6] |= mask;
+		size++;
+		return true;
+	}
+	
+	public boolean contains(int x, int z) {
+		long[] bitmap = regions.get(regionKey(x, z));
+		if (bitmap == null) return false;
+		
+		int bit = bit(x, z);
+		return (bitmap[bit >> 6] & (1L << (bit & 63))) != 0;
+	}
+	
+	public boolean remove(int x, int z) {
+		long regionKey = regionKey(x, z);
+		long[] bitmap = regions.get(regionKey);
+		if (bitmap == null) return false;
+		
+		int bit = bit(x, z);
+		long mask = 1L << (bit & 63);
+		if ((bitmap[bit >> 6] & mask) == 0) return false;
+		
+		bitmap[bit >> 6] &= ~mask;
+		size--;
+		
+		if (isEmpty(bitmap)) regions.remove(regionKey);
+		return true;
+	}
+	
+	public int size() {
+		return size;
+	}
+	
+	public boolean isEmpty() {
+		return size == 0;
+	}
+	
+	public void clear() {
+		regions.clear();
+		size = 0;
+	}
+	
+	/**
+	 * Creates a copy of this set, this only copies the bitmaps of the regions so it is a lot cheaper than adding all tiles to a new set.
+	 */
+	public TileSet copy() {
+		TileSet copy = new TileSet();
+		copy.regions.ensureCapacity(regions.size());
+		
+		TLongObjectIterator<long[]> iterator = regions.iterator();
+		while (iterator.hasNext()) {
+			iterator.advance();
+			copy.regions.put(iterator.key(), iterator.value().clone());
+		}
+		
+		copy.size = size;
+		return copy;
+	}
+	
+	public void forEach(TileConsumer consumer) {
+		TLongObjectIterator<long[]> iterator = regions.iterator();
+		while (iterator.hasNext()) {
+			iterator.advance();
+			
+			int regionX = WorldUtil.unpackX(iterator.key());
+			int regionZ = WorldUtil.unpackZ(iterator.key());
+			long[] bitmap = iterator.value();
+			
+			for (int i = 0; i < REGION_LONGS; i++) {
+				long bits = bitmap[i];
+				while (bits != 0) {
+					int bit = i * 64 + Long.numberOfTrailingZeros(bits);
+					bits &= bits - 1;
+					
+					consumer.accept(
+							(regionX << REGION_BITS) | (bit & REGION_MASK), 
+							(regionZ << REGION_BITS) | (bit >> REGION_BITS)
+							);
+				}
+			}
+		}
+	}
+	
+	/**
+	 * Passes the raw bitmap of each region to the consumer, the bitmaps must not be modified.
+	 */
+	void forEachRegion(RegionConsumer consumer) {
+		TLongObjectIterator<long[]> iterator = regions.iterator();
+		while (iterator.hasNext()) {
+			iterator.advance();
+			consumer.accept(WorldUtil.unpackX(iterator.key()), WorldUtil.unpackZ(iterator.key()), iterator.value());
+		}
+	}
+	
+	/**
+	 * Adds all tiles of the given region-bitmap to this set.
+	 */
+	void addRegion(int regionX, int regionZ, long[] bits) {
+		long regionKey = WorldUtil.packXZ(regionX, regionZ);
+		long[] bitmap = regions.get(regionKey);
+		if (bitmap == null) {
+			bitmap = new long[REGION_LONGS];
+			regions.put(regionKey, bitmap);
+		}
+		
+		for (int i = 0; i < REGION_LONGS; i++) {
+			size += Long.bitCount(bits[i] & ~bitmap[i]);
+			bitmap[i] |= bits[i];
+		}
+		
+		if (isEmpty(bitmap)) regions.remove(regionKey);
+	}
+	
+	int regionCount() {
+		return regions.size();
+	}
+	
+	private static long regionKey(int x, int z) {
+		return WorldUtil.packXZ(x >> REGION_BITS, z >> REGION_BITS);
+	}
+	
+	private static int bit(int x, int z) {
+		return (z & REGION_MASK) * REGION_SIZE + (x & REGION_MASK);
+	}
+	
+	private static boolean isEmpty(long[] bitmap) {
+		for (long bits : bitmap) {
+			if (bits != 0) return false;
+		}
+		return true;
+	}
+	
+	@FunctionalInterface
+	interface TileConsumer {
+		
+		void accept(int x, int z);
+		
+	}
+	
+	@FunctionalInterface
+	interface RegionConsumer {
+		
+		void accept(int regionX, int regionZ, long[] bitmap);
+		
+	}
+	
+}
@@ -0,0 +1,100 @@
+/*
+ * This file is part of BlueMapSponge, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) Blue (Lukas Rieger) <https://bluecolored.de>
+ * Copyright (c) contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package de.bluecolored.bluemap.sponge.task;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.Base64;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * Encodes {@link TileSet}s into a compact string.<br>
+ * <br>
+ * The region-bitmaps of the tile-set (32x32 tiles each) are written as they are.
+ * The result is deflated and base64-encoded so it can be stored in a configuration-node.
+ */
+class TileSetSerializer {
+
+	private static final int FORMAT_VERSION = 1;
+	
+	public static String encode(TileSet tiles) throws IOException {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		try (DataOutputStream out = new DataOutputStream(new DeflaterOutputStream(bytes))) {
+			out.writeInt(FORMAT_VERSION);
+			out.writeInt(tiles.regionCount());
+			
+			try {
+				tiles.forEachRegion((regionX, regionZ, bitmap) -> {
+					try {
+						out.writeInt(regionX);
+						out.writeInt(regionZ);
+						for (long bits : bitmap) {
+							out.writeLong(bits);
+						}
+					} catch (IOException e) {
+						throw new UncheckedIOException(e);
+					}
+				});
+			} catch (UncheckedIOException e) {
+				throw e.getCause();
+			}
+		}
+		
+		return Base64.getEncoder().encodeToString(bytes.toByteArray());
+	}
+	
+	public static void decode(String encoded, TileSet tiles) throws IOException {
+		byte[] bytes;
+		try {
+			bytes = Base64.getDecoder().decode(encoded);
+		} catch (IllegalArgumentException e) {
+			throw new IOException("Invalid tile-set encoding", e);
+		}
+		
+		try (DataInputStream in = new DataInputStream(new InflaterInputStream(new ByteArrayInputStream(bytes)))) {
+			int version = in.readInt();
+			if (version != FORMAT_VERSION) throw new IOException("Unsupported tile-set format version: " + version);
+			
+			long[] bitmap = new long[TileSet.REGION_LONGS];
+			int regionCount = in.readInt();
+			for (int r = 0; r < regionCount; r++) {
+				int regionX = in.readInt();
+				int regionZ = in.readInt();
+				
+				for (int i = 0; i < TileSet.REGION_LONGS; i++) {
+					bitmap[i] = in.readLong();
+				}
+				
+				tiles.addRegion(regionX, regionZ, bitmap);
+			}
+		}
+	}
+	
+}
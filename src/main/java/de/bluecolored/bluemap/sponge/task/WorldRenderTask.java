@@ -24,11 +24,13 @@
  */
 package de.bluecolored.bluemap.sponge.task;
 
+import java.io.IOException;
 import java.util.Collection;
-import java.util.Set;
 import java.util.UUID;
 import java.util.concurrent.TimeUnit;
 
+import javax.annotation.Nullable;
+
 import org.spongepowered.api.Sponge;
 import org.spongepowered.api.scheduler.Task;
 import org.spongepowered.api.text.Text;
@@ -43,41 +45,70 @@
 import de.bluecolored.bluemap.render.WorldTile;
 import de.bluecolored.bluemap.sponge.BlueMapSponge;
 import de.bluecolored.bluemap.sponge.MapType;
-import gnu.trove.set.hash.THashSet;
-import gnu.trove.set.hash.TLinkedHashSet;
+import de.bluecolored.bluemap.sponge.RenderGovernor;
+import de.bluecolored.bluemap.sponge.WorldUtil;
+import de.bluecolored.bluemap.sponge.metrics.Metrics;
+import gnu.trove.iterator.TLongIterator;
+import gnu.trove.map.hash.TLongLongHashMap;
+import gnu.trove.set.hash.TLongHashSet;
 import ninja.leaping.configurate.ConfigurationNode;
 
 public class WorldRenderTask extends RenderTask {
 
+	//how many tickets per render-thread are kept scheduled, so the render-threads never run out of work
+	private static final int SCHEDULED_TICKETS_PER_THREAD = 4;
+	
+	//how many unchanged tiles are skipped at most by one call of feed(), so the render-threads that call it don't get stuck skipping tiles
+	private static final int SKIPPED_TILES_PER_FEED = 256;
+	
+	//how long the update-task keeps skipping unchanged tiles
+	private static final long SKIP_TIME_PER_UPDATE = 800;
+
 	private RenderManager renderManager;
+	private RenderGovernor governor;
 	private MapType mapType;
 	private UUID executor;
 	
-	private Set<Vector2i> closedTiles;
-	private Set<Vector2i> openTiles;
-	private Set<Vector2i> renderingTiles;
+	private TileSet closedTiles;
+	private TileQueue openTiles;
+	private TLongHashSet renderingTiles;
+	private TLongLongHashMap renderingHashes;
+	private int hashingTiles;
 	private boolean terminate;
 	
+	@Nullable
+	private TileFingerprints fingerprints;
+	private boolean force;
+	
 	private Task task;
 	private long lastUpdate;
 	
 	private long startTime;
 	private int renderedTiles;
+	private int skippedTiles;
 	
-	private RenderTicket lastScheduledTicket;
-	
-	public WorldRenderTask(RenderManager renderManager, MapType mapType) {
-		this(renderManager, mapType, null);
+	public WorldRenderTask(RenderManager renderManager, RenderGovernor governor, MapType mapType) {
+		this(renderManager, governor, mapType, null, false);
 	}
 
-	public WorldRenderTask(RenderManager renderManager, MapType mapType, UUID executor) {
+	/**
+	 * @param force if true, all tiles are rendered even if their chunks did not change since they have been rendered the last time
+	 */
+	public WorldRenderTask(RenderManager renderManager, RenderGovernor governor, MapType mapType, UUID executor, boolean force) {
 		this.renderManager = renderManager;
+		this.governor = governor;
 		this.mapType = mapType;
 		this.executor = executor;
 		
-		this.closedTiles = new THashSet<>(1000);
-		this.openTiles = new TLinkedHashSet<>(100);
-		this.renderingTiles = new THashSet<>(100);
+		Vector2i startTile = mapType.getTileRenderer().getHiresModelManager().posToTile(mapType.getWorld().getSpawnPoint());
+		
+		this.closedTiles = new TileSet();
+		this.openTiles = new TileQueue(mapType.getConfig().getRenderOrder().create(mapType, startTile));
+		this.renderingTiles = new TLongHashSet(100);
+		this.renderingHashes = new TLongLongHashMap(100, 0.5f, Long.MIN_VALUE, TileFingerprints.UNKNOWN);
+		
+		this.fingerprints = mapType.getTileFingerprints();
+		this.force = force;
 		
 		this.terminate = false;
 	}
@@ -86,11 +117,15 @@ public synchronized void start() {
 		openTiles.clear();
 		closedTiles.clear();
 		renderedTiles = 0;
+		skippedTiles = 0;
 		startTime = System.currentTimeMillis();
 		lastUpdate = startTime;
 
 		WorldTile start = new WorldTile(mapType.getWorld(), mapType.getTileRenderer().getHiresModelManager().posToTile(mapType.getWorld().getSpawnPoint()));
-		openTiles.add(start.getTile());
+		openTiles.add(start.getTile().getX(), start.getTile().getY());
+		
+		//forgetting the fingerprints makes all tiles render again, this also holds if the task is resumed after a restart
+		if (force && fingerprints != null) fingerprints.clear();
 		
 		resume();
 	}
@@ -120,97 +155,185 @@ public void terminate() {
 		notifyFinished();
 	}
 	
-	private synchronized void update(Task task) {
-		if (terminate) {
-			task.cancel();
-			return;
+	private void update(Task task) {
+		synchronized (this) {
+			if (terminate) {
+				task.cancel();
+				return;
+			}
+			
+			if (openTiles.getOrder().update()) openTiles.reprioritize();
 		}
 		
-		while (openTiles.size() > 0 && renderManager.getScheduledTicketCount() < 100) {
-			Vector2i next = openTiles.iterator().next();
-			openTiles.remove(next);
-			closedTiles.add(next);
-			renderingTiles.add(next);
-			WorldTile tile = new WorldTile(mapType.getWorld(), next);
-			RenderTicket ticket = renderManager.scheduleRender(tile, mapType.getTileRenderer());
-			ticket.addListener(this::rendered); // add listener so that the rendered() method gets called if the ticket has been processed
-			lastScheduledTicket = ticket;
-		}
+		//release the lock between the batches of skipped tiles, so finished tickets can be reported in between
+		long skipUntil = System.currentTimeMillis() + SKIP_TIME_PER_UPDATE;
+		while (feed() && System.currentTimeMillis() < skipUntil);
 		
+		synchronized (this) {
+			if (!terminate) checkProgress();
+		}
+	}
+	
+	private void checkProgress() {
 		long now = System.currentTimeMillis();
 		
-		if (openTiles.isEmpty() && (lastScheduledTicket == null || lastScheduledTicket.isDone())) {
+		if (openTiles.isEmpty() && renderingTiles.isEmpty()) {
 			terminate();
 
 			message(Text.of(TextColors.DARK_GREEN, "World render task finished for map '" + mapType.getId() + "' on world '" + mapType.getWorld().getName() + "'!", Text.NEW_LINE, 
-					TextActions.showText(Text.of(TextColors.GRAY, "(O:" + openTiles.size() + "|C:" + closedTiles.size() + "|R:" + renderManager.getScheduledTicketCount() + ")")), TextColors.GREEN, "Rendered " + renderedTiles + " tiles in " + ((now - startTime) / 60000) + " min!"));
+					TextActions.showText(Text.of(TextColors.GRAY, "(O:" + openTiles.size() + "|C:" + closedTiles.size() + "|R:" + renderManager.getScheduledTicketCount() + ")")), TextColors.GREEN, "Rendered " + renderedTiles + " tiles in " + ((now - startTime) / 60000) + " min! (" + skippedTiles + " unchanged tiles skipped)"));
 		} else {
 			if (lastUpdate + 60000 < now) {
 				lastUpdate = now;
 				
-				message(Text.of(TextActions.showText(Text.of(TextColors.GRAY, "(O:" + openTiles.size() + "|C:" + closedTiles.size() + "|R:" + renderManager.getScheduledTicketCount() + ")")), TextColors.YELLOW, "Rendered " + renderedTiles + " tiles in " + ((now - startTime) / 60000) + " min!"));
+				message(Text.of(TextActions.showText(Text.of(TextColors.GRAY, "(O:" + openTiles.size() + "|C:" + closedTiles.size() + "|R:" + renderManager.getScheduledTicketCount() + ")")), TextColors.YELLOW, "Rendered " + renderedTiles + " tiles in " + ((now - startTime) / 60000) + " min! (" + skippedTiles + " unchanged tiles skipped)"));
+			}
+		}
+	}
+	
+	/**
+	 * Schedules open tiles until the render-manager has enough tickets to keep all render-threads busy.<br>
+	 * Tiles whose chunks did not change since they have been rendered the last time are skipped.<br>
+	 * <br>
+	 * The hashes of the tiles are computed without holding the lock of this task, because that might read the region-files. 
+	 * The tile is claimed as rendering while its hash is computed, so it is saved as open and the task does not finish in the meantime.
+	 * @return true if it stopped because too many tiles have been skipped at once and there is more to do
+	 */
+	private boolean feed() {
+		int targetTicketCount = governor.getMaxWorkers() * SCHEDULED_TICKETS_PER_THREAD;
+		int skipped = 0;
+		
+		while (true) {
+			long next;
+			synchronized (this) {
+				if (terminate) return false;
+				if (openTiles.isEmpty() || renderManager.getScheduledTicketCount() + hashingTiles >= targetTicketCount) return false;
+				if (skipped >= SKIPPED_TILES_PER_FEED) return true;
+				
+				next = openTiles.poll();
+				closedTiles.add(WorldUtil.unpackX(next), WorldUtil.unpackZ(next));
+				renderingTiles.add(next);
+				hashingTiles++;
+			}
+			
+			int x = WorldUtil.unpackX(next), z = WorldUtil.unpackZ(next);
+			long hash = TileFingerprints.UNKNOWN;
+			boolean unchanged = false;
+			if (fingerprints != null) {
+				hash = fingerprints.computeTileHash(x, z);
+				unchanged = fingerprints.isUnchanged(x, z, hash);
+			}
+			
+			synchronized (this) {
+				hashingTiles--;
+				
+				//a terminated task keeps the claimed tile as rendering, so it has been saved as open
+				if (terminate) return false;
+				
+				//unchanged tiles are treated like rendered tiles, so the surrounding tiles are still visited
+				if (unchanged) {
+					renderingTiles.remove(next);
+					skippedTiles++;
+					Metrics.TILES_SKIPPED.increment();
+					skipped++;
+					openNeighbours(x, z);
+					continue;
+				}
+				
+				if (fingerprints != null) renderingHashes.put(next, hash);
 			}
+			
+			WorldTile tile = new WorldTile(mapType.getWorld(), new Vector2i(x, z));
+			RenderTicket ticket = renderManager.scheduleRender(tile, mapType.getTileRenderer());
+			ticket.addListener(this::rendered); // add listener so that the rendered() method gets called if the ticket has been processed
 		}
 	}
 	
-	private synchronized void rendered(RenderTicket ticket) {
-		if (terminate) return;		
+	private void rendered(RenderTicket ticket) {
 		if (!ticket.getTileRenderer().equals(mapType.getTileRenderer())) return;
 		if (!ticket.getTile().getWorld().equals(mapType.getWorld())) return;
-
-		renderingTiles.remove(ticket.getTile().getTile());
 		
-		//do not add surrounding tiles if render has thrown an error
-		try {
-			ticket.check();
-		} catch (Throwable t){
-			return;
+		synchronized (this) {
+			if (terminate) return;
+	
+			Vector2i rel = ticket.getTile().getTile();
+			long tile = WorldUtil.packXZ(rel.getX(), rel.getY());
+			renderingTiles.remove(tile);
+			long hash = renderingHashes.remove(tile);
+			
+			//do not add surrounding tiles if render has thrown an error
+			try {
+				ticket.check();
+			} catch (Throwable t){
+				return;
+			}
+			
+			renderedTiles++;
+			if (fingerprints != null) fingerprints.setRendered(rel.getX(), rel.getY(), hash);
+			
+			openNeighbours(rel.getX(), rel.getY());
 		}
 		
-		renderedTiles++;
-		
-		Vector2i rel = ticket.getTile().getTile();
-		for (int x = -1; x <= 1; x++) {
-			for (int z = -1; z <= 1; z++) {
-				Vector2i tile = rel.add(x, z);
-				if (!closedTiles.contains(tile)) openTiles.add(tile);
+		//refill the render-queue as soon as a ticket is done instead of waiting for the next update, the lock is released so other render-threads can report their tiles
+		feed();
+	}
+
+	private void openNeighbours(int tileX, int tileZ) {
+		for (int x = tileX - 1; x <= tileX + 1; x++) {
+			for (int z = tileZ - 1; z <= tileZ + 1; z++) {
+				if (!closedTiles.contains(x, z)) openTiles.add(x, z);
 			}
 		}
 	}
 
 	@Override
-	public synchronized void interruptAndSave(ConfigurationNode node) {
-		task.cancel();
-		terminate = true;
+	public void interruptAndSave(ConfigurationNode node) {
+		synchronized (this) {
+			task.cancel();
+			terminate = true;
+		}
+		
+		save(node);
+	}
+	
+	/**
+	 * Copies the progress of this task while holding its lock and encodes it afterwards, so the render-threads don't have to wait for the encoding.
+	 */
+	@Override
+	public void save(ConfigurationNode node) {
+		TileSet closed, open;
+		int renderedTiles, skippedTiles;
+		synchronized (this) {
+			closed = closedTiles.copy();
+			
+			//tiles that are currently rendering are saved as open, so they will be rendered again on resume
+			open = new TileSet();
+			openTiles.forEach(open::add);
+			TLongIterator rendering = renderingTiles.iterator();
+			while (rendering.hasNext()) {
+				long tile = rendering.next();
+				open.add(WorldUtil.unpackX(tile), WorldUtil.unpackZ(tile));
+			}
+			
+			renderedTiles = this.renderedTiles;
+			skippedTiles = this.skippedTiles;
+		}
 		
 		node = node.getNode("world-render").getAppendedNode();
 		
 		node.getNode("map-type").setValue(mapType.getId());
 		node.getNode("world").setValue(mapType.getWorld().getUUID().toString());
 		node.getNode("rendered-tiles").setValue(renderedTiles);
+		node.getNode("skipped-tiles").setValue(skippedTiles);
 		node.getNode("start-time").setValue(startTime);
 		if (executor != null) node.getNode("executor").setValue(executor.toString());
 		
-		ConfigurationNode closedTilesNode = node.getNode("closed-tiles");
-		for (Vector2i tile : closedTiles) {
-			ConfigurationNode tileNode = closedTilesNode.getAppendedNode();
-			tileNode.getNode("x").setValue(tile.getX());
-			tileNode.getNode("z").setValue(tile.getY());
-		}
-		
-		ConfigurationNode openTilesNode = node.getNode("open-tiles");
-		for (Vector2i tile : openTiles) {
-			ConfigurationNode tileNode = openTilesNode.getAppendedNode();
-			tileNode.getNode("x").setValue(tile.getX());
-			tileNode.getNode("z").setValue(tile.getY());
-		}
-
-		for (Vector2i tile : renderingTiles) {
-			ConfigurationNode tileNode = openTilesNode.getAppendedNode();
-			tileNode.getNode("x").setValue(tile.getX());
-			tileNode.getNode("z").setValue(tile.getY());
+		try {
+			node.getNode("closed-tiles").setValue(TileSetSerializer.encode(closed));
+			node.getNode("open-tiles").setValue(TileSetSerializer.encode(open));
+		} catch (IOException e) {
+			throw new IllegalStateException("Failed to encode tile-sets", e);
 		}
-		
 	}
 
 	@Override
@@ -218,7 +341,7 @@ public boolean isFinished() {
 		return terminate;
 	}
 
-	public static void loadAndResumeTasks(RenderTaskManager renderTaskManager, RenderManager renderManager, ConfigurationNode taskNode, Collection<MapType> mapTypes, Logger logger) {
+	public static void loadAndResumeTasks(RenderTaskManager renderTaskManager, RenderManager renderManager, RenderGovernor governor, ConfigurationNode taskNode, Collection<MapType> mapTypes, Logger logger) {
 		for (ConfigurationNode node : taskNode.getNode("world-render").getChildrenList()) {
 			try {
 				String mapTypeId = node.getNode("map-type").getString();
@@ -241,30 +364,19 @@ public static void loadAndResumeTasks(RenderTaskManager renderTaskManager, Rende
 					continue;
 				}
 				
-				WorldRenderTask task = new WorldRenderTask(renderManager, type);
+				WorldRenderTask task = new WorldRenderTask(renderManager, governor, type);
 				
 				String executorString = node.getNode("executor").getString();
 				if (executorString != null) task.executor = UUID.fromString(executorString);
 				task.renderedTiles = node.getNode("rendered-tiles").getInt();
+				task.skippedTiles = node.getNode("skipped-tiles").getInt();
 				task.startTime = node.getNode("start-time").getLong();
 				
-				for (ConfigurationNode tileNode : node.getNode("closed-tiles").getChildrenList()) {
-					Vector2i tile = new Vector2i(
-							tileNode.getNode("x").getInt(),
-							tileNode.getNode("z").getInt()
-							);
-					
-					task.closedTiles.add(tile);
-				}
+				loadTiles(node.getNode("closed-tiles"), task.closedTiles);
 				
-				for (ConfigurationNode tileNode : node.getNode("open-tiles").getChildrenList()) {
-					Vector2i tile = new Vector2i(
-							tileNode.getNode("x").getInt(),
-							tileNode.getNode("z").getInt()
-							);
-					
-					task.openTiles.add(tile);
-				}
+				TileSet open = new TileSet();
+				loadTiles(node.getNode("open-tiles"), open);
+				open.forEach(task.openTiles::add);
 				
 				task.resume();
 				renderTaskManager.registerRenderTask(task);
@@ -275,4 +387,21 @@ public static void loadAndResumeTasks(RenderTaskManager renderTaskManager, Rende
 		}
 	}
 	
+	private static void loadTiles(ConfigurationNode tilesNode, TileSet tiles) throws IOException {
+		//legacy format: a list of x/z nodes
+		if (tilesNode.hasListChildren()) {
+			for (ConfigurationNode tileNode : tilesNode.getChildrenList()) {
+				tiles.add(
+						tileNode.getNode("x").getInt(),
+						tileNode.getNode("z").getInt()
+						);
+			}
+			return;
+		}
+		
+		//tile-sets are stored as encoded string
+		String encoded = tilesNode.getString();
+		if (encoded != null) TileSetSerializer.decode(encoded, tiles);
+	}
+	
 }
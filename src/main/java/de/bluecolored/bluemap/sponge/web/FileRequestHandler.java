@@ -0,0 +1,384 @@
+/*
+ * This file is part of BlueMapSponge, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) Blue (Lukas Rieger) <https://bluecolored.de>
+ * Copyright (c) contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package de.bluecolored.bluemap.sponge.web;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.zip.GZIPInputStream;
+
+import javax.annotation.Nullable;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.io.ByteStreams;
+
+import de.bluecolored.bluemap.logger.Logger;
+import de.bluecolored.bluemap.sponge.hires.BinaryTileEncoder;
+import de.bluecolored.bluemap.sponge.hires.PostProcessingTileRenderer;
+
+/**
+ * Serves the files of the webroot (and of the data-folder, if it is not inside the webroot).<br>
+ * <br>
+ * Small files are kept in a size-bounded LRU-cache, so frequently requested tiles are not read from disk for every request.
+ * Every response carries a strong ETag and a Last-Modified header so clients can revalidate their copy with a conditional request,
+ * which is answered with 304 if the file did not change. If the client accepts gzip and there is a precompressed .gz-file next 
+ * to the requested file, that one is served instead. Clients that accept binary hires-tiles get the .bin-file of a requested
+ * hires-tile if there is one.
+ */
+public class FileRequestHandler implements HttpRequestHandler {
+
+	//a cached file is trusted for that long before the file on disk is checked for changes again
+	private static final long REVALIDATE_INTERVAL = 1000;
+	
+	private static final int MAX_CACHED_FILE_SIZE = 1024 * 1024;
+	
+	private static final Map<String, String> CONTENT_TYPES = new HashMap<>();
+	static {
+		CONTENT_TYPES.put("html", "text/html; charset=utf-8");
+		CONTENT_TYPES.put("css", "text/css; charset=utf-8");
+		CONTENT_TYPES.put("js", "application/javascript; charset=utf-8");
+		CONTENT_TYPES.put("json", "application/json; charset=utf-8");
+		CONTENT_TYPES.put("txt", "text/plain; charset=utf-8");
+		CONTENT_TYPES.put("bin", "application/octet-stream");
+		CONTENT_TYPES.put("png", "image/png");
+		CONTENT_TYPES.put("jpg", "image/jpeg");
+		CONTENT_TYPES.put("jpeg", "image/jpeg");
+		CONTENT_TYPES.put("gif", "image/gif");
+		CONTENT_TYPES.put("svg", "image/svg+xml");
+		CONTENT_TYPES.put("ico", "image/x-icon");
+		CONTENT_TYPES.put("woff", "font/woff");
+		CONTENT_TYPES.put("woff2", "font/woff2");
+	}
+	
+	private Path webRoot;
+	@Nullable
+	private Path dataRoot;
+	private Logger logger;
+	
+	private Cache<Path, CachedFile> fileCache;
+	
+	/**
+	 * @param cacheSize the maximum amount of bytes that are cached
+	 */
+	public FileRequestHandler(Path webRoot, Path webDataPath, long cacheSize, Logger logger) {
+		this.webRoot = webRoot.toAbsolutePath().normalize();
+		this.logger = logger;
+		
+		//if the data-folder is not part of the webroot, it is served under /data/
+		Path dataRoot = webDataPath.toAbsolutePath().normalize();
+		this.dataRoot = dataRoot.startsWith(this.webRoot) ? null : dataRoot;
+		
+		this.fileCache = CacheBuilder.newBuilder()
+				.maximumWeight(Math.max(cacheSize, 1))
+				.weigher((Path path, CachedFile file) -> file.getWeight())
+				.build();
+	}
+	
+	@Override
+	public HttpResponse handle(HttpRequest request) {
+		if (!request.getMethod().equals("GET") && !request.getMethod().equals("HEAD")) {
+			return new HttpResponse(HttpStatusCode.METHOD_NOT_ALLOWED).addHeader("Allow", "GET, HEAD");
+		}
+		
+		String path = request.getPath();
+		if (path.endsWith("/")) path += "index.html";
+		
+		Path file = resolve(path);
+		if (file == null) return new HttpResponse(HttpStatusCode.FORBIDDEN);
+		
+		try {
+			CachedFile plainFile = getFile(file);
+			CachedFile gzipFile = getFile(file.resolveSibling(file.getFileName() + ".gz"));
+			String contentType = getContentType(file);
+			
+			//a client that can read binary hires-tiles asks for them in the accept-header, 
+			//the binary tile is only used if it is not older than the json
+			boolean isJson = file.getFileName().toString().endsWith(".json");
+			boolean binary = false;
+			if (isJson && accepts(request.getHeader("Accept"), BinaryTileEncoder.MEDIA_TYPE)) {
+				Path binaryFile = PostProcessingTileRenderer.getBinaryFile(file);
+				CachedFile binaryPlainFile = getFile(binaryFile);
+				CachedFile binaryGzipFile = getFile(binaryFile.resolveSibling(binaryFile.getFileName() + ".gz"));
+				
+				long jsonModified = Math.max(plainFile.getLastModified(), gzipFile.getLastModified());
+				long binaryModified = Math.max(binaryPlainFile.getLastModified(), binaryGzipFile.getLastModified());
+				if (binaryModified >= 0 && binaryModified >= jsonModified) {
+					plainFile = binaryPlainFile;
+					gzipFile = binaryGzipFile;
+					contentType = BinaryTileEncoder.MEDIA_TYPE;
+					binary = true;
+				}
+			}
+			
+			//a compressed file is only used if it is not older than the uncompressed one
+			boolean gzipValid = gzipFile.exists() && (!plainFile.exists() || gzipFile.getLastModified() >= plainFile.getLastModified());
+			boolean acceptsGzip = accepts(request.getHeader("Accept-Encoding"), "gzip");
+			
+			boolean gzip;
+			CachedFile cachedFile;
+			if (gzipValid && (acceptsGzip || !plainFile.exists())) {
+				cachedFile = gzipFile;
+				gzip = acceptsGzip;
+			} else {
+				cachedFile = plainFile;
+				gzip = false;
+			}
+			
+			if (!cachedFile.exists()) return new HttpResponse(HttpStatusCode.NOT_FOUND);
+			
+			//only the compressed file exists, but the client can't handle it
+			boolean decompress = cachedFile == gzipFile && !gzip;
+			
+			//the decompressed content and the binary tile are different representations, so they need a different strong etag
+			String etag = cachedFile.getETag();
+			if (binary) etag = etag.substring(0, etag.length() - 1) + "-binary\"";
+			if (decompress) etag = etag.substring(0, etag.length() - 1) + "-identity\"";
+			
+			HttpResponse response;
+			if (isNotModified(request, etag, cachedFile.getLastModified())) {
+				response = new HttpResponse(HttpStatusCode.NOT_MODIFIED);
+			} else if (decompress) {
+				response = new HttpResponse(HttpStatusCode.OK, decompress(cachedFile));
+			} else if (cachedFile.getData() != null) {
+				response = new HttpResponse(HttpStatusCode.OK, cachedFile.getData());
+			} else {
+				response = new HttpResponse(HttpStatusCode.OK, cachedFile.getPath(), cachedFile.getSize());
+			}
+			
+			response.addHeader("ETag", etag);
+			response.addHeader("Last-Modified", HttpResponse.formatDate(cachedFile.getLastModified()));
+			response.addHeader("Cache-Control", "no-cache");
+			response.addHeader("Vary", isJson ? "Accept, Accept-Encoding" : "Accept-Encoding");
+			response.addHeader("Content-Type", contentType);
+			if (gzip) response.addHeader("Content-Encoding", "gzip");
+			
+			return response;
+		} catch (IOException e) {
+			logger.noFloodError("webserver-file-" + e.getClass().getSimpleName(), "Failed to read file: " + file, e);
+			return new HttpResponse(HttpStatusCode.INTERNAL_SERVER_ERROR);
+		}
+	}
+	
+	/**
+	 * Removes all files from the cache
+	 */
+	public void clearCache() {
+		fileCache.invalidateAll();
+	}
+	
+	@Nullable
+	private Path resolve(String path) {
+		Path root = webRoot;
+		if (dataRoot != null && path.startsWith("/data/")) {
+			root = dataRoot;
+			path = path.substring("/data".length());
+		}
+		
+		Path file = root.resolve(path.substring(1)).normalize();
+		if (!file.startsWith(root)) return null;
+		
+		return file;
+	}
+	
+	/**
+	 * Returns the cached file if it has been validated recently, otherwise the file is checked on disk and read again if it changed.
+	 */
+	private CachedFile getFile(Path path) throws IOException {
+		long now = System.currentTimeMillis();
+		
+		CachedFile cachedFile = fileCache.getIfPresent(path);
+		if (cachedFile != null && cachedFile.getValidated() + REVALIDATE_INTERVAL > now) return cachedFile;
+		
+		BasicFileAttributes attributes;
+		try {
+			attributes = Files.readAttributes(path, BasicFileAttributes.class);
+		} catch (NoSuchFileException e) {
+			attributes = null;
+		}
+		
+		if (attributes == null || !attributes.isRegularFile()) {
+			cachedFile = CachedFile.missing(path, now);
+		} else {
+			long lastModified = attributes.lastModifiedTime().toMillis();
+			long size = attributes.size();
+			
+			if (cachedFile != null && cachedFile.exists() && cachedFile.getLastModified() == lastModified && cachedFile.getSize() == size) {
+				cachedFile.setValidated(now);
+				return cachedFile;
+			}
+			
+			byte[] data = null;
+			if (size <= MAX_CACHED_FILE_SIZE) {
+				data = Files.readAllBytes(path);
+				size = data.length;
+			}
+			
+			cachedFile = new CachedFile(path, data, lastModified, size, now);
+		}
+		
+		fileCache.put(path, cachedFile);
+		return cachedFile;
+	}
+	
+	private static byte[] decompress(CachedFile file) throws IOException {
+		InputStream in = file.getData() != null ? new ByteArrayInputStream(file.getData()) : Files.newInputStream(file.getPath());
+		
+		try (InputStream gzipIn = new GZIPInputStream(in)) {
+			return ByteStreams.toByteArray(gzipIn);
+		}
+	}
+	
+	private static boolean isNotModified(HttpRequest request, String etag, long lastModified) {
+		//if-none-match takes precedence over if-modified-since
+		String ifNoneMatch = request.getHeader("If-None-Match");
+		if (ifNoneMatch != null) {
+			for (String tag : ifNoneMatch.split(",")) {
+				tag = tag.trim();
+				if (tag.startsWith("W/")) tag = tag.substring(2);
+				if (tag.equals("*") || tag.equals(etag)) return true;
+			}
+			
+			return false;
+		}
+		
+		String ifModifiedSince = request.getHeader("If-Modified-Since");
+		if (ifModifiedSince != null) {
+			try {
+				long since = ZonedDateTime.parse(ifModifiedSince, DateTimeFormatter.RFC_1123_DATE_TIME).toInstant().toEpochMilli();
+				
+				//http-dates only have a precision of seconds
+				return lastModified / 1000 <= since / 1000;
+			} catch (DateTimeParseException e) {
+				return false;
+			}
+		}
+		
+		return false;
+	}
+	
+	/**
+	 * Returns true if the value is listed in that accept- or accept-encoding-header
+	 */
+	private static boolean accepts(@Nullable String header, String value) {
+		if (header == null) return false;
+		
+		for (String entry : header.split(",")) {
+			String[] parts = entry.trim().split(";");
+			if (!parts[0].trim().equalsIgnoreCase(value)) continue;
+			
+			//"gzip;q=0" explicitly rejects gzip
+			return parts.length < 2 || !parts[1].trim().matches("q=0(\\.0*)?");
+		}
+		
+		return false;
+	}
+	
+	private static String getContentType(Path file) {
+		String name = file.getFileName().toString();
+		int dot = name.lastIndexOf('.');
+		if (dot < 0) return "application/octet-stream";
+		
+		String type = CONTENT_TYPES.get(name.substring(dot + 1).toLowerCase(Locale.ROOT));
+		return type != null ? type : "application/octet-stream";
+	}
+	
+	private static class CachedFile {
+		
+		private Path path;
+		@Nullable
+		private byte[] data;
+		private long lastModified;
+		private long size;
+		private String etag;
+		private volatile long validated;
+		
+		private CachedFile(Path path, byte[] data, long lastModified, long size, long validated) {
+			this.path = path;
+			this.data = data;
+			this.lastModified = lastModified;
+			this.size = size;
+			this.etag = "\"" + Long.toHexString(lastModified) + "-" + Long.toHexString(size) + "\"";
+			this.validated = validated;
+		}
+		
+		private static CachedFile missing(Path path, long validated) {
+			return new CachedFile(path, null, -1, -1, validated);
+		}
+		
+		public boolean exists() {
+			return size >= 0;
+		}
+		
+		public Path getPath() {
+			return path;
+		}
+		
+		/**
+		 * The content of the file, or null if the file is too big to be cached
+		 */
+		@Nullable
+		public byte[] getData() {
+			return data;
+		}
+		
+		public long getLastModified() {
+			return lastModified;
+		}
+		
+		public long getSize() {
+			return size;
+		}
+		
+		public String getETag() {
+			return etag;
+		}
+		
+		public long getValidated() {
+			return validated;
+		}
+		
+		public void setValidated(long validated) {
+			this.validated = validated;
+		}
+		
+		public int getWeight() {
+			//the path and the fields need some memory as well
+			return (data != null ? data.length : 0) + 256;
+		}
+		
+	}
+	
+}
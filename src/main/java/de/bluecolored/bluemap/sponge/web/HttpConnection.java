@@ -0,0 +1,275 @@
+/*
+ * This file is part of BlueMapSponge, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) Blue (Lukas Rieger) <https://bluecolored.de>
+ * Copyright (c) contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package de.bluecolored.bluemap.sponge.web;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.SocketChannel;
+import java.nio.file.StandardOpenOption;
+
+import javax.annotation.Nullable;
+
+import de.bluecolored.bluemap.sponge.web.HttpRequest.InvalidRequestException;
+
+/**
+ * The state of one non-blocking client-connection of the {@link WebServer}.<br>
+ * All methods are called from the selector-thread only.<br>
+ * <br>
+ * Requests are answered one after another in the order they arrived. Pipelined requests stay in the read-buffer until the 
+ * response of the previous request has been written completely.
+ */
+class HttpConnection {
+
+	//the maximum size of the request-line and headers of one request
+	private static final int MAX_REQUEST_HEAD_SIZE = 16 * 1024;
+	
+	private WebServer server;
+	private SocketChannel channel;
+	private SelectionKey key;
+	
+	private ByteBuffer readBuffer;
+	private boolean inputClosed;
+	
+	//a request is being handled or its response is being written
+	private boolean processing;
+	private boolean handling;
+	private boolean closeAfterResponse;
+	private boolean closed;
+	
+	private ByteBuffer[] writeBuffers;
+	@Nullable
+	private FileChannel file;
+	private long filePosition, fileEnd;
+	
+	private long lastActivity;
+	
+	HttpConnection(WebServer server, SocketChannel channel, SelectionKey key) {
+		this.server = server;
+		this.channel = channel;
+		this.key = key;
+		
+		this.readBuffer = ByteBuffer.allocate(MAX_REQUEST_HEAD_SIZE);
+		this.lastActivity = System.currentTimeMillis();
+	}
+	
+	void onSelected() {
+		try {
+			if (key.isReadable()) read();
+			if (!closed && key.isValid() && key.isWritable()) write();
+		} catch (IOException e) {
+			close();
+		}
+	}
+	
+	private void read() throws IOException {
+		int read = channel.read(readBuffer);
+		if (read == -1) {
+			inputClosed = true;
+			
+			//finish the current response before closing
+			if (!processing) close();
+			else updateInterest();
+			return;
+		}
+		
+		lastActivity = System.currentTimeMillis();
+		if (!processing) processNextRequest();
+		else updateInterest();
+	}
+	
+	private void processNextRequest() throws IOException {
+		while (!processing && !closed) {
+			int headEnd = findHeadEnd();
+			if (headEnd < 0) {
+				if (!readBuffer.hasRemaining()) {
+					send(new HttpResponse(HttpStatusCode.BAD_REQUEST), true, false);
+				} else if (inputClosed) {
+					close();
+				} else {
+					updateInterest();
+				}
+				return;
+			}
+			
+			byte[] head = new byte[headEnd];
+			readBuffer.flip();
+			readBuffer.get(head);
+			readBuffer.compact();
+			
+			HttpRequest request;
+			try {
+				request = HttpRequest.read(new ByteArrayInputStream(head));
+			} catch (InvalidRequestException e) {
+				send(new HttpResponse(e.getStatus()), true, false);
+				return;
+			}
+			
+			//blank lines between requests
+			if (request == null) continue;
+			
+			//we don't accept any content, so the connection can't be reused if the client sends some
+			boolean keepAlive = request.isKeepAlive() && !request.hasBody() && !inputClosed;
+			boolean writeContent = !request.getMethod().equals("HEAD");
+			
+			processing = true;
+			handling = true;
+			updateInterest();
+			
+			server.handle(request, response -> {
+				handling = false;
+				try {
+					send(response, writeContent, keepAlive);
+				} catch (IOException e) {
+					close();
+				}
+			});
+		}
+	}
+	
+	/**
+	 * Returns the length of the first request-head in the read-buffer, including the empty line that ends it, or -1 if it is not complete yet.
+	 */
+	private int findHeadEnd() {
+		byte[] data = readBuffer.array();
+		int length = readBuffer.position();
+		
+		for (int i = 0; i < length - 1; i++) {
+			if (data[i] != '\n') continue;
+			
+			if (data[i + 1] == '\n') return i + 2;
+			if (data[i + 1] == '\r' && i + 2 < length && data[i + 2] == '\n') return i + 3;
+		}
+		
+		return -1;
+	}
+	
+	private void send(HttpResponse response, boolean writeContent, boolean keepAlive) throws IOException {
+		if (closed) return;
+		
+		response.addHeader("Date", HttpResponse.formatDate(System.currentTimeMillis()));
+		response.addHeader("Connection", keepAlive ? "keep-alive" : "close");
+		
+		ByteBuffer head = ByteBuffer.wrap(response.createHead());
+		
+		if (writeContent && response.hasContent() && response.getFile() != null) {
+			writeBuffers = new ByteBuffer[] { head };
+			file = FileChannel.open(response.getFile(), StandardOpenOption.READ);
+			filePosition = 0;
+			fileEnd = response.getContentLength();
+		} else if (writeContent && response.hasContent()) {
+			writeBuffers = new ByteBuffer[] { head, ByteBuffer.wrap(response.getData()) };
+		} else {
+			writeBuffers = new ByteBuffer[] { head };
+		}
+		
+		processing = true;
+		closeAfterResponse = !keepAlive;
+		
+		write();
+	}
+	
+	private void write() throws IOException {
+		if (writeBuffers == null) {
+			updateInterest();
+			return;
+		}
+		
+		if (channel.write(writeBuffers) > 0) lastActivity = System.currentTimeMillis();
+		if (writeBuffers[writeBuffers.length - 1].hasRemaining()) {
+			updateInterest();
+			return;
+		}
+		
+		if (file != null) {
+			//the file is sent by the os directly from the page-cache to the socket
+			long transferred = file.transferTo(filePosition, fileEnd - filePosition, channel);
+			if (transferred > 0) lastActivity = System.currentTimeMillis();
+			filePosition += transferred;
+			
+			if (filePosition < fileEnd) {
+				//the file got shorter since the response has been created
+				if (transferred == 0 && filePosition >= file.size()) throw new IOException("File has been truncated");
+				
+				updateInterest();
+				return;
+			}
+			
+			file.close();
+			file = null;
+		}
+		
+		writeBuffers = null;
+		processing = false;
+		
+		if (closeAfterResponse || (inputClosed && readBuffer.position() == 0)) {
+			close();
+			return;
+		}
+		
+		//there might be pipelined requests waiting in the buffer already
+		processNextRequest();
+	}
+	
+	private void updateInterest() {
+		if (closed || !key.isValid()) return;
+		
+		int ops = 0;
+		if (writeBuffers != null) ops |= SelectionKey.OP_WRITE;
+		if (!inputClosed && readBuffer.hasRemaining()) ops |= SelectionKey.OP_READ;
+		
+		key.interestOps(ops);
+	}
+	
+	/**
+	 * Returns true if the connection did not make any progress for that time and is not waiting for a request to be handled
+	 */
+	boolean isIdle(long now, long timeout) {
+		return !handling && lastActivity + timeout < now;
+	}
+	
+	void close() {
+		if (closed) return;
+		closed = true;
+		
+		key.cancel();
+		
+		try {
+			channel.close();
+		} catch (IOException ignore) {}
+		
+		if (file != null) {
+			try {
+				file.close();
+			} catch (IOException ignore) {}
+			file = null;
+		}
+		
+		server.connectionClosed(this);
+	}
+	
+}
@@ -0,0 +1,197 @@
+/*
+ * This file is part of BlueMapSponge, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) Blue (Lukas Rieger) <https://bluecolored.de>
+ * Copyright (c) contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package de.bluecolored.bluemap.sponge.web;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+
+import javax.annotation.Nullable;
+
+public class HttpRequest {
+
+	private static final int MAX_LINE_LENGTH = 8192;
+	private static final int MAX_HEADER_COUNT = 100;
+	
+	private String method;
+	private String path;
+	private String version;
+	private Map<String, String> headers;
+	
+	public HttpRequest(String method, String path, String version, Map<String, String> headers) {
+		this.method = method;
+		this.path = path;
+		this.version = version;
+		this.headers = headers;
+	}
+	
+	public String getMethod() {
+		return method;
+	}
+	
+	/**
+	 * The decoded path of the requested resource, without the query
+	 */
+	public String getPath() {
+		return path;
+	}
+	
+	public String getVersion() {
+		return version;
+	}
+	
+	/**
+	 * Returns the value of the header with that (case-insensitive) name, or null if there is no such header.
+	 */
+	@Nullable
+	public String getHeader(String name) {
+		return headers.get(name.toLowerCase(Locale.ROOT));
+	}
+	
+	public Map<String, String> getHeaders() {
+		return Collections.unmodifiableMap(headers);
+	}
+	
+	/**
+	 * Returns true if the client wants to keep the connection open after this request
+	 */
+	public boolean isKeepAlive() {
+		String connection = getHeader("Connection");
+		if (connection != null) connection = connection.toLowerCase(Locale.ROOT);
+		
+		//HTTP/1.1 connections are persistent by default, HTTP/1.0 connections only on request
+		if (version.equals("HTTP/1.0")) return connection != null && connection.contains("keep-alive");
+		return connection == null || !connection.contains("close");
+	}
+	
+	/**
+	 * Returns true if the request announces a body
+	 */
+	public boolean hasBody() {
+		String contentLength = getHeader("Content-Length");
+		return getHeader("Transfer-Encoding") != null || (contentLength != null && !contentLength.equals("0"));
+	}
+	
+	/**
+	 * Reads the request-line and the headers of the next request from the stream.
+	 * @return the request or null if the stream ended before a request started
+	 * @throws InvalidRequestException if the request is malformed
+	 */
+	@Nullable
+	public static HttpRequest read(InputStream in) throws IOException {
+		String requestLine = readLine(in);
+		
+		//ignore empty lines in front of a request
+		while (requestLine != null && requestLine.isEmpty()) requestLine = readLine(in);
+		if (requestLine == null) return null;
+		
+		String[] parts = requestLine.split(" ");
+		if (parts.length != 3) throw new InvalidRequestException(HttpStatusCode.BAD_REQUEST, "Invalid request-line: " + requestLine);
+		if (!parts[2].startsWith("HTTP/1.")) throw new InvalidRequestException(HttpStatusCode.HTTP_VERSION_NOT_SUPPORTED, "Unsupported version: " + parts[2]);
+		
+		Map<String, String> headers = new HashMap<>();
+		String line;
+		while (!(line = readHeaderLine(in)).isEmpty()) {
+			if (headers.size() >= MAX_HEADER_COUNT) throw new InvalidRequestException(HttpStatusCode.BAD_REQUEST, "Too many headers");
+			
+			int colon = line.indexOf(':');
+			if (colon <= 0) throw new InvalidRequestException(HttpStatusCode.BAD_REQUEST, "Invalid header: " + line);
+			
+			String name = line.substring(0, colon).trim().toLowerCase(Locale.ROOT);
+			String value = line.substring(colon + 1).trim();
+			
+			//multiple headers with the same name are combined as a comma-separated list
+			headers.merge(name, value, (a, b) -> a + ", " + b);
+		}
+		
+		return new HttpRequest(parts[0], decodePath(parts[1]), parts[2], headers);
+	}
+	
+	private static String decodePath(String target) throws InvalidRequestException {
+		int query = target.indexOf('?');
+		if (query >= 0) target = target.substring(0, query);
+		
+		try {
+			String path = new URI(target).getPath();
+			if (path == null || !path.startsWith("/")) throw new InvalidRequestException(HttpStatusCode.BAD_REQUEST, "Invalid path: " + target);
+			return path;
+		} catch (URISyntaxException e) {
+			throw new InvalidRequestException(HttpStatusCode.BAD_REQUEST, "Invalid path: " + target);
+		}
+	}
+	
+	private static String readHeaderLine(InputStream in) throws IOException {
+		String line = readLine(in);
+		if (line == null) throw new InvalidRequestException(HttpStatusCode.BAD_REQUEST, "Unexpected end of request");
+		return line;
+	}
+	
+	/**
+	 * Reads one line in ISO-8859-1, without the line-terminator.
+	 * @return the line or null if the stream ended before any character has been read
+	 */
+	@Nullable
+	private static String readLine(InputStream in) throws IOException {
+		StringBuilder line = new StringBuilder();
+		
+		int c;
+		while ((c = in.read()) != '\n') {
+			if (c == -1) {
+				if (line.length() == 0) return null;
+				throw new InvalidRequestException(HttpStatusCode.BAD_REQUEST, "Unexpected end of request");
+			}
+			
+			if (line.length() >= MAX_LINE_LENGTH) throw new InvalidRequestException(HttpStatusCode.BAD_REQUEST, "Line too long");
+			line.append((char) c);
+		}
+		
+		int length = line.length();
+		if (length > 0 && line.charAt(length - 1) == '\r') line.setLength(length - 1);
+		
+		return line.toString();
+	}
+	
+	public static class InvalidRequestException extends IOException {
+		private static final long serialVersionUID = 1L;
+		
+		private HttpStatusCode status;
+		
+		public InvalidRequestException(HttpStatusCode status, String message) {
+			super(message);
+			this.status = status;
+		}
+		
+		public HttpStatusCode getStatus() {
+			return status;
+		}
+		
+	}
+	
+}
@@ -0,0 +1,139 @@
+/*
+ * This file is part of BlueMapSponge, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) Blue (Lukas Rieger) <https://bluecolored.de>
+ * Copyright (c) contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package de.bluecolored.bluemap.sponge.web;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import javax.annotation.Nullable;
+
+public class HttpResponse {
+
+	private static final byte[] EMPTY = new byte[0];
+	
+	private HttpStatusCode status;
+	private Map<String, String> headers;
+	
+	private byte[] data;
+	@Nullable
+	private Path file;
+	private long length;
+	
+	private HttpResponse(HttpStatusCode status, byte[] data, Path file, long length) {
+		this.status = status;
+		this.headers = new LinkedHashMap<>();
+		this.data = data;
+		this.file = file;
+		this.length = length;
+	}
+	
+	/**
+	 * Creates a response without content
+	 */
+	public HttpResponse(HttpStatusCode status) {
+		this(status, EMPTY, null, 0);
+	}
+	
+	/**
+	 * Creates a response with the given data as content
+	 */
+	public HttpResponse(HttpStatusCode status, byte[] data) {
+		this(status, data, null, data.length);
+	}
+	
+	/**
+	 * Creates a response that streams the content of the file when it is written, the file is not read before that.
+	 */
+	public HttpResponse(HttpStatusCode status, Path file, long length) {
+		this(status, EMPTY, file, length);
+	}
+	
+	public HttpResponse addHeader(String name, String value) {
+		headers.put(name, value);
+		return this;
+	}
+	
+	public HttpStatusCode getStatus() {
+		return status;
+	}
+	
+	public Map<String, String> getHeaders() {
+		return Collections.unmodifiableMap(headers);
+	}
+	
+	public long getContentLength() {
+		return length;
+	}
+	
+	/**
+	 * The content of this response, empty if the content is streamed from a file
+	 */
+	public byte[] getData() {
+		return data;
+	}
+	
+	/**
+	 * The file that the content of this response is streamed from, or null if the content is in {@link #getData()}
+	 */
+	@Nullable
+	public Path getFile() {
+		return file;
+	}
+	
+	/**
+	 * Creates the status-line and the headers of this response, including the blank line that ends the head
+	 */
+	public byte[] createHead() {
+		StringBuilder head = new StringBuilder(256);
+		head.append("HTTP/1.1 ").append(status).append("\r\n");
+		for (Map.Entry<String, String> header : headers.entrySet()) {
+			head.append(header.getKey()).append(": ").append(header.getValue()).append("\r\n");
+		}
+		
+		//a 304 has no content, a content-length would have to be the length of the unchanged content
+		if (hasContent()) head.append("Content-Length: ").append(length).append("\r\n");
+		head.append("\r\n");
+		
+		return head.toString().getBytes(StandardCharsets.ISO_8859_1);
+	}
+	
+	public boolean hasContent() {
+		return status != HttpStatusCode.NOT_MODIFIED;
+	}
+	
+	/**
+	 * Formats the time as it is used in the Date, Last-Modified and If-Modified-Since headers
+	 */
+	public static String formatDate(long millis) {
+		return DateTimeFormatter.RFC_1123_DATE_TIME.format(Instant.ofEpochMilli(millis).atOffset(ZoneOffset.UTC));
+	}
+	
+}
@@ -0,0 +1,57 @@
+/*
+ * This file is part of BlueMapSponge, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) Blue (Lukas Rieger) <https://bluecolored.de>
+ * Copyright (c) contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package de.bluecolored.bluemap.sponge.web;
+
+import java.nio.charset.StandardCharsets;
+
+import de.bluecolored.bluemap.sponge.metrics.Metrics;
+
+/**
+ * Serves the {@link Metrics} in the prometheus text-format on <code>/metrics</code> and passes all other requests to the next handler.
+ */
+public class MetricsRequestHandler implements HttpRequestHandler {
+
+	public static final String PATH = "/metrics";
+	
+	private HttpRequestHandler next;
+	
+	public MetricsRequestHandler(HttpRequestHandler next) {
+		this.next = next;
+	}
+	
+	@Override
+	public HttpResponse handle(HttpRequest request) {
+		if (!request.getPath().equals(PATH)) return next.handle(request);
+		
+		if (!request.getMethod().equals("GET") && !request.getMethod().equals("HEAD")) {
+			return new HttpResponse(HttpStatusCode.METHOD_NOT_ALLOWED).addHeader("Allow", "GET, HEAD");
+		}
+		
+		return new HttpResponse(HttpStatusCode.OK, Metrics.toPrometheusFormat().getBytes(StandardCharsets.UTF_8))
+				.addHeader("Content-Type", "text/plain; version=0.0.4; charset=utf-8")
+				.addHeader("Cache-Control", "no-store");
+	}
+	
+}
@@ -0,0 +1,249 @@
+/*
+ * This file is part of BlueMapSponge, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) Blue (Lukas Rieger) <https://bluecolored.de>
+ * Copyright (c) contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package de.bluecolored.bluemap.sponge.web;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedSelectorException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.Iterator;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.function.Consumer;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+import de.bluecolored.bluemap.logger.Logger;
+import de.bluecolored.bluemap.web.WebServerConfig;
+
+/**
+ * A small non-blocking HTTP/1.1 server that passes all requests to one {@link HttpRequestHandler}.<br>
+ * <br>
+ * All connections are served by a single selector-thread, only the request-handler runs on a small pool of worker-threads 
+ * so a slow disk does not stall the other connections. Connections are kept alive and pipelined requests are answered in order.
+ * Responses with file-content are sent using {@link java.nio.channels.FileChannel#transferTo}.
+ */
+public class WebServer extends Thread {
+
+	private static final int WORKER_THREADS = 2;
+	
+	//connections without any progress are closed after this time
+	private static final long IDLE_TIMEOUT = 30000;
+	
+	private static final byte[] SERVICE_UNAVAILABLE = "HTTP/1.1 503 Service Unavailable\r\nConnection: close\r\nContent-Length: 0\r\n\r\n".getBytes(StandardCharsets.ISO_8859_1);
+	
+	private WebServerConfig config;
+	private HttpRequestHandler handler;
+	private Logger logger;
+	
+	private volatile Selector selector;
+	private ServerSocketChannel server;
+	private ExecutorService workers;
+	private Queue<Runnable> selectorTasks;
+	private int connectionCount;
+	
+	private volatile boolean closed;
+	
+	public WebServer(WebServerConfig config, HttpRequestHandler handler, Logger logger) {
+		super("BlueMap-WebServer");
+		setDaemon(true);
+		
+		this.config = config;
+		this.handler = handler;
+		this.logger = logger;
+		
+		this.selectorTasks = new ConcurrentLinkedQueue<>();
+		this.connectionCount = 0;
+		this.closed = false;
+	}
+	
+	@Override
+	public void run() {
+		workers = Executors.newFixedThreadPool(WORKER_THREADS, new ThreadFactoryBuilder().setNameFormat("BlueMap-WebServer-Worker-%d").setDaemon(true).build());
+		
+		try {
+			selector = Selector.open();
+			server = ServerSocketChannel.open();
+			server.setOption(StandardSocketOptions.SO_REUSEADDR, true);
+			server.bind(new InetSocketAddress(config.getWebserverBindAdress(), config.getWebserverPort()), 128);
+			server.configureBlocking(false);
+			server.register(selector, SelectionKey.OP_ACCEPT);
+			
+			logger.logInfo("WebServer bound to: " + server.getLocalAddress());
+			logger.logInfo("WebServer started.");
+		} catch (IOException e) {
+			logger.logError("Failed to create WebServer!", e);
+			shutdown();
+			return;
+		}
+		
+		long lastIdleCheck = System.currentTimeMillis();
+		while (!closed) {
+			try {
+				selector.select(1000);
+				
+				Runnable task;
+				while ((task = selectorTasks.poll()) != null) task.run();
+				
+				Iterator<SelectionKey> selectedKeys = selector.selectedKeys().iterator();
+				while (selectedKeys.hasNext()) {
+					SelectionKey key = selectedKeys.next();
+					selectedKeys.remove();
+					
+					if (!key.isValid()) continue;
+					
+					if (key.isAcceptable()) {
+						accept();
+					} else {
+						((HttpConnection) key.attachment()).onSelected();
+					}
+				}
+				
+				long now = System.currentTimeMillis();
+				if (lastIdleCheck + 1000 < now) {
+					lastIdleCheck = now;
+					closeIdleConnections(now);
+				}
+			} catch (ClosedSelectorException e) {
+				break;
+			} catch (IOException e) {
+				logger.logError("WebServer failed to process connections", e);
+			}
+		}
+		
+		shutdown();
+		logger.logInfo("WebServer closed.");
+	}
+	
+	private void accept() throws IOException {
+		SocketChannel channel;
+		while ((channel = server.accept()) != null) {
+			channel.configureBlocking(false);
+			
+			if (connectionCount >= config.getWebserverMaxConnections()) {
+				//best effort, if the client can't take it right away it does not get it
+				try {
+					channel.write(ByteBuffer.wrap(SERVICE_UNAVAILABLE));
+				} catch (IOException ignore) {}
+				channel.close();
+				continue;
+			}
+			
+			channel.setOption(StandardSocketOptions.TCP_NODELAY, true);
+			
+			SelectionKey key = channel.register(selector, SelectionKey.OP_READ);
+			key.attach(new HttpConnection(this, channel, key));
+			connectionCount++;
+		}
+	}
+	
+	private void closeIdleConnections(long now) {
+		for (SelectionKey key : selector.keys()) {
+			Object attachment = key.attachment();
+			if (attachment instanceof HttpConnection && ((HttpConnection) attachment).isIdle(now, IDLE_TIMEOUT)) {
+				((HttpConnection) attachment).close();
+			}
+		}
+	}
+	
+	/**
+	 * Handles the request on a worker-thread and passes the response back to the selector-thread
+	 */
+	void handle(HttpRequest request, Consumer<HttpResponse> responseConsumer) {
+		try {
+			workers.execute(() -> {
+				HttpResponse response;
+				try {
+					response = handler.handle(request);
+				} catch (Throwable t) {
+					logger.logError("Failed to handle a web-request", t);
+					response = new HttpResponse(HttpStatusCode.INTERNAL_SERVER_ERROR);
+				}
+				
+				HttpResponse finalResponse = response;
+				runOnSelector(() -> responseConsumer.accept(finalResponse));
+			});
+		} catch (RejectedExecutionException e) {
+			//the server is closing
+			responseConsumer.accept(new HttpResponse(HttpStatusCode.SERVICE_UNAVAILABLE));
+		}
+	}
+	
+	private void runOnSelector(Runnable task) {
+		selectorTasks.add(task);
+		selector.wakeup();
+	}
+	
+	void connectionClosed(HttpConnection connection) {
+		connectionCount--;
+	}
+	
+	/**
+	 * Closes the server-socket and all open connections
+	 */
+	public void close() {
+		closed = true;
+		
+		//the selector-thread closes everything when it wakes up
+		Selector selector = this.selector;
+		if (selector != null) selector.wakeup();
+	}
+	
+	private void shutdown() {
+		closed = true;
+		
+		if (workers != null) workers.shutdownNow();
+		
+		try {
+			if (server != null) server.close();
+		} catch (IOException e) {
+			logger.logError("Failed to close WebServer", e);
+		}
+		
+		if (selector != null) {
+			for (SelectionKey key : selector.keys()) {
+				try {
+					key.channel().close();
+				} catch (IOException ignore) {}
+			}
+			
+			try {
+				selector.close();
+			} catch (IOException e) {
+				logger.logError("Failed to close WebServer", e);
+			}
+		}
+	}
+	
+}